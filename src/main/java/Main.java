@@ -2,11 +2,18 @@ import io.github.palexdev.materialfx.theming.JavaFXThemes;
 import io.github.palexdev.materialfx.theming.MaterialFXStylesheets;
 import io.github.palexdev.materialfx.theming.UserAgentBuilder;
 
+import java.nio.file.Path;
+import java.time.Duration;
+
+import environment.Configuration;
+import environment.logging.Log;
+
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import ui.controllers.InterfaceController;
+import session.pack.SessionCompactor;
 import ui.controllers.TranscriptionHistoryController;
 
 public class Main extends Application {
@@ -16,6 +23,9 @@ public class Main extends Application {
 
     @Override
     public void start(Stage stage) throws Exception {
+		applyLogging(Configuration.get());
+		Configuration.subscribe(Main::applyLogging);
+
         UserAgentBuilder.builder()
 			.themes(JavaFXThemes.MODENA)
 			.themes(MaterialFXStylesheets.forAssemble(true))
@@ -47,5 +57,17 @@ public class Main extends Application {
 
 		transcriptionHistoryStage.setTitle("Transcription History");
 		transcriptionHistoryStage.show();
+
+		var configuration = Configuration.get();
+		Configuration.watch();
+		SessionCompactor.startBackground(
+			Duration.ofMinutes(configuration.getCompactionIntervalMinutes()),
+			Duration.ofMinutes(configuration.getCompactionMinimumAgeMinutes())
+		);
     }    
+
+    private static void applyLogging(Configuration configuration) {
+		Log.setDirectory(Path.of(configuration.getLogPath()));
+		Log.setLevels(Log.parseLevel(configuration.getLogLevel()), Log.parseLevels(configuration.getLogLevels()));
+    }
 }
@@ -0,0 +1,177 @@
+package ai.speechtotext.audio;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import lombok.Getter;
+
+/**
+ * Conditions live microphone audio before it reaches the recognizer: removes DC offset, evens out the level of
+ * different microphones with automatic gain control, and silences background noise between utterances with a noise
+ * gate.
+ * <p>
+ * Frames are processed in place as 16-bit little endian mono PCM. All working memory is allocated up front, so
+ * processing a frame does not allocate. The cost of every frame is measured; when it exceeds the per-frame budget
+ * several frames in a row, conditioning is bypassed for a while so it can never make the live path fall behind.
+ * </p>
+ */
+public class AudioConditioner {
+
+    private static final VarHandle PCM16 = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /** Level the gain control aims for, about -20 dBFS. */
+    private static final float TARGET_RMS = 3300f;
+    private static final float MIN_GAIN = 0.5f;
+    private static final float MAX_GAIN = 8f;
+
+    /** Levels below which the gate closes, and above which it opens again. */
+    private static final float GATE_CLOSE_RMS = 90f;
+    private static final float GATE_OPEN_RMS = 140f;
+    private static final long GATE_HOLD_MILLIS = 400;
+
+    /** Time constants of the DC estimate and of the gain going down (attack) and up (release). */
+    private static final float DC_SECONDS = 1f;
+    private static final float ATTACK_SECONDS = 0.05f;
+    private static final float RELEASE_SECONDS = 2f;
+
+    private static final int BYPASS_AFTER_OVERRUNS = 8;
+
+    /** Frames that run before the JIT has compiled the kernels do not count towards bypassing. */
+    private static final int WARMUP_FRAMES = 64;
+    private static final long BYPASS_NANOS = 5_000_000_000L;
+
+    private final AudioKernels kernels = AudioKernels.INSTANCE;
+
+    private final float sampleRate;
+    private final float[] samples;
+
+    @Getter
+    private final long budgetNanos;
+
+    private float dcOffset;
+    private float gain = 1f;
+    private float appliedGain = 1f;
+    private boolean gateOpen = true;
+    private long silentSamples;
+
+    @Getter
+    private long frameCount, lastFrameNanos, maxFrameNanos, overBudgetCount;
+    private long totalFrameNanos;
+    private int consecutiveOverruns;
+    private long bypassedUntil;
+
+    /**
+     * @param sampleRate    the sample rate of the audio
+     * @param maxFrameBytes the largest frame that will be passed to {@link #process}, larger frames are processed in
+     *                      slices of this size
+     * @param budgetNanos   the CPU time a frame may take
+     */
+    public AudioConditioner(float sampleRate, int maxFrameBytes, long budgetNanos) {
+        this.sampleRate = sampleRate;
+        this.samples = new float[Math.max(1, maxFrameBytes / 2)];
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * Uses a budget of 5% of the duration of a full frame.
+     */
+    public AudioConditioner(float sampleRate, int maxFrameBytes) {
+        this(sampleRate, maxFrameBytes, (long) (maxFrameBytes / 2 / sampleRate * 1e9 * 0.05));
+    }
+
+    /**
+     * Conditions {@code length} bytes of 16-bit little endian mono PCM in place.
+     */
+    public void process(byte[] buffer, int length) {
+        long start = System.nanoTime();
+        if (start < bypassedUntil) {
+            return;
+        }
+
+        for (int offset = 0; offset + 1 < length; offset += samples.length * 2) {
+            processSlice(buffer, offset, Math.min(samples.length, (length - offset) / 2));
+        }
+
+        long elapsed = System.nanoTime() - start;
+        frameCount++;
+        lastFrameNanos = elapsed;
+        totalFrameNanos += elapsed;
+        maxFrameNanos = Math.max(maxFrameNanos, elapsed);
+
+        if (elapsed > budgetNanos) {
+            overBudgetCount++;
+            if (frameCount > WARMUP_FRAMES && ++consecutiveOverruns >= BYPASS_AFTER_OVERRUNS) {
+                consecutiveOverruns = 0;
+                bypassedUntil = System.nanoTime() + BYPASS_NANOS;
+            }
+        } else {
+            consecutiveOverruns = 0;
+        }
+    }
+
+    private void processSlice(byte[] buffer, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            samples[i] = (short) PCM16.get(buffer, offset + i * 2);
+        }
+
+        float seconds = count / sampleRate;
+
+        float mean = kernels.sum(samples, count) / count;
+        dcOffset += (mean - dcOffset) * Math.min(1f, seconds / DC_SECONDS);
+        float rms = (float) Math.sqrt(kernels.subtractAndSquare(samples, count, dcOffset) / count);
+
+        updateGate(rms, count);
+
+        if (gateOpen) {
+            float targetGain = Math.max(MIN_GAIN, Math.min(MAX_GAIN, TARGET_RMS / Math.max(rms, 1f)));
+            float timeConstant = targetGain < gain ? ATTACK_SECONDS : RELEASE_SECONDS;
+            gain += (targetGain - gain) * Math.min(1f, seconds / timeConstant);
+        }
+
+        // Ramping from the previous gain avoids clicks, also when the gate opens or closes
+        float outputGain = gateOpen ? gain : 0f;
+        kernels.applyGainRamp(samples, count, appliedGain, outputGain);
+        appliedGain = outputGain;
+
+        for (int i = 0; i < count; i++) {
+            PCM16.set(buffer, offset + i * 2, (short) Math.round(samples[i]));
+        }
+    }
+
+    private void updateGate(float rms, int count) {
+        if (rms >= GATE_OPEN_RMS) {
+            gateOpen = true;
+            silentSamples = 0;
+        } else if (rms < GATE_CLOSE_RMS) {
+            silentSamples += count;
+            if (silentSamples * 1000 / sampleRate >= GATE_HOLD_MILLIS) {
+                gateOpen = false;
+            }
+        }
+    }
+
+    public double averageFrameNanos() {
+        return frameCount == 0 ? 0 : (double) totalFrameNanos / frameCount;
+    }
+
+    public boolean isBypassed() {
+        return System.nanoTime() < bypassedUntil;
+    }
+
+    public boolean isGateOpen() {
+        return gateOpen;
+    }
+
+    public float currentGain() {
+        return gain;
+    }
+
+    @Override
+    public String toString() {
+        return "conditioner[frames=%d avg=%.1fus max=%.1fus budget=%.1fus overBudget=%d gain=%.2f gate=%s%s]".formatted(
+            frameCount, averageFrameNanos() / 1000, maxFrameNanos / 1000.0, budgetNanos / 1000.0, overBudgetCount,
+            gain, gateOpen ? "open" : "closed", isBypassed() ? " bypassed" : ""
+        );
+    }
+}
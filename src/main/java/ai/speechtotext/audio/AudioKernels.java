@@ -0,0 +1,79 @@
+package ai.speechtotext.audio;
+
+/**
+ * Inner loops of the audio processing code. When the JDK Vector API module is available ({@code --add-modules
+ * jdk.incubator.vector}) the SIMD implementation is used, otherwise a scalar one with the same results.
+ */
+abstract class AudioKernels {
+
+    static final AudioKernels INSTANCE = create();
+
+    private static AudioKernels create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new VectorAudioKernels();
+            } catch (LinkageError _) {
+                // Fall through to the scalar kernels
+            }
+        }
+        return new ScalarAudioKernels();
+    }
+
+    /**
+     * @return the name of the implementation in use, for benchmark reports
+     */
+    abstract String name();
+
+    /**
+     * @return the dot product of {@code a[aOffset, aOffset + length)} and {@code b[bOffset, bOffset + length)}
+     */
+    abstract float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Averages interleaved 16-bit stereo frames into mono samples. Each int holds one little endian frame, the left
+     * sample in its low half and the right sample in its high half.
+     */
+    abstract void downmixStereo(int[] frames, int count, float[] output, int outputOffset);
+
+    /**
+     * @return the sum of {@code samples[0, count)}
+     */
+    abstract float sum(float[] samples, int count);
+
+    /**
+     * Subtracts {@code offset} from {@code samples[0, count)} in place.
+     *
+     * @return the sum of squares of the result
+     */
+    abstract float subtractAndSquare(float[] samples, int count, float offset);
+
+    /**
+     * Multiplies {@code samples[0, count)} in place by a gain that ramps linearly from {@code from} to {@code to},
+     * clamping the result to the 16-bit range.
+     */
+    abstract void applyGainRamp(float[] samples, int count, float from, float to);
+
+    static void downmix(short[] samples, int frames, int channels, float[] output, int outputOffset) {
+        if (channels == 1) {
+            for (int i = 0; i < frames; i++) {
+                output[outputOffset + i] = samples[i];
+            }
+            return;
+        }
+
+        float scale = 1f / channels;
+        for (int i = 0, s = 0; i < frames; i++) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += samples[s++];
+            }
+            output[outputOffset + i] = sum * scale;
+        }
+    }
+
+    static void toPcm16(float[] samples, int count, short[] output) {
+        for (int i = 0; i < count; i++) {
+            output[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(samples[i])));
+        }
+    }
+}
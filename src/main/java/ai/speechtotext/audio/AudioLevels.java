@@ -0,0 +1,29 @@
+package ai.speechtotext.audio;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Loudness of raw 16-bit little endian mono audio, as captured from the microphone.
+ */
+public class AudioLevels {
+
+    private static final VarHandle PCM16 = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private AudioLevels() {
+    }
+
+    /**
+     * @return the root mean square of the samples in {@code buffer[0, length)}, 0 if there are none
+     */
+    public static double rms(byte[] buffer, int length) {
+        long sum = 0;
+        int count = length / 2;
+        for (int i = 0; i < count; i++) {
+            int sample = (short) PCM16.get(buffer, i * 2);
+            sum += (long) sample * sample;
+        }
+        return count == 0 ? 0 : Math.sqrt((double) sum / count);
+    }
+}
@@ -0,0 +1,223 @@
+package ai.speechtotext.audio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+import lombok.Getter;
+
+/**
+ * Reads the samples of a PCM WAV file straight from a memory mapping of the file.
+ * <p>
+ * The RIFF header is parsed here rather than by Java Sound, and the data chunk is mapped in windows of up to
+ * {@link #WINDOW_BYTES}, so reading a block is a single copy out of the page cache however large the block is. Reads
+ * always end on a frame boundary. Files of any length are supported, including recordings whose header was never
+ * finalized and claims more data than the file holds.
+ * </p>
+ */
+public class MappedWavReader extends InputStream {
+
+    /** Largest mapped window, a whole number of 4 KiB pages. */
+    private static final long WINDOW_BYTES = 256L << 20;
+
+    // Chunk IDs, read as little endian integers
+    private static final int RIFF = 0x46464952, WAVE = 0x45564157, FMT = 0x20746D66, DATA = 0x61746164;
+
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final FileChannel channel;
+
+    @Getter
+    private final AudioFormat format;
+
+    /** Position and length of the samples in the file. */
+    private final long dataOffset;
+
+    @Getter
+    private final long dataLength;
+
+    private final int frameSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    private MappedWavReader(FileChannel channel, AudioFormat format, long dataOffset, long dataLength) {
+        this.channel = channel;
+        this.format = format;
+        this.dataOffset = dataOffset;
+        this.frameSize = format.getFrameSize();
+        this.dataLength = dataLength - dataLength % frameSize;
+    }
+
+    /**
+     * Opens a WAV file holding 8, 16, 24 or 32-bit integer PCM.
+     *
+     * @throws IOException if the file is not a RIFF WAVE file or holds another encoding
+     */
+    public static MappedWavReader open(Path path) throws IOException {
+        var channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            var header = read(channel, 0, 12);
+            int riff = header.getInt();
+            header.getInt(); // RIFF size, not reliable for the same reasons as the data size
+            if (riff != RIFF || header.getInt() != WAVE) {
+                throw new IOException("Not a WAV file: " + path);
+            }
+
+            AudioFormat format = null;
+            long offset = 12;
+            while (offset + 8 <= size) {
+                var chunk = read(channel, offset, 8);
+                int id = chunk.getInt();
+                long length = Integer.toUnsignedLong(chunk.getInt());
+                long body = offset + 8;
+
+                if (id == FMT) {
+                    format = parseFormat(read(channel, body, (int) Math.min(length, 40)), path);
+                } else if (id == DATA) {
+                    if (format == null) {
+                        throw new IOException("WAV data before format: " + path);
+                    }
+                    // Unfinished recordings leave the length at 0 or 0xFFFFFFFF, and files over 4 GB overflow it
+                    long available = size - body;
+                    if (length == 0 || length > available || available > 0xFFFFFFFFL) {
+                        length = available;
+                    }
+                    return new MappedWavReader(channel, format, body, length);
+                }
+
+                // Chunks are padded to an even length
+                offset = body + length + (length & 1);
+            }
+            throw new IOException("WAV file without data: " + path);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static AudioFormat parseFormat(ByteBuffer fmt, Path path) throws IOException {
+        if (fmt.remaining() < 16) {
+            throw new IOException("Truncated WAV format: " + path);
+        }
+
+        int tag = Short.toUnsignedInt(fmt.getShort());
+        int channels = Short.toUnsignedInt(fmt.getShort());
+        int sampleRate = fmt.getInt();
+        fmt.getInt(); // byte rate
+        int blockAlign = Short.toUnsignedInt(fmt.getShort());
+        int bits = Short.toUnsignedInt(fmt.getShort());
+
+        if (tag == FORMAT_EXTENSIBLE && fmt.remaining() >= 10) {
+            fmt.position(fmt.position() + 8); // extension size, valid bits, channel mask
+            tag = Short.toUnsignedInt(fmt.getShort()); // first two bytes of the sub-format GUID
+        }
+
+        if (tag != FORMAT_PCM || bits % 8 != 0 || bits < 8 || bits > 32 || channels == 0
+            || blockAlign != channels * bits / 8) {
+            throw new IOException("Unsupported WAV encoding (format %d, %d bits): %s".formatted(tag, bits, path));
+        }
+
+        // 8-bit WAV samples are unsigned, wider ones signed, all little endian
+        return new AudioFormat(sampleRate, bits, channels, bits > 8, false);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of WAV file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @return the samples as an audio stream, which reads through this reader without further buffering
+     */
+    public AudioInputStream toAudioInputStream() {
+        return new AudioInputStream(this, format, dataLength / frameSize);
+    }
+
+    /**
+     * @return the largest multiple of the frame size not above {@code bytes}, so blocks never split a frame
+     */
+    public int alignedBlockSize(int bytes) {
+        return Math.max(frameSize, bytes - bytes % frameSize);
+    }
+
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    /**
+     * Copies up to {@code len} bytes, rounded down to whole frames when at least one frame is requested.
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long remaining = dataLength - position;
+        if (remaining <= 0) {
+            return len == 0 ? 0 : -1;
+        }
+
+        int count = (int) Math.min(len, remaining);
+        if (count >= frameSize) {
+            count -= count % frameSize;
+        }
+
+        int copied = 0;
+        while (copied < count) {
+            long windowOffset = position - windowStart;
+            if (window == null || windowOffset < 0 || windowOffset >= window.capacity()) {
+                map();
+                windowOffset = 0;
+            }
+            int chunk = (int) Math.min(count - copied, window.capacity() - windowOffset);
+            window.get((int) windowOffset, b, off + copied, chunk);
+            copied += chunk;
+            position += chunk;
+        }
+        return copied;
+    }
+
+    private void map() throws IOException {
+        windowStart = position;
+        long length = Math.min(WINDOW_BYTES, dataLength - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + position, length);
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n - n % frameSize, dataLength - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, dataLength - position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
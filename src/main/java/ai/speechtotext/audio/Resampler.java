@@ -0,0 +1,230 @@
+package ai.speechtotext.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import lombok.Getter;
+
+/**
+ * Streaming polyphase resampler that turns 16-bit little endian PCM with any sample rate and channel count into mono
+ * PCM at {@code outputRate}.
+ * <p>
+ * The rate ratio is reduced to {@code L / M}. A Kaiser windowed sinc low-pass filter is designed at {@code L} times the
+ * input rate and split into {@code L} phases of {@link #getTapsPerPhase()} taps, so that every output sample costs a
+ * single dot product over the most recent input samples. Input can be fed in blocks of any size; the filter history
+ * is kept between calls.
+ * </p>
+ */
+public class Resampler {
+
+    private static final int BYTES_PER_SAMPLE = 2;
+    private static final int MIN_TAPS_PER_PHASE = 16;
+    private static final double KAISER_BETA = 8.0;
+
+    /** Fraction of the output Nyquist frequency that is kept, the rest is the transition band. */
+    private static final double PASSBAND = 0.92;
+
+    private final AudioKernels kernels = AudioKernels.INSTANCE;
+
+    @Getter
+    private final int inputRate, channels, outputRate, tapsPerPhase;
+
+    private final int upFactor, downFactor;
+    private final boolean passthrough;
+
+    /** Phase {@code p} occupies {@code [p * tapsPerPhase, (p + 1) * tapsPerPhase)}, stored in reverse order. */
+    private final float[] coefficients;
+
+    /** Mono input samples, the first {@code tapsPerPhase - 1} of which are history from previous blocks. */
+    private float[] samples;
+    private int buffered;
+
+    /** Position of the next output sample, in input samples times {@code upFactor}, relative to samples[0]. */
+    private long position;
+
+    private short[] pcm = new short[0];
+    private int[] frames = new int[0];
+    private float[] output = new float[0];
+    private short[] outputPcm = new short[0];
+
+    public Resampler(int inputRate, int channels, int outputRate) {
+        if (inputRate <= 0 || outputRate <= 0 || channels <= 0) {
+            throw new IllegalArgumentException(
+                "Invalid resampler configuration: %d Hz, %d channel(s) to %d Hz".formatted(inputRate, channels, outputRate)
+            );
+        }
+
+        this.inputRate = inputRate;
+        this.channels = channels;
+        this.outputRate = outputRate;
+
+        int gcd = gcd(inputRate, outputRate);
+        this.upFactor = outputRate / gcd;
+        this.downFactor = inputRate / gcd;
+        this.passthrough = upFactor == 1 && downFactor == 1;
+
+        // The impulse response gets longer, in input samples, the more the signal is decimated
+        double decimation = Math.max(1.0, (double) inputRate / outputRate);
+        this.tapsPerPhase = passthrough ? 1 : roundUp((int) Math.ceil(MIN_TAPS_PER_PHASE * decimation), 8);
+        this.coefficients = passthrough ? new float[] {1f} : design(upFactor, tapsPerPhase, inputRate, outputRate);
+
+        this.samples = new float[tapsPerPhase - 1 + 4096];
+        rewind();
+    }
+
+    /**
+     * Forgets all buffered input, for example after seeking.
+     */
+    public void reset() {
+        Arrays.fill(samples, 0f);
+        rewind();
+    }
+
+    /**
+     * Starts the filter over on a history of zeros, which {@code samples} must hold. Private, so the constructor can
+     * call it.
+     */
+    private void rewind() {
+        buffered = tapsPerPhase - 1;
+        position = (long) (tapsPerPhase - 1) * upFactor;
+    }
+
+    /**
+     * @return the largest number of output bytes {@link #process} can produce for {@code inputBytes} of input
+     */
+    public int maxOutputBytes(int inputBytes) {
+        long inputFrames = inputBytes / (BYTES_PER_SAMPLE * channels) + 1;
+        return (int) ((inputFrames * upFactor) / downFactor + 2) * BYTES_PER_SAMPLE;
+    }
+
+    /**
+     * Resamples a block of interleaved 16-bit little endian PCM. A trailing partial frame is ignored, so callers should
+     * pass whole frames.
+     *
+     * @param output receives 16-bit little endian mono PCM, must hold at least {@link #maxOutputBytes(int)} bytes
+     * @return the number of bytes written to {@code output}
+     */
+    public int process(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        int frameCount = length / (BYTES_PER_SAMPLE * channels);
+        if (frameCount == 0) {
+            return 0;
+        }
+
+        ensureInputCapacity(frameCount);
+        var inputBuffer = ByteBuffer.wrap(input, offset, frameCount * BYTES_PER_SAMPLE * channels).order(ByteOrder.LITTLE_ENDIAN);
+        if (channels == 2) {
+            // One int per stereo frame, so the kernel can split and average both halves in vector lanes
+            inputBuffer.asIntBuffer().get(frames, 0, frameCount);
+            kernels.downmixStereo(frames, frameCount, samples, buffered);
+        } else {
+            inputBuffer.asShortBuffer().get(pcm, 0, frameCount * channels);
+            AudioKernels.downmix(pcm, frameCount, channels, samples, buffered);
+        }
+        buffered += frameCount;
+
+        int produced = filter();
+
+        if (outputPcm.length < produced) {
+            outputPcm = new short[produced];
+        }
+        AudioKernels.toPcm16(this.output, produced, outputPcm);
+        ByteBuffer.wrap(output, outputOffset, produced * BYTES_PER_SAMPLE)
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .asShortBuffer()
+            .put(outputPcm, 0, produced);
+
+        return produced * BYTES_PER_SAMPLE;
+    }
+
+    private int filter() {
+        int maxOutput = (int) ((buffered * (long) upFactor - position) / downFactor + 1);
+        if (output.length < maxOutput) {
+            output = new float[maxOutput];
+        }
+
+        int produced = 0;
+        int history = tapsPerPhase - 1;
+        while (true) {
+            int index = (int) (position / upFactor);
+            if (index >= buffered) {
+                break;
+            }
+            int phase = (int) (position % upFactor);
+            output[produced++] = kernels.dot(coefficients, phase * tapsPerPhase, samples, index - history, tapsPerPhase);
+            position += downFactor;
+        }
+
+        // Keep only the history the next output sample needs
+        int discard = (int) Math.min(position / upFactor - history, buffered - history);
+        if (discard > 0) {
+            System.arraycopy(samples, discard, samples, 0, buffered - discard);
+            buffered -= discard;
+            position -= (long) discard * upFactor;
+        }
+
+        return produced;
+    }
+
+    private void ensureInputCapacity(int frameCount) {
+        if (samples.length < buffered + frameCount) {
+            samples = Arrays.copyOf(samples, buffered + frameCount);
+        }
+        if (channels == 2 && frames.length < frameCount) {
+            frames = new int[frameCount];
+        }
+        if (channels != 2 && pcm.length < frameCount * channels) {
+            pcm = new short[frameCount * channels];
+        }
+    }
+
+    private static float[] design(int phases, int tapsPerPhase, int inputRate, int outputRate) {
+        int length = phases * tapsPerPhase;
+        double prototypeRate = (double) inputRate * phases;
+        double cutoff = PASSBAND * Math.min(inputRate, outputRate) / 2.0 / prototypeRate;
+        double center = (length - 1) / 2.0;
+        double besselBeta = bessel0(KAISER_BETA);
+
+        double[] prototype = new double[length];
+        double sum = 0;
+        for (int n = 0; n < length; n++) {
+            double x = n - center;
+            double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double ratio = 2.0 * n / (length - 1) - 1;
+            double window = bessel0(KAISER_BETA * Math.sqrt(Math.max(0, 1 - ratio * ratio))) / besselBeta;
+            prototype[n] = sinc * window;
+            sum += prototype[n];
+        }
+
+        // Every phase sees one in `phases` coefficients, so the prototype needs a gain of `phases`
+        float[] coefficients = new float[length];
+        for (int phase = 0; phase < phases; phase++) {
+            for (int tap = 0; tap < tapsPerPhase; tap++) {
+                double value = prototype[phase + tap * phases] * phases / sum;
+                coefficients[phase * tapsPerPhase + (tapsPerPhase - 1 - tap)] = (float) value;
+            }
+        }
+        return coefficients;
+    }
+
+    private static double bessel0(double x) {
+        double sum = 1;
+        double term = 1;
+        for (int k = 1; k < 50; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static int roundUp(int value, int multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+}
@@ -0,0 +1,129 @@
+package ai.speechtotext.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Converts an audio stream of any sample rate and channel count into 16-bit mono PCM at a target rate using a
+ * {@link Resampler}, in place of {@code AudioSystem.getAudioInputStream(format, stream)}, which rejects most rate
+ * conversions.
+ */
+public class ResamplingInputStream extends InputStream {
+
+    private static final int READ_BLOCK_BYTES = 64 * 1024;
+
+    private final AudioInputStream source;
+    private final Resampler resampler;
+
+    private final byte[] input;
+    private final byte[] output;
+    private int outputPosition, outputLimit;
+    private boolean endOfSource;
+
+    public ResamplingInputStream(AudioInputStream source, int outputRate) {
+        var format = source.getFormat();
+        if (!isPcm16LittleEndian(format)) {
+            throw new IllegalArgumentException("Expected 16-bit little endian PCM, got " + format);
+        }
+
+        this.source = source;
+        this.resampler = new Resampler(Math.round(format.getSampleRate()), format.getChannels(), outputRate);
+        this.input = new byte[READ_BLOCK_BYTES - READ_BLOCK_BYTES % format.getFrameSize()];
+        this.output = new byte[resampler.maxOutputBytes(input.length)];
+    }
+
+    /**
+     * Opens an audio file as 16-bit little endian mono PCM at {@code sampleRate}. PCM WAV files are read through a
+     * {@link MappedWavReader}, other files through Java Sound. Files already in the target format are returned as they
+     * are; other sample encodings are first converted to 16-bit PCM by Java Sound at their own rate, which it supports,
+     * and then resampled.
+     */
+    public static AudioInputStream open(File file, float sampleRate) throws IOException, UnsupportedAudioFileException {
+        var target = new AudioFormat(sampleRate, 16, 1, true, false);
+        AudioInputStream stream;
+        try {
+            stream = MappedWavReader.open(file.toPath()).toAudioInputStream();
+        } catch (IOException e) {
+            // Not a PCM WAV file, Java Sound may still read it
+            stream = AudioSystem.getAudioInputStream(file);
+        }
+        var format = stream.getFormat();
+
+        if (format.matches(target)) {
+            return stream;
+        }
+
+        if (!isPcm16LittleEndian(format)) {
+            var pcm = new AudioFormat(format.getSampleRate(), 16, format.getChannels(), true, false);
+            stream = AudioSystem.getAudioInputStream(pcm, stream);
+        }
+
+        // Known lengths are carried over, so callers can report progress
+        long frames = stream.getFrameLength() == AudioSystem.NOT_SPECIFIED
+            ? AudioSystem.NOT_SPECIFIED
+            : (long) (stream.getFrameLength() * (double) sampleRate / format.getSampleRate());
+        return new AudioInputStream(new ResamplingInputStream(stream, Math.round(sampleRate)), target, frames);
+    }
+
+    private static boolean isPcm16LittleEndian(AudioFormat format) {
+        return format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED
+            && format.getSampleSizeInBits() == 16
+            && !format.isBigEndian();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        while (outputPosition == outputLimit) {
+            if (endOfSource) {
+                return -1;
+            }
+            fill();
+        }
+
+        int count = Math.min(len, outputLimit - outputPosition);
+        System.arraycopy(output, outputPosition, b, off, count);
+        outputPosition += count;
+        return count;
+    }
+
+    private void fill() throws IOException {
+        int length = 0;
+        while (length < input.length) {
+            int read = source.read(input, length, input.length - length);
+            if (read < 0) {
+                endOfSource = true;
+                break;
+            }
+            length += read;
+        }
+
+        outputPosition = 0;
+        outputLimit = resampler.process(input, 0, length, output, 0);
+    }
+
+    @Override
+    public int available() {
+        return outputLimit - outputPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
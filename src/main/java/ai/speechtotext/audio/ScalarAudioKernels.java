@@ -0,0 +1,55 @@
+package ai.speechtotext.audio;
+
+final class ScalarAudioKernels extends AudioKernels {
+
+    @Override
+    String name() {
+        return "scalar";
+    }
+
+    @Override
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    void downmixStereo(int[] frames, int count, float[] output, int outputOffset) {
+        for (int i = 0; i < count; i++) {
+            int frame = frames[i];
+            output[outputOffset + i] = ((short) frame + (frame >> 16)) * 0.5f;
+        }
+    }
+
+    @Override
+    float sum(float[] samples, int count) {
+        float sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+        }
+        return sum;
+    }
+
+    @Override
+    float subtractAndSquare(float[] samples, int count, float offset) {
+        float sum = 0;
+        for (int i = 0; i < count; i++) {
+            float value = samples[i] - offset;
+            samples[i] = value;
+            sum += value * value;
+        }
+        return sum;
+    }
+
+    @Override
+    void applyGainRamp(float[] samples, int count, float from, float to) {
+        float step = (to - from) / count;
+        for (int i = 0; i < count; i++) {
+            float value = samples[i] * (from + step * i);
+            samples[i] = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+        }
+    }
+}
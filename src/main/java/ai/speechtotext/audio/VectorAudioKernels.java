@@ -0,0 +1,120 @@
+package ai.speechtotext.audio;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorAudioKernels extends AudioKernels {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    // Same bit size as FLOATS, so an int vector converts lane for lane into a float vector
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    private static final float[] LANE_INDEXES = new float[FLOATS.length()];
+
+    static {
+        for (int i = 0; i < LANE_INDEXES.length; i++) {
+            LANE_INDEXES[i] = i;
+        }
+    }
+
+    @Override
+    String name() {
+        return "vector-" + FLOATS.length() + "x" + FLOATS.elementSize();
+    }
+
+    @Override
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        var sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            var x = FloatVector.fromArray(FLOATS, a, aOffset + i);
+            var y = FloatVector.fromArray(FLOATS, b, bOffset + i);
+            // mul + add rather than fma, which falls back to a slow scalar path without hardware FMA
+            sum = x.mul(y).add(sum);
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    void downmixStereo(int[] frames, int count, float[] output, int outputOffset) {
+        int i = 0;
+        for (int bound = INTS.loopBound(count); i < bound; i += INTS.length()) {
+            var frame = IntVector.fromArray(INTS, frames, i);
+            var left = frame.lanewise(VectorOperators.LSHL, 16).lanewise(VectorOperators.ASHR, 16);
+            var right = frame.lanewise(VectorOperators.ASHR, 16);
+            ((FloatVector) left.add(right).convert(VectorOperators.I2F, 0))
+                .mul(0.5f)
+                .intoArray(output, outputOffset + i);
+        }
+
+        for (; i < count; i++) {
+            int frame = frames[i];
+            output[outputOffset + i] = ((short) frame + (frame >> 16)) * 0.5f;
+        }
+    }
+
+    @Override
+    float sum(float[] samples, int count) {
+        var sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(count); i < bound; i += FLOATS.length()) {
+            sum = sum.add(FloatVector.fromArray(FLOATS, samples, i));
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < count; i++) {
+            result += samples[i];
+        }
+        return result;
+    }
+
+    @Override
+    float subtractAndSquare(float[] samples, int count, float offset) {
+        var sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(count); i < bound; i += FLOATS.length()) {
+            var value = FloatVector.fromArray(FLOATS, samples, i).sub(offset);
+            value.intoArray(samples, i);
+            sum = value.mul(value).add(sum);
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < count; i++) {
+            float value = samples[i] - offset;
+            samples[i] = value;
+            result += value * value;
+        }
+        return result;
+    }
+
+    @Override
+    void applyGainRamp(float[] samples, int count, float from, float to) {
+        float step = (to - from) / count;
+        // Lane j of `gain` holds the gain of sample i + j
+        var gain = FloatVector.fromArray(FLOATS, LANE_INDEXES, 0).mul(step).add(from);
+        var advance = step * FLOATS.length();
+
+        int i = 0;
+        for (int bound = FLOATS.loopBound(count); i < bound; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, samples, i)
+                .mul(gain)
+                .max(Short.MIN_VALUE)
+                .min(Short.MAX_VALUE)
+                .intoArray(samples, i);
+            gain = gain.add(advance);
+        }
+
+        for (; i < count; i++) {
+            float value = samples[i] * (from + step * i);
+            samples[i] = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+        }
+    }
+}
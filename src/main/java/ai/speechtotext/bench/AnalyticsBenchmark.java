@@ -0,0 +1,117 @@
+package ai.speechtotext.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import session.Sessions;
+import session.analytics.AnalyticsCache;
+import session.analytics.SessionAnalytics;
+
+/**
+ * Times the teacher dashboard's analytics over a sessions folder: a cold run without a cache, a warm run with nothing
+ * changed, and a run after a few sessions changed.
+ * <pre>
+ * java -cp live-captioning-system.jar ai.speechtotext.bench.AnalyticsBenchmark [--sessions folder | --generate 3000]
+ *     [--lines 400] [--changed 20]
+ * </pre>
+ * Without {@code --sessions}, {@code --generate} sessions of {@code --lines} lines each are written to a temporary
+ * folder, which is deleted afterwards. An existing folder's cache is left alone.
+ */
+public class AnalyticsBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Path sessions = null;
+        int generate = 3000;
+        int lines = 400;
+        int changed = 20;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sessions" -> sessions = Path.of(args[++i]);
+                case "--generate" -> generate = Integer.parseInt(args[++i]);
+                case "--lines" -> lines = Integer.parseInt(args[++i]);
+                case "--changed" -> changed = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        boolean generated = sessions == null;
+        if (generated) {
+            sessions = Files.createTempDirectory("analytics-benchmark");
+            generate(sessions, generate, lines);
+        }
+
+        try {
+            var list = Sessions.list(sessions);
+            int processors = Runtime.getRuntime().availableProcessors();
+            System.out.printf("%d sessions, %d processors%n", list.size(), processors);
+
+            var cache = AnalyticsCache.empty();
+            var cold = SessionAnalytics.analyze(list, AnalyticsCache.empty(), cache, processors);
+            print("cold, 1 thread", SessionAnalytics.analyze(list, AnalyticsCache.empty(), AnalyticsCache.empty(), 1));
+            print("cold", cold);
+            print("warm", SessionAnalytics.analyze(list, cache, AnalyticsCache.empty(), processors));
+
+            if (generated) {
+                for (int i = 0; i < Math.min(changed, list.size()); i++) {
+                    Files.writeString(list.get(i).path().resolve(Sessions.TRANSCRIPTION_FILE_NAME), "[0.00 -> 1.00] changed lesson\n",
+                        StandardOpenOption.APPEND);
+                }
+                print(changed + " changed", SessionAnalytics.analyze(list, cache, AnalyticsCache.empty(), processors));
+            }
+
+            var report = cold;
+            System.out.printf("%d words, %.0f words/min, %.0f%% captioned, %d terms, top: %s%n", report.words(), report.wordsPerMinute(),
+                report.captionedFraction() * 100, report.vocabularySize(),
+                report.topTerms().stream().limit(5).map(SessionAnalytics.Term::text).toList());
+        } finally {
+            if (generated) {
+                delete(sessions);
+            }
+        }
+    }
+
+    private static void print(String label, SessionAnalytics.Report report) {
+        System.out.printf("%-16s %6d ms, %5d sessions read%n", label, report.elapsedMillis(), report.reprocessed());
+    }
+
+    private static void generate(Path folder, int count, int lines) throws IOException {
+        var random = new Random(11);
+        String[] vocabulary = new String[5000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = "term" + Integer.toString(i, 36);
+        }
+
+        for (int s = 0; s < count; s++) {
+            Path session = folder.resolve("session_2026-%02d-%02d_%02d-%02d-00".formatted(1 + s / 900 % 12, 1 + s / 30 % 28, s / 60 % 24, s % 60));
+            Files.createDirectories(session);
+            var text = new StringBuilder();
+            double time = 0;
+            for (int l = 0; l < lines; l++) {
+                double duration = 2 + random.nextDouble() * 4;
+                text.append("[%.2f -> %.2f] ".formatted(time, time + duration));
+                int words = (int) (duration * 2.3);
+                for (int w = 0; w < words; w++) {
+                    if (w > 0) text.append(' ');
+                    // Zipf-like: a few terms are said far more often than the rest
+                    text.append(vocabulary[(int) (vocabulary.length * Math.pow(random.nextDouble(), 3))]);
+                }
+                text.append('\n');
+                time += duration + random.nextDouble() * 2;
+            }
+            Files.writeString(session.resolve(Sessions.TRANSCRIPTION_FILE_NAME), text);
+        }
+    }
+
+    private static void delete(Path folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (var path : paths.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ai.speechtotext.bench;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.vosk.Model;
+
+import ai.speechtotext.command.CommandSpotter;
+import ai.speechtotext.engine.VoskEngine;
+import ai.speechtotext.transcription.LineTranscription;
+import ai.speechtotext.transcription.Transcriber;
+import ai.speechtotext.transcription.TranscriptionChannel;
+
+/**
+ * Measures how quickly spoken commands are detected, and whether spotting them slows down the captions, by replaying a
+ * WAV file through the live path with a {@link CommandSpotter} attached. Run it once more with {@code --no-spotter} to
+ * compare the caption latency without it.
+ * <pre>
+ * java -cp live-captioning-system.jar ai.speechtotext.bench.CommandSpotterBenchmark --wav commands.wav
+ *     [--model models/tl] [--command-model models/en-us-small] [--speed 1|N] [--no-spotter]
+ * </pre>
+ */
+public class CommandSpotterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String base = System.getProperty("user.dir") + "/live-captioning-system/models/";
+        File wav = null;
+        String modelPath = base + "tl";
+        String commandModelPath = base + "en-us-small";
+        double speed = 1;
+        boolean spotter = true;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--wav" -> wav = new File(args[++i]);
+                case "--model" -> modelPath = args[++i];
+                case "--command-model" -> commandModelPath = args[++i];
+                case "--speed" -> speed = Double.parseDouble(args[++i]);
+                case "--no-spotter" -> spotter = false;
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (wav == null) {
+            throw new IllegalArgumentException("--wav is required");
+        }
+
+        var format = new AudioFormat(16000, 16, 1, true, false);
+        var line = new ReplayDataLine(ReplayDataLine.readPcm(wav), format, speed, 0, false, 42);
+        line.open(format);
+        line.start();
+
+        var captionLatency = new LatencyHistogram();
+        var channel = new TranscriptionChannel<LineTranscription>();
+        channel.subscribe(transcription -> {
+            if (transcription == LineTranscription.END) return;
+            captionLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - line.consumedCaptureNanos()));
+            channel.clear();
+        });
+
+        var output = Files.createTempFile("command-transcription", ".txt").toFile();
+        output.deleteOnExit();
+
+        try (var model = new Model(modelPath);
+             var commandModel = spotter ? new Model(commandModelPath) : null) {
+
+            // The transcriber owns the engine and closes it when transcription ends
+            var transcriber = new Transcriber(new VoskEngine(model, format.getSampleRate()), line, null);
+            var commandLatency = new LatencyHistogram();
+            CommandSpotter commandSpotter = null;
+            if (spotter) {
+                commandSpotter = new CommandSpotter(commandModel, format.getSampleRate(), 4096, 32);
+                commandSpotter.getChannel().subscribe(event -> {
+                    commandLatency.record(event.latencyMillis());
+                    System.out.printf("%8.2fs  %-15s %4d ms%n", line.consumedAudioSeconds(), event.command(), event.latencyMillis());
+                });
+                transcriber.setCommandSpotter(commandSpotter);
+            }
+
+            var worker = new Thread(() -> transcriber.transcribe(output, channel, true), "replay-transcriber");
+            worker.start();
+            while (worker.isAlive() && !line.isExhausted()) {
+                TimeUnit.MILLISECONDS.sleep(200);
+            }
+            // Lets the decoders finish the last chunks before stopping
+            TimeUnit.SECONDS.sleep(1);
+
+            transcriber.stop();
+            line.close();
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+
+            System.out.println("Captions: latency[" + captionLatency + "] overruns=" + line.getOverrunCount());
+            if (commandSpotter != null) {
+                commandSpotter.close();
+                System.out.println("Commands: latency[" + commandLatency + "] " + commandSpotter);
+            }
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package ai.speechtotext.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.vosk.Model;
+
+import ai.speechtotext.engine.ScriptedEngine;
+import ai.speechtotext.engine.SpeechEngine;
+import ai.speechtotext.engine.VoskEngine;
+import ai.speechtotext.source.AudioSource;
+import ai.speechtotext.source.StreamSource;
+import ai.speechtotext.transcription.LineTranscription;
+import ai.speechtotext.transcription.Transcriber;
+import ai.speechtotext.transcription.TranscriptionChannel;
+
+import environment.Configuration;
+
+/**
+ * Accuracy and throughput regression runner: transcribes a corpus of WAV files with the file mode {@link Transcriber},
+ * as the application does, and reports word error rate, real-time factor, lines per second and peak heap and resident
+ * (native) memory, per file and for the corpus. Results are written as JSON, and compared with a baseline written by an
+ * earlier run.
+ * <pre>
+ * java -cp live-captioning-system.jar ai.speechtotext.bench.CorpusRunner --corpus lessons/
+ *     [--engine vosk | scripted[:0.3]] [--model models/tl] [--runs 3] [--output results.json]
+ *     [--baseline baseline.json] [--fail-on wer:0.005,rtf:10%]
+ * </pre>
+ * The reference transcript of {@code lesson.wav} is {@code lesson.txt}, either plain text or a session transcription
+ * whose times are ignored; files without one are timed but not scored. Every file is transcribed {@code --runs} times
+ * and the fastest run counts, which keeps timings steady on a busy machine.
+ * <p>
+ * {@code --fail-on} lists the metrics that must not regress against the baseline, each with the change allowed,
+ * absolute or in percent: {@code wer}, {@code rtf}, {@code linesPerSecond}, {@code peakHeapMb} and {@code peakRssMb}.
+ * The runner exits with status 1 when one does. A results file is a valid baseline for later runs.
+ * </p>
+ */
+public class CorpusRunner {
+
+    private static record FileResult(String name, double audioSeconds, double seconds, long lines,
+        WordErrorRate.Result wer, boolean scored, long peakHeap, long peakRss) {
+
+        JSONObject toJson() {
+            var json = new JSONObject();
+            json.put("file", name);
+            json.put("audioSeconds", round(audioSeconds));
+            json.put("seconds", round(seconds));
+            json.put("rtf", round(seconds / audioSeconds));
+            json.put("lines", lines);
+            if (scored) {
+                json.put("wer", round(wer.rate()));
+                json.put("errors", wer.errors());
+                json.put("referenceWords", wer.referenceWords());
+            }
+            json.put("peakHeapMb", peakHeap >> 20);
+            if (peakRss >= 0) json.put("peakRssMb", peakRss >> 20);
+            return json;
+        }
+    }
+
+    /** A metric that must not get worse than the baseline by more than {@code allowed}, a fraction if relative. */
+    private static record Threshold(String metric, double allowed, boolean relative) {
+
+        static Threshold parse(String text) {
+            String[] parts = text.trim().split(":");
+            if (!METRICS.containsKey(parts[0])) {
+                throw new IllegalArgumentException("Unknown metric " + parts[0] + ", expected one of " + METRICS.keySet());
+            }
+            String allowed = parts.length > 1 ? parts[1] : "0";
+            return allowed.endsWith("%")
+                ? new Threshold(parts[0], Double.parseDouble(allowed.substring(0, allowed.length() - 1)) / 100, true)
+                : new Threshold(parts[0], Double.parseDouble(allowed), false);
+        }
+
+        /**
+         * @return whether {@code current} is worse than {@code baseline} by more than allowed
+         */
+        boolean regressed(double baseline, double current) {
+            double worse = METRICS.get(metric) ? current - baseline : baseline - current;
+            return worse > (relative ? allowed * Math.abs(baseline) : allowed);
+        }
+    }
+
+    /** The compared metrics of the corpus totals, and whether higher is worse. */
+    private static final Map<String, Boolean> METRICS = new LinkedHashMap<>();
+
+    static {
+        METRICS.put("wer", true);
+        METRICS.put("rtf", true);
+        METRICS.put("linesPerSecond", false);
+        METRICS.put("peakHeapMb", true);
+        METRICS.put("peakRssMb", true);
+    }
+
+    private static final float SAMPLE_RATE = 16000;
+
+    public static void main(String[] args) throws Exception {
+        File corpus = null;
+        String engine = "vosk";
+        String modelPath = System.getProperty("user.dir") + "/live-captioning-system/models/tl";
+        int runs = 1;
+        Path output = Path.of("corpus-results.json");
+        Path baseline = null;
+        List<Threshold> thresholds = List.of(Threshold.parse("wer:0.005"));
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--corpus" -> corpus = new File(args[++i]);
+                case "--engine" -> engine = args[++i];
+                case "--model" -> modelPath = args[++i];
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--output" -> output = Path.of(args[++i]);
+                case "--baseline" -> baseline = Path.of(args[++i]);
+                case "--fail-on" -> thresholds = Arrays.stream(args[++i].split(",")).map(Threshold::parse).toList();
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (corpus == null) {
+            throw new IllegalArgumentException("--corpus is required");
+        }
+
+        File[] files = corpus.listFiles((_, name) -> name.toLowerCase().endsWith(".wav"));
+        if (files == null || files.length == 0) {
+            throw new IllegalArgumentException("No WAV files in " + corpus);
+        }
+        Arrays.sort(files);
+
+        var configuration = Configuration.get();
+        System.out.printf("Corpus: %s, %d files, engine %s, %d byte blocks, best of %d%n",
+            corpus, files.length, engine, configuration.getFileChunkBytes(), runs);
+        System.out.printf("%-28s %9s %9s %8s %6s %7s %8s %8s%n", "file", "audio s", "wall s", "RTF", "lines", "WER", "heap MB", "rss MB");
+
+        String[] parts = engine.split(":");
+        Model model = parts[0].equals("vosk") ? new Model(modelPath) : null;
+        List<FileResult> results = new ArrayList<>();
+        try {
+            for (File wav : files) {
+                var reference = reference(wav);
+                SpeechEngine.Factory engines = switch (parts[0]) {
+                    case "vosk" -> VoskEngine.factory(model);
+                    case "scripted" -> ScriptedEngine.factory(
+                        reference.isPresent() ? ScriptedEngine.readScript(reference.get()) : List.of(),
+                        parts.length > 1 ? Double.parseDouble(parts[1]) : 0
+                    );
+                    default -> throw new IllegalArgumentException("Unknown engine: " + engine);
+                };
+
+                FileResult best = null;
+                for (int run = 0; run < runs; run++) {
+                    var result = run(wav, engines, reference.isPresent() ? Files.readString(reference.get()) : null);
+                    if (best == null || result.seconds() < best.seconds()) {
+                        best = new FileResult(result.name(), result.audioSeconds(), result.seconds(), result.lines(), result.wer(),
+                            result.scored(), Math.max(result.peakHeap(), best == null ? 0 : best.peakHeap()),
+                            Math.max(result.peakRss(), best == null ? -1 : best.peakRss()));
+                    }
+                }
+                results.add(best);
+                System.out.printf("%-28s %9.1f %9.2f %8.4f %6d %7s %8d %8s%n", best.name(), best.audioSeconds(), best.seconds(),
+                    best.seconds() / best.audioSeconds(), best.lines(),
+                    best.scored() ? "%.2f%%".formatted(best.wer().rate() * 100) : "-",
+                    best.peakHeap() >> 20, best.peakRss() < 0 ? "n/a" : String.valueOf(best.peakRss() >> 20));
+            }
+        } finally {
+            if (model != null) model.close();
+        }
+
+        var report = new JSONObject();
+        report.put("corpus", corpus.getPath());
+        report.put("engine", engine);
+        if (model != null) report.put("model", modelPath);
+        report.put("sampleRate", SAMPLE_RATE);
+        report.put("fileChunkBytes", configuration.getFileChunkBytes());
+        report.put("runs", runs);
+        report.put("java", System.getProperty("java.version"));
+        report.put("processors", Runtime.getRuntime().availableProcessors());
+        report.put("totals", totals(results));
+        var perFile = new JSONArray();
+        results.forEach(result -> perFile.put(result.toJson()));
+        report.put("files", perFile);
+
+        Files.writeString(output, report.toString(2));
+        System.out.println();
+        System.out.println("Totals: " + report.getJSONObject("totals"));
+        System.out.println("Results written to " + output);
+
+        if (baseline != null && !compare(new JSONObject(Files.readString(baseline)), report, thresholds)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Transcribes one file as the application does, sampling memory while it runs.
+     */
+    private static FileResult run(File wav, SpeechEngine.Factory engines, String reference) throws Exception {
+        var hypothesis = new StringBuilder();
+        long[] lines = new long[1];
+        var channel = new TranscriptionChannel<LineTranscription>();
+        channel.subscribe(line -> {
+            if (line != LineTranscription.END) {
+                hypothesis.append(line.text()).append('\n');
+                lines[0]++;
+            }
+            channel.clear();
+        });
+
+        var transcript = Files.createTempFile("corpus-runner", ".txt").toFile();
+        transcript.deleteOnExit();
+
+        System.gc();
+        var heapPools = ManagementFactory.getMemoryPoolMXBeans().stream().filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        var peakRss = new AtomicLong(MemoryProbe.residentSetSize());
+        var sampler = Thread.ofPlatform().daemon().name("corpus-runner-memory").start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peakRss.accumulateAndGet(MemoryProbe.residentSetSize(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        // The length of a converted stream is often unknown, so the audio is measured as it is read
+        var source = new CountingSource(StreamSource.wav(wav, SAMPLE_RATE));
+        long start = System.nanoTime();
+        try {
+            new Transcriber(engines.create(SAMPLE_RATE), source).transcribe(transcript, channel, false);
+        } finally {
+            sampler.interrupt();
+            sampler.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double audioSeconds = source.bytes / (double) source.getFormat().getFrameSize() / source.getFormat().getFrameRate();
+        transcript.delete();
+
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        var wer = reference == null ? WordErrorRate.Result.NONE : WordErrorRate.of(plainText(reference), hypothesis.toString());
+        return new FileResult(wav.getName(), audioSeconds, seconds, lines[0], wer, reference != null, peakHeap, peakRss.get());
+    }
+
+    private static Optional<Path> reference(File wav) {
+        Path transcript = Path.of(wav.getPath().replaceAll("(?i)\\.wav$", ".txt"));
+        return Files.exists(transcript) ? Optional.of(transcript) : Optional.empty();
+    }
+
+    /**
+     * @return the text of a reference, without the times of session transcription lines
+     */
+    private static String plainText(String reference) {
+        return reference.replaceAll("(?m)^\\s*\\[[^\\]]*\\]\\s?", "");
+    }
+
+    private static JSONObject totals(List<FileResult> results) {
+        double audioSeconds = 0, seconds = 0;
+        long lines = 0, peakHeap = 0, peakRss = -1;
+        var wer = WordErrorRate.Result.NONE;
+        boolean scored = false;
+        for (var result : results) {
+            audioSeconds += result.audioSeconds();
+            seconds += result.seconds();
+            lines += result.lines();
+            peakHeap = Math.max(peakHeap, result.peakHeap());
+            peakRss = Math.max(peakRss, result.peakRss());
+            if (result.scored()) {
+                wer = wer.add(result.wer());
+                scored = true;
+            }
+        }
+
+        var json = new JSONObject();
+        json.put("audioSeconds", round(audioSeconds));
+        json.put("seconds", round(seconds));
+        json.put("rtf", round(seconds / audioSeconds));
+        json.put("lines", lines);
+        json.put("linesPerSecond", round(lines / seconds));
+        if (scored) {
+            // Over all reference words, so long files weigh more than short ones
+            json.put("wer", round(wer.rate()));
+            json.put("errors", wer.errors());
+            json.put("referenceWords", wer.referenceWords());
+        }
+        json.put("peakHeapMb", peakHeap >> 20);
+        if (peakRss >= 0) json.put("peakRssMb", peakRss >> 20);
+        return json;
+    }
+
+    /**
+     * Prints every metric against the baseline.
+     *
+     * @return false if a metric of {@code thresholds} regressed
+     */
+    private static boolean compare(JSONObject baseline, JSONObject report, List<Threshold> thresholds) {
+        if (!baseline.optString("engine").equals(report.getString("engine")) || !baseline.optString("corpus").equals(report.getString("corpus"))) {
+            System.out.printf("Warning: baseline is of engine %s on %s%n", baseline.optString("engine"), baseline.optString("corpus"));
+        }
+
+        var before = baseline.getJSONObject("totals");
+        var after = report.getJSONObject("totals");
+        boolean passed = true;
+
+        System.out.println();
+        System.out.printf("%-16s %12s %12s %9s%n", "metric", "baseline", "current", "change");
+        for (String metric : METRICS.keySet()) {
+            if (!before.has(metric) || !after.has(metric)) continue;
+            double previous = before.getDouble(metric);
+            double current = after.getDouble(metric);
+            var threshold = thresholds.stream().filter(t -> t.metric().equals(metric)).findFirst();
+            boolean regressed = threshold.isPresent() && threshold.get().regressed(previous, current);
+            passed &= !regressed;
+            System.out.printf(Locale.ROOT, "%-16s %12.4f %12.4f %8.1f%% %s%n", metric, previous, current,
+                previous == 0 ? 0 : (current - previous) / Math.abs(previous) * 100,
+                regressed ? "REGRESSED" : threshold.isPresent() ? "ok" : "");
+        }
+
+        for (var threshold : thresholds) {
+            if (!before.has(threshold.metric()) || !after.has(threshold.metric())) {
+                System.out.println("Not compared, missing from a report: " + threshold.metric());
+            }
+        }
+        System.out.println(passed ? "No regression against the baseline" : "Regression against the baseline");
+        return passed;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1e4) / 1e4;
+    }
+
+    /** Counts the bytes the transcriber reads; skipped audio is not decoded and not counted. */
+    private static final class CountingSource implements AudioSource {
+
+        private final AudioSource source;
+        private volatile long bytes;
+
+        CountingSource(AudioSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public AudioFormat getFormat() {
+            return source.getFormat();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = source.read(buffer, offset, length);
+            if (read > 0) {
+                bytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            return source.skip(count);
+        }
+
+        @Override
+        public boolean isLive() {
+            return source.isLive();
+        }
+
+        @Override
+        public int available() {
+            return source.available();
+        }
+
+        @Override
+        public long getLength() {
+            return source.getLength();
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
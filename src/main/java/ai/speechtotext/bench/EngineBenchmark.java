@@ -0,0 +1,199 @@
+package ai.speechtotext.bench;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.vosk.Model;
+
+import ai.speechtotext.audio.ResamplingInputStream;
+import ai.speechtotext.engine.ScriptedEngine;
+import ai.speechtotext.engine.SpeechEngine;
+import ai.speechtotext.engine.VoskEngine;
+
+/**
+ * Runs every {@link SpeechEngine} under test over the same corpus of WAV files and compares their real-time factor
+ * (processing time over audio time) and memory use.
+ * <pre>
+ * java -cp live-captioning-system.jar ai.speechtotext.bench.EngineBenchmark --corpus lessons/
+ *     [--engines vosk,scripted,scripted:0.3] [--model models/tl] [--block 4096]
+ * </pre>
+ * The corpus is a folder of WAV files. A file transcription next to a WAV file with the same name and a {@code .txt}
+ * extension is the script of the {@code scripted} engine, which otherwise recognizes nothing; {@code scripted:0.3}
+ * also spends 0.3 s of CPU per second of audio. Audio is fed in blocks of {@code --block} bytes, the live chunk size by
+ * default.
+ */
+public class EngineBenchmark {
+
+    /** Creates the engine under test for one file of the corpus. */
+    @FunctionalInterface
+    private static interface EngineSource extends AutoCloseable {
+
+        SpeechEngine open(File wav, float sampleRate) throws Exception;
+
+        @Override
+        default void close() {
+        }
+    }
+
+    private static record Totals(double audioSeconds, double processingSeconds, long lines, long peakRss, long peakHeap) {
+
+        Totals add(Totals other) {
+            return new Totals(
+                audioSeconds + other.audioSeconds,
+                processingSeconds + other.processingSeconds,
+                lines + other.lines,
+                Math.max(peakRss, other.peakRss),
+                Math.max(peakHeap, other.peakHeap)
+            );
+        }
+    }
+
+    private static final float SAMPLE_RATE = 16000;
+
+    public static void main(String[] args) throws Exception {
+        File corpus = null;
+        List<String> engines = List.of("vosk", "scripted");
+        String modelPath = System.getProperty("user.dir") + "/live-captioning-system/models/tl";
+        int block = 4096;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--corpus" -> corpus = new File(args[++i]);
+                case "--engines" -> engines = Arrays.stream(args[++i].split(",")).map(String::trim).toList();
+                case "--model" -> modelPath = args[++i];
+                case "--block" -> block = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (corpus == null) {
+            throw new IllegalArgumentException("--corpus is required");
+        }
+
+        File[] files = corpus.listFiles((_, name) -> name.toLowerCase().endsWith(".wav"));
+        if (files == null || files.length == 0) {
+            throw new IllegalArgumentException("No WAV files in " + corpus);
+        }
+        Arrays.sort(files);
+
+        System.out.printf("Corpus: %s, %d files, %d byte blocks%n", corpus, files.length, block);
+        System.out.printf("%-16s %-28s %9s %9s %8s %6s %9s%n", "engine", "file", "audio s", "cpu s", "RTF", "lines", "rss MB");
+
+        List<String> summary = new ArrayList<>();
+        for (String engine : engines) {
+            System.gc();
+            var before = MemoryProbe.sample();
+            long loadStart = System.nanoTime();
+            try (var source = source(engine, modelPath)) {
+                double loadSeconds = (System.nanoTime() - loadStart) / 1e9;
+                var loaded = MemoryProbe.sample();
+
+                var totals = new Totals(0, 0, 0, loaded.residentSetSize(), loaded.heapUsed());
+                for (File wav : files) {
+                    var result = run(source, wav, block);
+                    totals = totals.add(result);
+                    System.out.printf("%-16s %-28s %9.1f %9.2f %8.4f %6d %9s%n", engine, wav.getName(),
+                        result.audioSeconds(), result.processingSeconds(), result.processingSeconds() / result.audioSeconds(),
+                        result.lines(), megabytes(result.peakRss()));
+                }
+
+                summary.add("%-16s RTF %.4f  load %.1f s  lines %d  model rss +%s  peak rss %s  peak heap %d MB".formatted(
+                    engine,
+                    totals.processingSeconds() / Math.max(totals.audioSeconds(), 1e-9),
+                    loadSeconds,
+                    totals.lines(),
+                    before.residentSetSize() < 0 ? "n/a" : megabytes(loaded.residentSetSize() - before.residentSetSize()),
+                    megabytes(totals.peakRss()),
+                    totals.peakHeap() >> 20
+                ));
+            }
+        }
+
+        System.out.println();
+        summary.forEach(System.out::println);
+    }
+
+    private static EngineSource source(String engine, String modelPath) throws Exception {
+        String[] parts = engine.split(":");
+        return switch (parts[0]) {
+            case "vosk" -> {
+                var model = new Model(modelPath);
+                yield new EngineSource() {
+                    @Override
+                    public SpeechEngine open(File wav, float sampleRate) throws Exception {
+                        return new VoskEngine(model, sampleRate);
+                    }
+
+                    @Override
+                    public void close() {
+                        model.close();
+                    }
+                };
+            }
+            case "scripted" -> {
+                double realTimeFactor = parts.length > 1 ? Double.parseDouble(parts[1]) : 0;
+                yield (wav, sampleRate) -> {
+                    Path transcript = Path.of(wav.getPath().replaceAll("(?i)\\.wav$", ".txt"));
+                    var script = Files.exists(transcript) ? ScriptedEngine.readScript(transcript) : List.<ScriptedEngine.Line>of();
+                    return new ScriptedEngine(script, sampleRate, realTimeFactor);
+                };
+            }
+            default -> throw new IllegalArgumentException("Unknown engine: " + engine);
+        };
+    }
+
+    /**
+     * Decodes one file. Reading and resampling are not timed, only the engine.
+     */
+    private static Totals run(EngineSource source, File wav, int block) throws Exception {
+        byte[] buffer = new byte[block];
+        long bytes = 0;
+        long processingNanos = 0;
+        long lines = 0;
+        long peakRss = 0;
+        long peakHeap = 0;
+
+        try (var stream = ResamplingInputStream.open(wav, SAMPLE_RATE); var engine = source.open(wav, SAMPLE_RATE)) {
+            int read;
+            int blocks = 0;
+            while ((read = stream.read(buffer)) > 0) {
+                bytes += read;
+                long start = System.nanoTime();
+                if (engine.acceptAudio(buffer, read) && !engine.result().isEmpty()) {
+                    lines++;
+                }
+                processingNanos += System.nanoTime() - start;
+
+                // Sampling memory is not free, so once every few seconds of audio
+                if (++blocks % 64 == 0) {
+                    var memory = MemoryProbe.sample();
+                    peakRss = Math.max(peakRss, memory.residentSetSize());
+                    peakHeap = Math.max(peakHeap, memory.heapUsed());
+                }
+            }
+
+            long start = System.nanoTime();
+            if (!engine.finalResult().isEmpty()) {
+                lines++;
+            }
+            processingNanos += System.nanoTime() - start;
+        }
+
+        var memory = MemoryProbe.sample();
+        return new Totals(
+            bytes / (SAMPLE_RATE * 2.0),
+            processingNanos / 1e9,
+            lines,
+            Math.max(peakRss, memory.residentSetSize()),
+            Math.max(peakHeap, memory.heapUsed())
+        );
+    }
+
+    private static String megabytes(long bytes) {
+        return bytes < 0 ? "n/a" : String.valueOf(bytes >> 20);
+    }
+}
@@ -0,0 +1,146 @@
+package ai.speechtotext.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.vosk.Model;
+import org.vosk.Recognizer;
+
+import ai.speechtotext.audio.MappedWavReader;
+import ai.speechtotext.audio.ResamplingInputStream;
+
+/**
+ * Compares reading a WAV file through Java Sound in 4096 byte blocks, as file transcription used to, with the
+ * {@link MappedWavReader} at several block sizes. Without {@code --model} only reading and conversion are timed; with
+ * it every block is also decoded and the real-time factor (processing time over audio time) is reported.
+ * <pre>
+ * java -cp live-captioning-system.jar ai.speechtotext.bench.FileDecodeBenchmark [--wav lecture.wav | --minutes 120]
+ *     [--model models/tl] [--blocks 4096,16384,65536,262144]
+ * </pre>
+ * Without {@code --wav} a 16 kHz mono file of {@code --minutes} of noise is generated in the temporary folder.
+ */
+public class FileDecodeBenchmark {
+
+    private static final AudioFormat TARGET = new AudioFormat(16000, 16, 1, true, false);
+
+    @FunctionalInterface
+    private static interface Opener {
+        AudioInputStream open(File file) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File wav = null;
+        int minutes = 120;
+        String modelPath = null;
+        List<Integer> blocks = List.of(4096, 16 * 1024, 64 * 1024, 256 * 1024);
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--wav" -> wav = new File(args[++i]);
+                case "--minutes" -> minutes = Integer.parseInt(args[++i]);
+                case "--model" -> modelPath = args[++i];
+                case "--blocks" -> {
+                    List<Integer> sizes = new ArrayList<>();
+                    for (String size : args[++i].split(",")) sizes.add(Integer.parseInt(size.trim()));
+                    blocks = sizes;
+                }
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (wav == null) {
+            wav = Files.createTempFile("decode-benchmark", ".wav").toFile();
+            wav.deleteOnExit();
+            generate(wav.toPath(), minutes);
+        }
+
+        double audioSeconds;
+        try (var reader = MappedWavReader.open(wav.toPath())) {
+            audioSeconds = reader.getDataLength() / (double) reader.getFormat().getFrameSize() / reader.getFormat().getFrameRate();
+            System.out.printf("Input: %s, %s, %.1f min of audio%n", wav, reader.getFormat(), audioSeconds / 60);
+        }
+
+        Model model = modelPath == null ? null : new Model(modelPath);
+        try {
+            run("java sound", 4096, wav, audioSeconds, model, FileDecodeBenchmark::javaSound);
+            for (int block : blocks) {
+                run("mapped", block, wav, audioSeconds, model, file -> ResamplingInputStream.open(file, 16000));
+            }
+        } finally {
+            if (model != null) model.close();
+        }
+    }
+
+    /**
+     * The file path before the mapped reader: Java Sound's WAV reader, then conversion if needed.
+     */
+    private static AudioInputStream javaSound(File file) throws Exception {
+        var stream = AudioSystem.getAudioInputStream(file);
+        if (stream.getFormat().matches(TARGET)) {
+            return stream;
+        }
+        return new AudioInputStream(new ResamplingInputStream(stream, 16000), TARGET, AudioSystem.NOT_SPECIFIED);
+    }
+
+    private static void run(String name, int blockBytes, File wav, double audioSeconds, Model model, Opener opener) throws Exception {
+        byte[] buffer = new byte[blockBytes];
+        long bytes = 0;
+        long start = System.nanoTime();
+
+        try (var stream = opener.open(wav); var recognizer = model == null ? null : new Recognizer(model, 16000)) {
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                bytes += read;
+                if (recognizer != null && read > 0) {
+                    recognizer.acceptWaveForm(buffer, read);
+                }
+            }
+            if (recognizer != null) {
+                recognizer.getFinalResult();
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-10s %7d B blocks  %8.2f s  RTF %.5f  %7.0fx real time  %7.1f MB/s  (%d bytes)%n",
+            name, blockBytes, seconds, seconds / audioSeconds, audioSeconds / seconds, bytes / seconds / (1 << 20), bytes);
+    }
+
+    /**
+     * Writes a 16 kHz mono WAV file of low noise, one mebibyte at a time.
+     */
+    private static void generate(Path path, int minutes) throws IOException {
+        long dataBytes = minutes * 60L * 16000 * 2;
+        var random = new Random(7);
+
+        try (var channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+            header.put("RIFF".getBytes()).putInt((int) Math.min(0xFFFFFFFFL, dataBytes + 36)).put("WAVE".getBytes());
+            header.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(16000).putInt(32000).putShort((short) 2).putShort((short) 16);
+            header.put("data".getBytes()).putInt((int) Math.min(0xFFFFFFFFL, dataBytes));
+            channel.write(header.flip());
+
+            var block = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            for (long written = 0; written < dataBytes; written += block.limit()) {
+                block.clear();
+                while (block.hasRemaining() && written + block.position() < dataBytes) {
+                    block.putShort((short) (random.nextGaussian() * 300));
+                }
+                channel.write(block.flip());
+            }
+        }
+    }
+}
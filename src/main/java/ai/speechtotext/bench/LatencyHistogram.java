@@ -0,0 +1,63 @@
+package ai.speechtotext.bench;
+
+/**
+ * Fixed-size latency histogram with 10 ms buckets, so that recording stays constant in memory over soak runs of any
+ * length. Latencies beyond the last bucket are counted in it.
+ */
+public class LatencyHistogram {
+
+    private static final long BUCKET_MILLIS = 10;
+    private static final int BUCKETS = 6000; // one minute
+
+    private final long[] counts = new long[BUCKETS];
+
+    private long count;
+    private long totalMillis;
+    private long maxMillis;
+
+    public synchronized void record(long millis) {
+        millis = Math.max(millis, 0);
+        counts[(int) Math.min(millis / BUCKET_MILLIS, BUCKETS - 1)]++;
+        count++;
+        totalMillis += millis;
+        maxMillis = Math.max(maxMillis, millis);
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized long maxMillis() {
+        return maxMillis;
+    }
+
+    public synchronized double meanMillis() {
+        return count == 0 ? 0 : (double) totalMillis / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the given percentile
+     */
+    public synchronized long percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min((i + 1) * BUCKET_MILLIS, maxMillis);
+            }
+        }
+        return maxMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "n=%d mean=%.0fms p50=%dms p95=%dms p99=%dms max=%dms".formatted(
+            count, meanMillis(), percentileMillis(50), percentileMillis(95), percentileMillis(99), maxMillis
+        );
+    }
+}
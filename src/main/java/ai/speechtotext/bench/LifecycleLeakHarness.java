@@ -0,0 +1,219 @@
+package ai.speechtotext.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.vosk.Model;
+
+import ai.speechtotext.audio.ResamplingInputStream;
+import ai.speechtotext.engine.ScriptedEngine;
+import ai.speechtotext.engine.SpeechEngine;
+import ai.speechtotext.engine.VoskEngine;
+import ai.speechtotext.transcription.LineTranscription;
+import ai.speechtotext.transcription.Transcriber;
+import ai.speechtotext.transcription.TranscriptionChannel;
+
+/**
+ * Checks that transcribers release their native resources: runs hundreds of start, pause, resume and stop cycles,
+ * alternating live transcription of a {@link ReplayDataLine} and file transcription, and fails if the resident set
+ * size, open file descriptors or threads keep growing, or if a transcriber leaves its engine or line open.
+ * <pre>
+ * java -cp live-captioning-system.jar ai.speechtotext.bench.LifecycleLeakHarness [--cycles 500] [--model models/tl]
+ *     [--max-growth-mb 32]
+ * </pre>
+ * Without {@code --model} a {@link ScriptedEngine} stands in for the recognizer, which checks the transcriber's own
+ * resources; with it every cycle also creates and frees a Vosk recognizer. Exits with status 1 on a leak.
+ */
+public class LifecycleLeakHarness {
+
+    private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, false);
+
+    public static void main(String[] args) throws Exception {
+        int cycles = 500;
+        String modelPath = null;
+        long maxGrowthMb = 32;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--cycles" -> cycles = Integer.parseInt(args[++i]);
+                case "--model" -> modelPath = args[++i];
+                case "--max-growth-mb" -> maxGrowthMb = Long.parseLong(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        byte[] pcm = noise(10);
+        Path wav = Files.createTempFile("leak-harness", ".wav");
+        Path output = Files.createTempFile("leak-harness", ".txt");
+        wav.toFile().deleteOnExit();
+        output.toFile().deleteOnExit();
+        try (var stream = new AudioInputStream(new ByteArrayInputStream(pcm), FORMAT, pcm.length / 2)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, wav.toFile());
+        }
+
+        List<ScriptedEngine.Line> script = new ArrayList<>();
+        for (int second = 0; second < 10; second += 2) {
+            script.add(new ScriptedEngine.Line("line " + second, second, second + 1));
+        }
+
+        var model = modelPath == null ? null : new Model(modelPath);
+        SpeechEngine.Factory engines = model == null ? ScriptedEngine.factory(script, 0) : VoskEngine.factory(model);
+
+        int warmup = Math.max(1, cycles / 10);
+        Snapshot baseline = null;
+        List<String> failures = new ArrayList<>();
+
+        try {
+            for (int cycle = 1; cycle <= cycles; cycle++) {
+                boolean live = cycle % 2 == 0;
+                var engine = engines.create(FORMAT.getSampleRate());
+                String failure = live ? liveCycle(engine, pcm, output.toFile()) : fileCycle(engine, wav.toFile(), output.toFile(), cycle % 4 != 1);
+                if (failure == null && engine instanceof ScriptedEngine scripted && !scripted.isClosed()) {
+                    failure = "engine left open";
+                }
+                if (failure != null) {
+                    failures.add("cycle %d (%s): %s".formatted(cycle, live ? "live" : "file", failure));
+                }
+
+                if (cycle == warmup) {
+                    baseline = Snapshot.take();
+                    System.out.println("Baseline after " + warmup + " cycles: " + baseline);
+                } else if (cycle % 50 == 0 || cycle == cycles) {
+                    System.out.printf("%5d cycles: %s%n", cycle, Snapshot.take());
+                }
+            }
+        } finally {
+            if (model != null) model.close();
+        }
+
+        var end = Snapshot.take();
+        long growthMb = baseline.residentSetSize() < 0 ? 0 : (end.residentSetSize() - baseline.residentSetSize()) >> 20;
+        if (growthMb > maxGrowthMb) {
+            failures.add("RSS grew by %d MB after warmup, more than %d MB".formatted(growthMb, maxGrowthMb));
+        }
+        if (baseline.fileDescriptors() >= 0 && end.fileDescriptors() > baseline.fileDescriptors() + 4) {
+            failures.add("open file descriptors grew from %d to %d".formatted(baseline.fileDescriptors(), end.fileDescriptors()));
+        }
+        if (end.threads() > baseline.threads() + 2) {
+            failures.add("threads grew from %d to %d".formatted(baseline.threads(), end.threads()));
+        }
+
+        System.out.printf("RSS growth after warmup: %d MB%n", growthMb);
+        if (failures.isEmpty()) {
+            System.out.println("No leaks in " + cycles + " cycles");
+        } else {
+            failures.stream().limit(20).forEach(failure -> System.out.println("LEAK " + failure));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Starts live transcription of a replayed line, pauses, resumes and stops it.
+     *
+     * @return what was not released, or null
+     */
+    private static String liveCycle(SpeechEngine engine, byte[] pcm, File output) throws InterruptedException {
+        var line = new ReplayDataLine(pcm, FORMAT, 8, 0, true, 0);
+        line.open(FORMAT);
+        line.start();
+
+        var transcriber = new Transcriber(engine, line, null);
+        var worker = start(transcriber, output, true);
+
+        TimeUnit.MILLISECONDS.sleep(10);
+        transcriber.pause();
+        if (line.isRunning()) {
+            transcriber.stop();
+            return "line still capturing while paused";
+        }
+        TimeUnit.MILLISECONDS.sleep(5);
+        transcriber.resume();
+        TimeUnit.MILLISECONDS.sleep(10);
+        transcriber.stop();
+
+        if (!transcriber.awaitClosed(5, TimeUnit.SECONDS)) {
+            return "not closed 5 s after stop, " + transcriber.getState();
+        }
+        worker.join();
+        return line.isOpen() ? "line left open" : null;
+    }
+
+    /**
+     * Starts transcription of a WAV file and stops it, or lets it finish on every fourth cycle.
+     */
+    private static String fileCycle(SpeechEngine engine, File wav, File output, boolean stop) throws Exception {
+        var stream = ResamplingInputStream.open(wav, FORMAT.getSampleRate());
+        var transcriber = new Transcriber(engine, null, stream);
+        var worker = start(transcriber, output, false);
+
+        if (stop) {
+            TimeUnit.MILLISECONDS.sleep(2);
+            transcriber.stop();
+        }
+        if (!transcriber.awaitClosed(30, TimeUnit.SECONDS)) {
+            transcriber.stop();
+            return "not closed, " + transcriber.getState();
+        }
+        worker.join();
+        return null;
+    }
+
+    private static Thread start(Transcriber transcriber, File output, boolean live) {
+        var channel = new TranscriptionChannel<LineTranscription>();
+        channel.subscribe(_ -> channel.clear());
+        var worker = new Thread(() -> transcriber.transcribe(output, channel, live), "leak-harness-transcriber");
+        worker.start();
+        return worker;
+    }
+
+    private static byte[] noise(int seconds) {
+        var random = new Random(3);
+        byte[] pcm = new byte[seconds * 16000 * 2];
+        for (int i = 0; i < pcm.length; i += 2) {
+            int sample = (int) (random.nextGaussian() * 2000);
+            pcm[i] = (byte) sample;
+            pcm[i + 1] = (byte) (sample >> 8);
+        }
+        return pcm;
+    }
+
+    private static record Snapshot(long residentSetSize, long heapUsed, long fileDescriptors, int threads) {
+
+        static Snapshot take() {
+            System.gc();
+            var memory = MemoryProbe.sample();
+            return new Snapshot(memory.residentSetSize(), memory.heapUsed(), countFileDescriptors(), Thread.activeCount());
+        }
+
+        /**
+         * @return the number of open file descriptors, or -1 if not on Linux
+         */
+        private static long countFileDescriptors() {
+            try (Stream<Path> fds = Files.list(Path.of("/proc/self/fd"))) {
+                return fds.count();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "rss=%s heap=%dMB fds=%d threads=%d".formatted(
+                residentSetSize < 0 ? "n/a" : (residentSetSize >> 20) + "MB", heapUsed >> 20, fileDescriptors, threads
+            );
+        }
+    }
+}
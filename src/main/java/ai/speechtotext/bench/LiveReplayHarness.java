@@ -0,0 +1,133 @@
+package ai.speechtotext.bench;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.vosk.Model;
+
+import ai.speechtotext.audio.AudioConditioner;
+import ai.speechtotext.engine.VoskEngine;
+import ai.speechtotext.transcription.LineTranscription;
+import ai.speechtotext.transcription.Transcriber;
+import ai.speechtotext.transcription.TranscriptionChannel;
+
+/**
+ * Load-tests the live transcription path by replaying a WAV file through a {@link ReplayDataLine} instead of a
+ * microphone. Runs headless and periodically reports speech-to-channel latency, line overruns and memory use.
+ * <pre>
+ * java -cp live-captioning-system.jar ai.speechtotext.bench.LiveReplayHarness --wav lesson.wav
+ *     [--model models/tl] [--speed 1|N|max] [--jitter ms] [--hours 8] [--report seconds] [--no-loop] [--condition]
+ * </pre>
+ * With {@code --speed 16 --hours 8} a simulated eight hour school day is replayed in half an hour of wall time.
+ */
+public class LiveReplayHarness {
+
+    public static void main(String[] args) throws Exception {
+        File wav = null;
+        String modelPath = System.getProperty("user.dir") + "/live-captioning-system/models/tl";
+        double speed = 1;
+        long jitterMillis = 0;
+        double hours = 8;
+        long reportSeconds = 60;
+        boolean loop = true;
+        boolean condition = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--wav" -> wav = new File(args[++i]);
+                case "--model" -> modelPath = args[++i];
+                case "--speed" -> speed = args[++i].equals("max") ? 0 : Double.parseDouble(args[i]);
+                case "--jitter" -> jitterMillis = Long.parseLong(args[++i]);
+                case "--hours" -> hours = Double.parseDouble(args[++i]);
+                case "--report" -> reportSeconds = Long.parseLong(args[++i]);
+                case "--no-loop" -> loop = false;
+                case "--condition" -> condition = true;
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (wav == null) {
+            throw new IllegalArgumentException("--wav is required");
+        }
+
+        var format = new AudioFormat(16000, 16, 1, true, false);
+        var line = new ReplayDataLine(ReplayDataLine.readPcm(wav), format, speed, jitterMillis, loop, 42);
+        line.open(format);
+        line.start();
+
+        var latency = new LatencyHistogram();
+        var lines = new AtomicLong();
+        var channel = new TranscriptionChannel<LineTranscription>();
+        channel.subscribe(transcription -> {
+            if (transcription == LineTranscription.END) return;
+            latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - line.consumedCaptureNanos()));
+            lines.incrementAndGet();
+            // The harness only listens, the queue would otherwise grow for the whole run
+            channel.clear();
+        });
+
+        var output = Files.createTempFile("replay-transcription", ".txt").toFile();
+        output.deleteOnExit();
+
+        try (var model = new Model(modelPath)) {
+            // The transcriber owns the engine and closes it when transcription ends
+            var transcriber = new Transcriber(new VoskEngine(model, format.getSampleRate()), line, null);
+            if (condition) {
+                transcriber.setConditioner(new AudioConditioner(format.getSampleRate(), 4096));
+            }
+            var worker = new Thread(() -> transcriber.transcribe(output, channel, true), "replay-transcriber");
+
+            System.out.printf("Replaying %s at %s for %.1f audio hours%n", wav, speed <= 0 ? "max speed" : speed + "x", hours);
+            System.out.println("Start: " + MemoryProbe.sample());
+
+            long startNanos = System.nanoTime();
+            long peakRss = 0;
+            long peakHeap = 0;
+            worker.start();
+
+            double targetSeconds = hours * 3600;
+            long nextReport = System.nanoTime() + TimeUnit.SECONDS.toNanos(reportSeconds);
+            while (worker.isAlive() && line.consumedAudioSeconds() < targetSeconds && !line.isExhausted()) {
+                TimeUnit.MILLISECONDS.sleep(200);
+
+                var memory = MemoryProbe.sample();
+                peakRss = Math.max(peakRss, memory.residentSetSize());
+                peakHeap = Math.max(peakHeap, memory.heapUsed());
+
+                if (System.nanoTime() >= nextReport) {
+                    nextReport += TimeUnit.SECONDS.toNanos(reportSeconds);
+                    System.out.println(report(line, lines.get(), latency, startNanos) + " " + memory);
+                    if (transcriber.getConditioner() != null) {
+                        System.out.println("       " + transcriber.getConditioner());
+                    }
+                }
+            }
+
+            transcriber.stop();
+            line.close();
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+
+            System.out.println("Done:  " + report(line, lines.get(), latency, startNanos));
+            System.out.println("End:   " + MemoryProbe.sample());
+            System.out.printf("Peak:  heap=%dMB rss=%s%n", peakHeap >> 20, peakRss <= 0 ? "n/a" : (peakRss >> 20) + "MB");
+        }
+    }
+
+    private static String report(ReplayDataLine line, long lines, LatencyHistogram latency, long startNanos) {
+        double audioSeconds = line.consumedAudioSeconds();
+        double wallSeconds = (System.nanoTime() - startNanos) / 1e9;
+        return "audio=%.2fh wall=%.0fs speedup=%.1fx lines=%d overruns=%d (%dms) latency[%s]".formatted(
+            audioSeconds / 3600, 
+            wallSeconds, 
+            audioSeconds / Math.max(wallSeconds, 1e-9),
+            lines,
+            line.getOverrunCount(), 
+            line.getOverrunBytes() * 1000 / (16000 * 2),
+            latency
+        );
+    }
+}
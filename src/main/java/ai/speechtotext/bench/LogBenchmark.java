@@ -0,0 +1,177 @@
+package ai.speechtotext.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import environment.logging.Log;
+
+/**
+ * Measures how long a thread that logs is held up when the console is slow: every thread logs in a loop, as a decoder
+ * does once per chunk, first with {@code System.out.println} straight to the console and then with {@link Log}, and the
+ * latency of single calls is compared. A console that takes {@code --console-micros} per write stands in for a slow
+ * terminal or log pipe.
+ * <pre>
+ * java -cp live-captioning-system.jar ai.speechtotext.bench.LogBenchmark [--threads 4] [--calls 20000]
+ *     [--console-micros 200] [--max-file-kb 64]
+ * </pre>
+ * Log files are written to a temporary folder with files of {@code --max-file-kb}, to check that they rotate.
+ */
+public class LogBenchmark {
+
+    /** Different messages per thread, so not all of them are held back by rate limiting. */
+    private static final int MESSAGES = 200;
+
+    public static void main(String[] args) throws Exception {
+        int threads = 4;
+        int calls = 20000;
+        long consoleMicros = 200;
+        long maxFileKb = 64;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--calls" -> calls = Integer.parseInt(args[++i]);
+                case "--console-micros" -> consoleMicros = Long.parseLong(args[++i]);
+                case "--max-file-kb" -> maxFileKb = Long.parseLong(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        var report = System.out;
+        var errors = System.err;
+        var slowConsole = new PrintStream(new SlowStream(TimeUnit.MICROSECONDS.toNanos(consoleMicros)), true);
+        Path directory = Files.createTempDirectory("log-benchmark");
+
+        String[] messages = new String[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = "Chunk decoded by stage " + i + ": {} bytes in {} ns";
+        }
+
+        report.printf("%d threads, %d calls each, console %d us per write%n", threads, calls, consoleMicros);
+        report.printf("%-10s %10s %10s %10s %10s%n", "", "p50 ns", "p99 ns", "p99.9 ns", "max ns");
+
+        System.setOut(slowConsole);
+        long[] println;
+        try {
+            println = run(threads, calls, (thread, call) ->
+                System.out.println("Chunk decoded by stage " + call % MESSAGES + ": " + call + " bytes in " + thread + " ns"));
+        } finally {
+            System.setOut(report);
+        }
+        print(report, "println", println);
+
+        System.setOut(slowConsole);
+        System.setErr(slowConsole);
+        long[] logged;
+        try {
+            Log.setDirectory(directory);
+            Log.setRotation(maxFileKb << 10, 3);
+            Log.setLevels(Log.Level.INFO, Map.of());
+            List<Log> logs = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                logs.add(Log.get("bench." + t));
+            }
+            logged = run(threads, calls, (thread, call) -> logs.get(thread).info(messages[call % MESSAGES], call, thread));
+            if (!Log.flush(60_000)) {
+                report.println("Log not flushed within a minute");
+            }
+        } finally {
+            System.setOut(report);
+            System.setErr(errors);
+        }
+        print(report, "Log", logged);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            var sizes = files.sorted().map(file -> file.getFileName() + " " + size(file) / 1024 + " KB").toList();
+            report.println("Log files in " + directory + ": " + String.join(", ", sizes));
+        }
+    }
+
+    @FunctionalInterface
+    private static interface Call {
+
+        void run(int thread, int call);
+    }
+
+    /**
+     * @return the latency of every call, sorted
+     */
+    private static long[] run(int threads, int calls, Call call) throws InterruptedException {
+        long[] latencies = new long[threads * calls];
+        var start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            var worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < calls; i++) {
+                    long before = System.nanoTime();
+                    call.run(thread, i);
+                    latencies[thread * calls + i] = System.nanoTime() - before;
+                }
+            }, "log-benchmark-" + t);
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (var worker : workers) {
+            worker.join();
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void print(PrintStream report, String name, long[] sorted) {
+        report.printf("%-10s %10d %10d %10d %10d%n", name, percentile(sorted, 0.5), percentile(sorted, 0.99),
+            percentile(sorted, 0.999), sorted[sorted.length - 1]);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /** A console that takes a fixed time for every write, as a slow terminal does. */
+    private static final class SlowStream extends OutputStream {
+
+        private final long nanosPerWrite;
+
+        SlowStream(long nanosPerWrite) {
+            this.nanosPerWrite = nanosPerWrite;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            long deadline = System.nanoTime() + nanosPerWrite;
+            while (System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
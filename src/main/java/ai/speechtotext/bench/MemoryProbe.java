@@ -0,0 +1,63 @@
+package ai.speechtotext.bench;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Samples the memory of the running process. Vosk allocates its models and decoders natively, so next to the Java
+ * heap this also reports the resident set size, which is only available on Linux.
+ */
+public class MemoryProbe {
+
+    public static record Sample(long heapUsed, long nonHeapUsed, long directBuffers, long mappedBuffers, long residentSetSize) {
+
+        @Override
+        public String toString() {
+            return "heap=%dMB nonHeap=%dMB direct=%dMB mapped=%dMB rss=%s".formatted(
+                heapUsed >> 20, nonHeapUsed >> 20, directBuffers >> 20, mappedBuffers >> 20,
+                residentSetSize < 0 ? "n/a" : (residentSetSize >> 20) + "MB"
+            );
+        }
+    }
+
+    private static final Path STATUS = Path.of("/proc/self/status");
+
+    public static Sample sample() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        long direct = 0;
+        long mapped = 0;
+        for (var pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            switch (pool.getName()) {
+                case "direct" -> direct = pool.getMemoryUsed();
+                case "mapped" -> mapped = pool.getMemoryUsed();
+                default -> {}
+            }
+        }
+        return new Sample(
+            memory.getHeapMemoryUsage().getUsed(),
+            memory.getNonHeapMemoryUsage().getUsed(),
+            direct,
+            mapped,
+            residentSetSize()
+        );
+    }
+
+    /**
+     * @return the resident set size in bytes, or {@code -1} if it is not available on this platform
+     */
+    public static long residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(STATUS)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException _) {
+            // Not on Linux
+        }
+        return -1;
+    }
+}
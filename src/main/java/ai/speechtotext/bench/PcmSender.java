@@ -0,0 +1,74 @@
+package ai.speechtotext.bench;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import ai.speechtotext.audio.ResamplingInputStream;
+
+/**
+ * Streams a WAV file as raw 16-bit mono PCM to the network input, standing in for a wireless microphone receiver.
+ * <pre>
+ * java -cp live-captioning-system.jar ai.speechtotext.bench.PcmSender --wav lesson.wav [--host localhost]
+ *     [--port 5055] [--rate 16000] [--speed 1] [--chunk 3200]
+ * </pre>
+ * Audio is sent in chunks at {@code --speed} times real time; 0 sends as fast as the receiver reads.
+ */
+public class PcmSender {
+
+    public static void main(String[] args) throws Exception {
+        File wav = null;
+        String host = "localhost";
+        int port = 5055;
+        float rate = 16000;
+        double speed = 1;
+        int chunk = 3200;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--wav" -> wav = new File(args[++i]);
+                case "--host" -> host = args[++i];
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--rate" -> rate = Float.parseFloat(args[++i]);
+                case "--speed" -> speed = Double.parseDouble(args[++i]);
+                case "--chunk" -> chunk = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (wav == null) {
+            throw new IllegalArgumentException("--wav is required");
+        }
+
+        double bytesPerSecond = rate * 2.0;
+        try (var audio = ResamplingInputStream.open(wav, rate);
+            var socket = SocketChannel.open(new InetSocketAddress(host, port))) {
+            socket.socket().setTcpNoDelay(true);
+            var buffer = ByteBuffer.allocate(chunk - chunk % 2);
+            long sent = 0;
+            long start = System.nanoTime();
+            int read;
+
+            while ((read = audio.read(buffer.array(), 0, buffer.capacity())) > 0) {
+                buffer.limit(read).position(0);
+                while (buffer.hasRemaining()) {
+                    socket.write(buffer);
+                }
+                sent += read;
+
+                if (speed > 0) {
+                    long due = start + (long) (sent / bytesPerSecond / speed * 1e9);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Sent %.1f s of audio in %.1f s (%.1f MB/s)%n", sent / bytesPerSecond, seconds, sent / seconds / 1e6);
+        }
+    }
+}
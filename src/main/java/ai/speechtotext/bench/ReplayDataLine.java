@@ -0,0 +1,351 @@
+package ai.speechtotext.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Control;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineEvent;
+import javax.sound.sampled.LineListener;
+import javax.sound.sampled.TargetDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import lombok.Getter;
+
+/**
+ * A {@link TargetDataLine} that "captures" a WAV file instead of a microphone, so the live transcription path can be
+ * driven on a machine without a sound card.
+ * <p>
+ * Audio becomes available at {@code speed} times real time, as it would from a sound card, and is held in a buffer of
+ * {@link #getBufferSize()} bytes. When the reader falls behind and the buffer fills up, the oldest audio is discarded
+ * and counted as an overrun, just like a real capture line. A speed of {@code 0} or less disables throttling, so every
+ * read returns immediately. Optional jitter delays each read by a random amount to mimic a busy audio stack.
+ * </p>
+ * The audio is looped when {@code loop} is set, which allows soak runs far longer than the recording.
+ */
+public class ReplayDataLine implements TargetDataLine {
+
+    private final byte[] audio;
+    private final AudioFormat format;
+    private final double speed;
+    private final long jitterNanos;
+    private final boolean loop;
+    private final Random random;
+
+    private final List<LineListener> listeners = new ArrayList<>();
+
+    private int bufferSize;
+    private volatile boolean open;
+    private volatile boolean running;
+
+    /** Bytes delivered to the reader, the stream position of the reader. */
+    private long consumed;
+
+    /** Stream position captured before the current start(), and the time of that start(). */
+    private long capturedBeforeStart;
+    private long startNanos;
+
+    @Getter
+    private long overrunCount, overrunBytes;
+
+    private final AtomicLong lastReadNanos = new AtomicLong();
+
+    public ReplayDataLine(File wavFile, double speed, long jitterMillis, boolean loop) 
+        throws IOException, UnsupportedAudioFileException {
+
+        this(readPcm(wavFile), new AudioFormat(16000, 16, 1, true, false), speed, jitterMillis, loop, 0);
+    }
+
+    public ReplayDataLine(byte[] audio, AudioFormat format, double speed, long jitterMillis, boolean loop, long seed) {
+        if (audio.length < format.getFrameSize()) {
+            throw new IllegalArgumentException("Replay audio is empty");
+        }
+        this.audio = audio;
+        this.format = format;
+        this.speed = speed;
+        this.jitterNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(jitterMillis, 0));
+        this.loop = loop;
+        this.random = new Random(seed);
+        // Sound cards typically buffer around half a second
+        this.bufferSize = frameAligned((int) (format.getFrameRate() * format.getFrameSize() / 2));
+    }
+
+    /**
+     * Reads a whole WAV file as 16 kHz, 16-bit, mono, little endian PCM.
+     */
+    public static byte[] readPcm(File wavFile) throws IOException, UnsupportedAudioFileException {
+        var target = new AudioFormat(16000, 16, 1, true, false);
+        try (
+            AudioInputStream source = AudioSystem.getAudioInputStream(wavFile);
+            AudioInputStream pcm = source.getFormat().matches(target) ? source : AudioSystem.getAudioInputStream(target, source)
+        ) {
+            return pcm.readAllBytes();
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        int read = readCaptured(b, off, len);
+
+        if (jitterNanos > 0) {
+            LockSupport.parkNanos((long) (random.nextDouble() * jitterNanos));
+        }
+
+        lastReadNanos.set(System.nanoTime());
+        return read;
+    }
+
+    private synchronized int readCaptured(byte[] b, int off, int len) {
+        len -= len % format.getFrameSize();
+        if (!open || len <= 0) {
+            return 0;
+        }
+
+        if (speed > 0) {
+            // Block until the requested amount has been "captured", like a real line does
+            long available;
+            while ((available = captured() - consumed) < len) {
+                if (!running || !open) {
+                    len = (int) Math.max(0, available - available % format.getFrameSize());
+                    break;
+                }
+                try {
+                    // Releases the monitor, so stop() and close() can interrupt the wait
+                    TimeUnit.NANOSECONDS.timedWait(this, Math.max(nanosFor(len - available), 100_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return 0;
+                }
+            }
+
+            long excess = captured() - consumed - bufferSize;
+            if (excess > 0) {
+                excess += format.getFrameSize() - excess % format.getFrameSize();
+                consumed += excess;
+                overrunBytes += excess;
+                overrunCount++;
+            }
+        }
+
+        int copied = 0;
+        while (copied < len) {
+            int position = (int) (consumed % audio.length);
+            if (!loop && consumed >= audio.length) {
+                break;
+            }
+            int count = Math.min(len - copied, audio.length - position);
+            System.arraycopy(audio, position, b, off + copied, count);
+            copied += count;
+            consumed += count;
+        }
+        return copied;
+    }
+
+    /**
+     * @return the wall clock time, in {@link System#nanoTime()} units, at which the audio the reader has consumed so
+     *         far finished being captured. For an unthrottled line this is the time of the last read.
+     */
+    public synchronized long consumedCaptureNanos() {
+        if (speed <= 0) {
+            return lastReadNanos.get();
+        }
+        return startNanos + nanosFor(consumed - capturedBeforeStart);
+    }
+
+    public synchronized double consumedAudioSeconds() {
+        return consumed / (double) (format.getFrameRate() * format.getFrameSize());
+    }
+
+    /**
+     * @return whether a non-looping line has delivered all of its audio
+     */
+    public synchronized boolean isExhausted() {
+        return !loop && consumed >= audio.length;
+    }
+
+    private long captured() {
+        if (!running) {
+            return capturedBeforeStart;
+        }
+        double bytesPerNano = format.getFrameRate() * format.getFrameSize() * speed / 1e9;
+        return capturedBeforeStart + frameAligned((long) ((System.nanoTime() - startNanos) * bytesPerNano));
+    }
+
+    private long nanosFor(long bytes) {
+        return (long) (bytes / (format.getFrameRate() * format.getFrameSize() * speed) * 1e9);
+    }
+
+    private int frameAligned(int bytes) {
+        return bytes - bytes % format.getFrameSize();
+    }
+
+    private long frameAligned(long bytes) {
+        return bytes - bytes % format.getFrameSize();
+    }
+
+    @Override
+    public synchronized void open(AudioFormat format, int bufferSize) {
+        if (!format.matches(this.format)) {
+            throw new IllegalArgumentException("Replay line only supports " + this.format);
+        }
+        this.bufferSize = Math.max(frameAligned(bufferSize), format.getFrameSize());
+        open();
+    }
+
+    @Override
+    public synchronized void open(AudioFormat format) {
+        if (!format.matches(this.format)) {
+            throw new IllegalArgumentException("Replay line only supports " + this.format);
+        }
+        open();
+    }
+
+    @Override
+    public synchronized void open() {
+        if (open) return;
+        open = true;
+        notifyListeners(LineEvent.Type.OPEN);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!open) return;
+        stop();
+        open = false;
+        notifyAll();
+        notifyListeners(LineEvent.Type.CLOSE);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        // Resuming discards whatever was left unread, a stopped line does not capture
+        capturedBeforeStart = consumed;
+        startNanos = System.nanoTime();
+        running = true;
+        notifyListeners(LineEvent.Type.START);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        capturedBeforeStart = captured();
+        running = false;
+        notifyAll();
+        notifyListeners(LineEvent.Type.STOP);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isActive() {
+        return running;
+    }
+
+    @Override
+    public void drain() {
+    }
+
+    @Override
+    public synchronized void flush() {
+        consumed = Math.max(consumed, captured());
+    }
+
+    @Override
+    public synchronized int available() {
+        if (speed <= 0) {
+            return bufferSize;
+        }
+        return (int) Math.min(bufferSize, captured() - consumed);
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public int getFramePosition() {
+        return (int) getLongFramePosition();
+    }
+
+    @Override
+    public synchronized long getLongFramePosition() {
+        return consumed / format.getFrameSize();
+    }
+
+    @Override
+    public long getMicrosecondPosition() {
+        return (long) (getLongFramePosition() * 1_000_000L / format.getFrameRate());
+    }
+
+    @Override
+    public float getLevel() {
+        return AudioSystem.NOT_SPECIFIED;
+    }
+
+    @Override
+    public javax.sound.sampled.Line.Info getLineInfo() {
+        return new DataLine.Info(TargetDataLine.class, format);
+    }
+
+    @Override
+    public Control[] getControls() {
+        return new Control[0];
+    }
+
+    @Override
+    public boolean isControlSupported(Control.Type control) {
+        return false;
+    }
+
+    @Override
+    public Control getControl(Control.Type control) {
+        throw new IllegalArgumentException("Unsupported control type: " + control);
+    }
+
+    @Override
+    public void addLineListener(LineListener listener) {
+        synchronized (listeners) {
+            listeners.add(listener);
+        }
+    }
+
+    @Override
+    public void removeLineListener(LineListener listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+
+    private void notifyListeners(LineEvent.Type type) {
+        List<LineListener> snapshot;
+        synchronized (listeners) {
+            snapshot = List.copyOf(listeners);
+        }
+        var event = new LineEvent(this, type, getLongFramePosition());
+        snapshot.forEach(listener -> listener.update(event));
+    }
+}
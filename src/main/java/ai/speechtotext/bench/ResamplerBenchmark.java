@@ -0,0 +1,114 @@
+package ai.speechtotext.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import ai.speechtotext.audio.Resampler;
+import ai.speechtotext.audio.ResamplingInputStream;
+
+/**
+ * Compares the built-in {@link Resampler} with the Java Sound conversion used before it, converting a WAV file (or a
+ * generated 48 kHz stereo signal) to 16 kHz mono.
+ * <pre>
+ * java --add-modules jdk.incubator.vector -cp live-captioning-system.jar ai.speechtotext.bench.ResamplerBenchmark [file.wav] [iterations]
+ * </pre>
+ */
+public class ResamplerBenchmark {
+
+    private static final AudioFormat TARGET = new AudioFormat(16000, 16, 1, true, false);
+
+    public static void main(String[] args) throws Exception {
+        byte[] audio;
+        AudioFormat format;
+        if (args.length > 0) {
+            try (var stream = AudioSystem.getAudioInputStream(new File(args[0]))) {
+                format = stream.getFormat();
+                audio = stream.readAllBytes();
+            }
+        } else {
+            format = new AudioFormat(48000, 16, 2, true, false);
+            audio = generate(format, 600);
+        }
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        double audioSeconds = audio.length / (double) format.getFrameSize() / format.getFrameRate();
+        System.out.printf("Input: %s, %.0f s of audio%n", format, audioSeconds);
+
+        var resampler = new Resampler(Math.round(format.getSampleRate()), format.getChannels(), 16000);
+        System.out.println("Taps per phase: " + resampler.getTapsPerPhase());
+
+        run("built-in", audio, format, iterations, audioSeconds, ResamplerBenchmark::builtIn);
+        run("java sound", audio, format, iterations, audioSeconds, ResamplerBenchmark::javaSound);
+    }
+
+    @FunctionalInterface
+    private static interface Conversion {
+        AudioInputStream open(AudioInputStream source) throws IOException;
+    }
+
+    private static AudioInputStream builtIn(AudioInputStream source) {
+        return new AudioInputStream(new ResamplingInputStream(source, 16000), TARGET, AudioSystem.NOT_SPECIFIED);
+    }
+
+    private static AudioInputStream javaSound(AudioInputStream source) {
+        return AudioSystem.getAudioInputStream(TARGET, source);
+    }
+
+    private static void run(String name, byte[] audio, AudioFormat format, int iterations, double audioSeconds, Conversion conversion) {
+        byte[] buffer = new byte[64 * 1024];
+        long bestNanos = Long.MAX_VALUE;
+        long outputBytes = 0;
+
+        try {
+            // The first iteration warms up the JIT and is not counted
+            for (int i = 0; i <= iterations; i++) {
+                var source = new AudioInputStream(new ByteArrayInputStream(audio), format, audio.length / format.getFrameSize());
+                long start = System.nanoTime();
+                outputBytes = 0;
+                try (var converted = conversion.open(source)) {
+                    int read;
+                    while ((read = converted.read(buffer)) >= 0) {
+                        outputBytes += read;
+                    }
+                }
+                if (i > 0) {
+                    bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+                }
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            System.out.printf("%-10s unsupported: %s%n", name, e.getMessage());
+            return;
+        }
+
+        double seconds = bestNanos / 1e9;
+        System.out.printf("%-10s %8.1f ms  %7.0fx real time  %6.1f MB/s in  (%d bytes out)%n",
+            name, seconds * 1000, audioSeconds / seconds, audio.length / seconds / (1 << 20), outputBytes);
+    }
+
+    /**
+     * Generates a sweep with a little noise, so the filter does real work on every sample.
+     */
+    private static byte[] generate(AudioFormat format, int seconds) {
+        int frames = (int) format.getFrameRate() * seconds;
+        var buffer = ByteBuffer.allocate(frames * format.getFrameSize()).order(ByteOrder.LITTLE_ENDIAN);
+        var random = new Random(7);
+        double phase = 0;
+        for (int i = 0; i < frames; i++) {
+            double frequency = 100 + (i % (int) format.getFrameRate()) / 8.0;
+            phase += 2 * Math.PI * frequency / format.getFrameRate();
+            short sample = (short) (Math.sin(phase) * 12000 + random.nextGaussian() * 500);
+            for (int c = 0; c < format.getChannels(); c++) {
+                buffer.putShort(sample);
+            }
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,205 @@
+package ai.speechtotext.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ai.speechtotext.engine.ScriptedEngine;
+import ai.speechtotext.source.PipeSource;
+import ai.speechtotext.transcription.LineTranscription;
+import ai.speechtotext.transcription.Transcriber;
+import ai.speechtotext.transcription.TranscriptionChannel;
+
+import environment.Configuration;
+
+/**
+ * Measures how far live captions lag behind run-on speech, with lines cut by {@code maxLineSeconds} and without. The
+ * delay of a word is the audio read by the time its line is shown, minus the end of the word in the script, so the
+ * figures do not depend on how fast the machine is.
+ * <pre>
+ * java -cp live-captioning-system.jar ai.speechtotext.bench.SegmentationHarness [--max-line 6,0]
+ *     [--minutes 5] [--run-on 25] | [--wav lesson.wav]
+ * </pre>
+ * Without {@code --wav}, speech-like noise is generated: stretches of {@code --run-on} seconds of speech with only short
+ * breaths, separated by real pauses, each stretch one line of the script. With it, the timed transcription next to
+ * the file ({@code lesson.txt}) is the script, and the file's own quiet points are used. A {@link ScriptedEngine}
+ * recognizes the script, so the harness also checks that cutting lines neither loses nor repeats a word.
+ */
+public class SegmentationHarness {
+
+    private static final float SAMPLE_RATE = 16000;
+    private static final double BYTES_PER_SECOND = SAMPLE_RATE * 2.0;
+
+    /** A word of the script and when it ends, in seconds. */
+    private static record TimedWord(String text, double endSeconds) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Double> maxLines = List.of(6.0, 0.0);
+        double minutes = 5;
+        double runOnSeconds = 25;
+        File wav = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--max-line" -> maxLines = Arrays.stream(args[++i].split(",")).map(Double::parseDouble).toList();
+                case "--minutes" -> minutes = Double.parseDouble(args[++i]);
+                case "--run-on" -> runOnSeconds = Double.parseDouble(args[++i]);
+                case "--wav" -> wav = new File(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        byte[] pcm;
+        List<ScriptedEngine.Line> script = new ArrayList<>();
+        if (wav != null) {
+            pcm = ReplayDataLine.readPcm(wav);
+            script = ScriptedEngine.readScript(Path.of(wav.getPath().replaceAll("(?i)\\.wav$", ".txt")));
+        } else {
+            pcm = runOnSpeech(minutes, runOnSeconds, script);
+        }
+
+        List<TimedWord> words = new ArrayList<>();
+        for (var line : script) {
+            String[] text = line.text().split(" ");
+            double step = (line.endSeconds() - line.startSeconds()) / text.length;
+            for (int w = 0; w < text.length; w++) {
+                words.add(new TimedWord(text[w], line.startSeconds() + (w + 1) * step));
+            }
+        }
+
+        // Runs on a configuration of its own, the user's is left alone
+        if (System.getProperty("sightline.config") == null) {
+            Path config = Files.createTempFile("segmentation-harness", ".json");
+            config.toFile().deleteOnExit();
+            Files.delete(config);
+            System.setProperty("sightline.config", config.toString());
+        }
+
+        System.out.printf("Audio: %.1f min, %d script lines, %d words%n", pcm.length / BYTES_PER_SECOND / 60, script.size(), words.size());
+        System.out.printf("%-10s %6s %10s %10s %10s %10s  %s%n", "max line", "lines", "mean s", "p95 s", "worst s", "longest s", "words");
+        for (double maxLine : maxLines) {
+            Configuration.save(Configuration.get().toBuilder().maxLineSeconds(maxLine).loadShedding(false).build());
+            run(maxLine, pcm, script, words);
+        }
+    }
+
+    private static void run(double maxLine, byte[] pcm, List<ScriptedEngine.Line> script, List<TimedWord> words) throws Exception {
+        var counting = new CountingInputStream(new ByteArrayInputStream(pcm));
+        var transcriber = new Transcriber(new ScriptedEngine(script, SAMPLE_RATE), new PipeSource(counting, SAMPLE_RATE));
+
+        List<Double> delays = new ArrayList<>();
+        List<String> shown = new ArrayList<>();
+        double[] longest = new double[1];
+        int[] lines = new int[1];
+        var channel = new TranscriptionChannel<LineTranscription>();
+        channel.subscribe(line -> {
+            if (line != LineTranscription.END) {
+                double position = counting.count / BYTES_PER_SECOND;
+                String[] text = line.text().split(" ");
+                for (int w = 0; w < text.length; w++) {
+                    int index = shown.size();
+                    shown.add(text[w]);
+                    if (index < words.size()) {
+                        delays.add(position - words.get(index).endSeconds());
+                    }
+                }
+                if (text.length > 0 && shown.size() - text.length < words.size()) {
+                    // From the first word of the line being spoken to the line being shown
+                    var first = words.get(shown.size() - text.length);
+                    longest[0] = Math.max(longest[0], position - first.endSeconds());
+                }
+                lines[0]++;
+            }
+            channel.clear();
+        });
+
+        var transcript = Files.createTempFile("segmentation-harness", ".txt").toFile();
+        transcript.deleteOnExit();
+        transcriber.transcribe(transcript, channel, true);
+
+        boolean same = shown.equals(words.stream().map(TimedWord::text).toList());
+        delays.sort(null);
+        System.out.printf("%-10s %6d %10.2f %10.2f %10.2f %10.2f  %s%n",
+            maxLine > 0 ? "%.1f s".formatted(maxLine) : "off",
+            lines[0],
+            delays.stream().mapToDouble(Double::doubleValue).average().orElse(0),
+            delays.isEmpty() ? 0 : delays.get((int) (delays.size() * 0.95)),
+            delays.isEmpty() ? 0 : delays.getLast(),
+            longest[0],
+            same ? "all shown once" : "MISMATCH: %d shown, %d in script".formatted(shown.size(), words.size()));
+    }
+
+    /**
+     * Generates noise shaped like speech: syllables at about 4 per second, short dips between words, a breath of a
+     * quarter second every few seconds, and a second and a half of silence between stretches.
+     */
+    private static byte[] runOnSpeech(double minutes, double runOnSeconds, List<ScriptedEngine.Line> script) {
+        var random = new Random(7);
+        int total = (int) (minutes * 60 * SAMPLE_RATE);
+        byte[] pcm = new byte[total * 2];
+        double pause = 1.5;
+        int word = 0;
+
+        double start = 0.5;
+        while (start + runOnSeconds < total / SAMPLE_RATE) {
+            double end = start + runOnSeconds;
+            double nextBreath = start + 3 + random.nextDouble() * 4;
+            for (int i = (int) (start * SAMPLE_RATE); i < end * SAMPLE_RATE; i++) {
+                double t = i / SAMPLE_RATE;
+                double envelope = 0.55 + 0.45 * Math.sin(2 * Math.PI * 4 * t);
+                if (t % 0.4 < 0.06) envelope *= 0.3;
+                if (t >= nextBreath) {
+                    envelope = 0.03;
+                    if (t >= nextBreath + 0.25) nextBreath = t + 3 + random.nextDouble() * 4;
+                }
+                int sample = (int) (random.nextGaussian() * 3000 * envelope);
+                pcm[2 * i] = (byte) sample;
+                pcm[2 * i + 1] = (byte) (sample >> 8);
+            }
+
+            int count = (int) (runOnSeconds * 2.5);
+            var text = new StringBuilder();
+            for (int w = 0; w < count; w++) {
+                if (w > 0) text.append(' ');
+                text.append("w").append(word++);
+            }
+            script.add(new ScriptedEngine.Line(text.toString(), start, end));
+            start = end + pause;
+        }
+
+        // Quiet room noise everywhere else
+        for (int i = 0; i < total; i++) {
+            if (pcm[2 * i] == 0 && pcm[2 * i + 1] == 0) {
+                int sample = (int) (random.nextGaussian() * 30);
+                pcm[2 * i] = (byte) sample;
+                pcm[2 * i + 1] = (byte) (sample >> 8);
+            }
+        }
+        return pcm;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) count += read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ai.speechtotext.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import session.Sessions;
+import session.sync.SessionSync;
+
+/**
+ * Times syncing a sessions folder to another local folder: the first, full sync, a sync with nothing changed, and a
+ * sync after new sessions were recorded and a session still being recorded grew. After every sync the copy is compared
+ * with the sessions, byte for byte.
+ * <pre>
+ * java -cp live-captioning-system.jar ai.speechtotext.bench.SyncBenchmark [--sessions 1000] [--lines 400] [--new 5]
+ *     [--threads 4]
+ * </pre>
+ * The sessions and the copy are written to temporary folders, which are deleted afterwards.
+ */
+public class SyncBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int sessions = 1000;
+        int lines = 400;
+        int added = 5;
+        int threads = 4;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sessions" -> sessions = Integer.parseInt(args[++i]);
+                case "--lines" -> lines = Integer.parseInt(args[++i]);
+                case "--new" -> added = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        Path source = Files.createTempDirectory("sync-benchmark-sessions");
+        Path target = Files.createTempDirectory("sync-benchmark-copy");
+        try {
+            var random = new Random(5);
+            for (int s = 0; s < sessions; s++) {
+                write(source.resolve(name(s)), lines, random);
+            }
+            System.out.printf("%d sessions of %d lines, %d threads%n", sessions, lines, threads);
+
+            check("full", SessionSync.sync(source, target, threads), source, target);
+            check("unchanged", SessionSync.sync(source, target, threads), source, target);
+
+            // A lesson still being recorded gets new lines, and a few more lessons are recorded
+            Path growing = source.resolve(name(sessions - 1)).resolve(Sessions.TRANSCRIPTION_FILE_NAME);
+            Files.writeString(growing, "[0.00 -> 1.00] the lesson goes on\n", StandardOpenOption.APPEND);
+            for (int s = sessions; s < sessions + added; s++) {
+                write(source.resolve(name(s)), lines, random);
+            }
+            check(added + " new, 1 grown", SessionSync.sync(source, target, threads), source, target);
+
+            // The first session moves into a pack, as compaction does
+            Path first = source.resolve(name(0));
+            Files.move(first.resolve(Sessions.TRANSCRIPTION_FILE_NAME), source.resolve("2026-01.pack"));
+            Files.delete(first);
+            check("1 moved", SessionSync.sync(source, target, threads), source, target);
+        } finally {
+            delete(source);
+            delete(target);
+        }
+    }
+
+    private static void check(String label, SessionSync.Report report, Path source, Path target) throws IOException {
+        System.out.printf("%-14s %6d ms %6d copied %3d appended %3d deleted %8.1f MB %8.1f MB/s%n", label,
+            report.elapsedNanos() / 1_000_000, report.copied(), report.appended(), report.deleted(), report.bytes() / 1048576.0,
+            report.megabytesPerSecond());
+        if (!report.succeeded()) {
+            throw new IllegalStateException(report.failures().size() + " files failed, first: " + report.failures().getFirst());
+        }
+
+        List<Path> expected = files(source);
+        List<Path> copied = files(target).stream().filter(path -> !path.getFileName().toString().startsWith(".sync")).toList();
+        if (!expected.equals(copied)) {
+            throw new IllegalStateException("Copy holds other files than the sessions: " + copied.size() + " vs " + expected.size());
+        }
+        for (var path : expected) {
+            if (!Arrays.equals(Files.readAllBytes(source.resolve(path)), Files.readAllBytes(target.resolve(path)))) {
+                throw new IllegalStateException("Copy of " + path + " differs");
+            }
+        }
+    }
+
+    private static List<Path> files(Path folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            return paths.filter(Files::isRegularFile).map(folder::relativize).sorted().toList();
+        }
+    }
+
+    private static String name(int session) {
+        return "session_2026-%02d-%02d_%02d-%02d-00".formatted(1 + session / 900 % 12, 1 + session / 30 % 28, session / 60 % 24,
+            session % 60);
+    }
+
+    private static void write(Path session, int lines, Random random) throws IOException {
+        Files.createDirectories(session);
+        var text = new StringBuilder();
+        double time = 0;
+        for (int l = 0; l < lines; l++) {
+            double duration = 2 + random.nextDouble() * 4;
+            text.append("[%.2f -> %.2f] ".formatted(time, time + duration));
+            int words = (int) (duration * 2.3);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) text.append(' ');
+                text.append("word").append(random.nextInt(3000));
+            }
+            text.append('\n');
+            time += duration;
+        }
+        Files.writeString(session.resolve(Sessions.TRANSCRIPTION_FILE_NAME), text);
+    }
+
+    private static void delete(Path folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (var path : paths.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ai.speechtotext.bench;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Word error rate of a hypothesis against a reference transcript: the fewest substitutions, deletions and insertions
+ * that turn one into the other, over the number of reference words. Words are compared lower case, without
+ * punctuation other than apostrophes and hyphens inside words.
+ */
+public class WordErrorRate {
+
+    public static record Result(long errors, long referenceWords) {
+
+        public static final Result NONE = new Result(0, 0);
+
+        public double rate() {
+            return referenceWords == 0 ? (errors == 0 ? 0 : 1) : (double) errors / referenceWords;
+        }
+
+        public Result add(Result other) {
+            return new Result(errors + other.errors, referenceWords + other.referenceWords);
+        }
+    }
+
+    private static final Pattern NOT_WORD = Pattern.compile("[^\\p{L}\\p{N}'\\-]+");
+
+    public static Result of(String reference, String hypothesis) {
+        var expected = words(reference);
+        var actual = words(hypothesis);
+        return new Result(distance(expected, actual), expected.size());
+    }
+
+    public static List<String> words(String text) {
+        return Arrays.stream(NOT_WORD.split(text.toLowerCase(Locale.ROOT)))
+            .map(word -> word.replaceAll("^['\\-]+|['\\-]+$", ""))
+            .filter(word -> !word.isEmpty())
+            .toList();
+    }
+
+    /**
+     * Levenshtein distance over words, keeping two rows of the table so hour-long transcripts fit in memory.
+     */
+    private static long distance(List<String> reference, List<String> hypothesis) {
+        int[] previous = new int[hypothesis.size() + 1];
+        int[] current = new int[hypothesis.size() + 1];
+        for (int j = 0; j < previous.length; j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= reference.size(); i++) {
+            current[0] = i;
+            String word = reference.get(i - 1);
+            for (int j = 1; j <= hypothesis.size(); j++) {
+                int substitution = previous[j - 1] + (word.equals(hypothesis.get(j - 1)) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[hypothesis.size()];
+    }
+}
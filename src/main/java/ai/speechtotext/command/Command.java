@@ -0,0 +1,20 @@
+package ai.speechtotext.command;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * Spoken commands a teacher can give hands-free while captions are running.
+ */
+@Getter
+@Accessors(fluent = true)
+@RequiredArgsConstructor
+public enum Command {
+
+    CAPTION_PAUSE("caption pause"),
+    NEW_SECTION("new section"),
+    MARK_IMPORTANT("mark important");
+
+    private final String phrase;
+}
@@ -0,0 +1,14 @@
+package ai.speechtotext.command;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A spotted command. {@code capturedNanos} is when the audio that completed the phrase was handed to the spotter and
+ * {@code detectedNanos} when the phrase was recognized, both {@link System#nanoTime()} values.
+ */
+public record CommandEvent(Command command, long capturedNanos, long detectedNanos) {
+
+    public long latencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(detectedNanos - capturedNanos);
+    }
+}
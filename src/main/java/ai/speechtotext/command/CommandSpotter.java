@@ -0,0 +1,193 @@
+package ai.speechtotext.command;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.vosk.Model;
+import org.vosk.Recognizer;
+
+import ai.speechtotext.transcription.TranscriptionChannel;
+
+import environment.logging.Log;
+
+import lombok.Getter;
+
+/**
+ * Listens for {@link Command}s on a copy of the captured audio, next to the caption decoder.
+ * <p>
+ * The spotter decodes with its own {@link Recognizer} restricted to the command phrases, which is much faster and more
+ * reliable than finding them in the captions. Phrases are matched on partial results, so a command fires as soon as
+ * its last word is heard instead of after the pause that ends the utterance.
+ * </p>
+ * <p>
+ * {@link #offer(byte[], int)} never blocks the caller: audio is copied into one of a fixed set of buffers and queued
+ * for the spotter's thread. When the spotter falls behind, audio is dropped and counted rather than delaying the
+ * captions.
+ * </p>
+ */
+public class CommandSpotter implements AutoCloseable {
+
+    private static final Log LOG = Log.get("command");
+
+    /** Audio chunk with the time it was captured. */
+    private static final class Chunk {
+        final byte[] data;
+        int length;
+        long capturedNanos;
+
+        Chunk(int size) {
+            data = new byte[size];
+        }
+    }
+
+    private final Recognizer recognizer;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> queued;
+    private final Thread worker;
+
+    @Getter
+    private final TranscriptionChannel<CommandEvent> channel = new TranscriptionChannel<>();
+
+    private volatile boolean closed = false;
+
+    @Getter
+    private volatile long droppedChunks;
+
+    private long detections;
+    private long totalLatencyMillis;
+    private long maxLatencyMillis;
+
+    public CommandSpotter(Model model, float sampleRate, int maxChunkBytes, int queuedChunks) {
+        this.recognizer = new Recognizer(model, sampleRate, grammar());
+        this.free = new ArrayBlockingQueue<>(queuedChunks);
+        this.queued = new ArrayBlockingQueue<>(queuedChunks);
+        for (int i = 0; i < queuedChunks; i++) {
+            free.add(new Chunk(maxChunkBytes));
+        }
+
+        worker = new Thread(this::run, "command-spotter");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * The command phrases, plus the unknown word so that other speech is not forced onto a command.
+     */
+    private static String grammar() {
+        var phrases = new JSONArray();
+        Arrays.stream(Command.values()).map(Command::phrase).forEach(phrases::put);
+        phrases.put("[unk]");
+        return phrases.toString();
+    }
+
+    /**
+     * Hands captured audio to the spotter without blocking.
+     *
+     * @return false if the audio was dropped because the spotter is behind
+     */
+    public boolean offer(byte[] buffer, int length) {
+        if (closed) return false;
+
+        Chunk chunk = free.poll();
+        if (chunk == null || length > chunk.data.length) {
+            if (chunk != null) free.offer(chunk);
+            droppedChunks++;
+            return false;
+        }
+
+        System.arraycopy(buffer, 0, chunk.data, 0, length);
+        chunk.length = length;
+        chunk.capturedNanos = System.nanoTime();
+        queued.offer(chunk);
+        return true;
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                Chunk chunk = queued.poll(100, TimeUnit.MILLISECONDS);
+                if (chunk == null) continue;
+
+                boolean finished = recognizer.acceptWaveForm(chunk.data, chunk.length);
+                long capturedNanos = chunk.capturedNanos;
+                free.offer(chunk);
+
+                String text = finished
+                    ? new JSONObject(recognizer.getResult()).optString("text", "")
+                    : new JSONObject(recognizer.getPartialResult()).optString("partial", "");
+
+                Command command = find(text);
+                if (command != null) {
+                    fire(new CommandEvent(command, capturedNanos, System.nanoTime()));
+                    if (!finished) {
+                        // Starts a new utterance so the same command is not fired again by the next partial
+                        recognizer.reset();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.error("Command spotting stopped", e);
+        } finally {
+            recognizer.close();
+        }
+    }
+
+    private static Command find(String text) {
+        if (text.isEmpty()) return null;
+        for (var command : Command.values()) {
+            if (text.contains(command.phrase())) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    private void fire(CommandEvent event) {
+        synchronized (this) {
+            detections++;
+            totalLatencyMillis += event.latencyMillis();
+            maxLatencyMillis = Math.max(maxLatencyMillis, event.latencyMillis());
+        }
+        channel.send(event);
+        // Listeners are notified on send, the queue would otherwise grow for the whole session
+        channel.clear();
+    }
+
+    public synchronized long getDetections() {
+        return detections;
+    }
+
+    /**
+     * @return the mean time from capturing the audio that completed a command to firing it, in milliseconds
+     */
+    public synchronized double getAverageLatencyMillis() {
+        return detections == 0 ? 0 : (double) totalLatencyMillis / detections;
+    }
+
+    public synchronized long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "commands=%d latency avg=%.1fms max=%dms dropped=%d".formatted(
+            detections, getAverageLatencyMillis(), maxLatencyMillis, droppedChunks
+        );
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            worker.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package ai.speechtotext.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A fake {@link SpeechEngine} that "recognizes" a script: every line ends its utterance once the audio fed to the
+ * engine reaches the line's end time, whatever the audio holds. Results depend only on the number of bytes accepted, so
+ * tests and benchmarks get the same lines on every run and need no model. Finalizing in the middle of a line returns
+ * the words spoken so far, and the rest of the line becomes the next utterance.
+ * <p>
+ * An optional real-time factor makes the engine busy-wait that fraction of the audio duration for every block, which
+ * stands in for a decoder's CPU load.
+ * </p>
+ */
+public class ScriptedEngine implements SpeechEngine {
+
+    /**
+     * A line of the script, in seconds from the start of the audio.
+     */
+    public static record Line(String text, double startSeconds, double endSeconds) {
+    }
+
+    /** A session transcription line of a file transcription: "[12.34 -> 15.60] text". */
+    private static final Pattern TRANSCRIPT_LINE =
+        Pattern.compile("^\\[(\\d+(?:[.,]\\d+)?) -> (\\d+(?:[.,]\\d+)?)\\] (.*)$");
+
+    private final List<Line> script;
+    private final double bytesPerSecond;
+    private final double realTimeFactor;
+
+    private long acceptedBytes;
+    private int next;
+    private Line ended;
+    private boolean closed;
+
+    public ScriptedEngine(List<Line> script, float sampleRate) {
+        this(script, sampleRate, 0);
+    }
+
+    /**
+     * @param realTimeFactor processing time spent per second of audio, in seconds
+     */
+    public ScriptedEngine(List<Line> script, float sampleRate, double realTimeFactor) {
+        this.script = new ArrayList<>(script);
+        this.bytesPerSecond = sampleRate * 2.0;
+        this.realTimeFactor = realTimeFactor;
+    }
+
+    public static Factory factory(List<Line> script, double realTimeFactor) {
+        return sampleRate -> new ScriptedEngine(script, sampleRate, realTimeFactor);
+    }
+
+    /**
+     * Reads a script from a file transcription of the same audio, as written to a session's transcription file. Lines
+     * in another format are skipped.
+     */
+    public static List<Line> readScript(Path transcript) throws IOException {
+        List<Line> script = new ArrayList<>();
+        for (String text : Files.readAllLines(transcript)) {
+            var matcher = TRANSCRIPT_LINE.matcher(text.trim());
+            if (matcher.matches()) {
+                script.add(new Line(
+                    matcher.group(3),
+                    Double.parseDouble(matcher.group(1).replace(',', '.')),
+                    Double.parseDouble(matcher.group(2).replace(',', '.'))
+                ));
+            }
+        }
+        return script;
+    }
+
+    @Override
+    public boolean acceptAudio(byte[] audio, int length) {
+        checkOpen();
+        acceptedBytes += length;
+        if (realTimeFactor > 0) {
+            long deadline = System.nanoTime() + (long) (length / bytesPerSecond * realTimeFactor * 1e9);
+            while (System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+        }
+
+        if (ended == null && next < script.size() && position() >= script.get(next).endSeconds()) {
+            ended = script.get(next++);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String partial() {
+        checkOpen();
+        if (next >= script.size()) return "";
+        var line = script.get(next);
+        return spokenPart(line, position());
+    }
+
+    @Override
+    public Utterance result() {
+        checkOpen();
+        var line = ended;
+        ended = null;
+        return line == null ? Utterance.EMPTY : utterance(line.text(), line.startSeconds(), line.endSeconds());
+    }
+
+    @Override
+    public Utterance finalResult() {
+        var result = result();
+        if (!result.isEmpty() || next >= script.size()) {
+            return result;
+        }
+
+        // The audio ended, or the utterance was cut, in the middle of a line
+        var line = script.get(next);
+        double position = position();
+        String text = spokenPart(line, position);
+        if (text.isEmpty()) {
+            return Utterance.EMPTY;
+        }
+        String[] words = line.text().split(" ");
+        int spoken = text.split(" ").length;
+        if (spoken < words.length) {
+            // Like a recognizer finalizing during speech, the rest of the line follows as the next utterance
+            script.set(next, new Line(String.join(" ", Arrays.copyOfRange(words, spoken, words.length)), position, line.endSeconds()));
+        } else {
+            next++;
+        }
+        return utterance(text, line.startSeconds(), Math.min(position, line.endSeconds()));
+    }
+
+    @Override
+    public void reset() {
+        checkOpen();
+        ended = null;
+        if (next < script.size() && position() >= script.get(next).startSeconds()) {
+            next++;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private double position() {
+        return acceptedBytes / bytesPerSecond;
+    }
+
+    /**
+     * @return the words of {@code line} spoken by {@code position}, assuming they are evenly spread over the line
+     */
+    private static String spokenPart(Line line, double position) {
+        if (position < line.startSeconds()) return "";
+        String[] words = line.text().split(" ");
+        double duration = Math.max(line.endSeconds() - line.startSeconds(), 1e-6);
+        int spoken = (int) Math.min(words.length, Math.ceil((position - line.startSeconds()) / duration * words.length));
+        return String.join(" ", Arrays.copyOf(words, spoken));
+    }
+
+    private static Utterance utterance(String text, double start, double end) {
+        String[] words = text.split(" ");
+        double step = (end - start) / words.length;
+        List<Utterance.Word> timed = new ArrayList<>(words.length);
+        for (int i = 0; i < words.length; i++) {
+            timed.add(new Utterance.Word(words[i], start + i * step, start + (i + 1) * step));
+        }
+        return new Utterance(text, timed);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ai.speechtotext.engine;
+
+import java.io.IOException;
+
+/**
+ * An offline speech recognizer fed with 16-bit little endian mono PCM. The transcribers only talk to this interface,
+ * so engines can be swapped, and tested or benchmarked without a model, by using a {@link ScriptedEngine}.
+ * <p>
+ * Engines are not thread safe; each is used by one decoding thread. Word times are in seconds from the first audio
+ * the engine accepted.
+ * </p>
+ */
+public interface SpeechEngine extends AutoCloseable {
+
+    /**
+     * Creates engines for one sample rate, for example one per microphone.
+     */
+    @FunctionalInterface
+    public static interface Factory {
+        SpeechEngine create(float sampleRate) throws IOException;
+    }
+
+    /**
+     * Decodes {@code length} bytes of {@code audio}.
+     *
+     * @return true if an utterance ended, its text is then available from {@link #result()}
+     */
+    boolean acceptAudio(byte[] audio, int length);
+
+    /**
+     * @return the text of the utterance being decoded so far, empty between utterances
+     */
+    String partial();
+
+    /**
+     * @return the utterance that ended in the last {@link #acceptAudio(byte[], int)}
+     */
+    Utterance result();
+
+    /**
+     * Ends the current utterance at the end of the audio.
+     */
+    Utterance finalResult();
+
+    /**
+     * Drops the utterance being decoded.
+     */
+    void reset();
+
+    /**
+     * Frees the engine's native resources.
+     */
+    @Override
+    void close();
+}
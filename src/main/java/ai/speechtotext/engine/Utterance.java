@@ -0,0 +1,18 @@
+package ai.speechtotext.engine;
+
+import java.util.List;
+
+/**
+ * A finished utterance. {@code words} holds the timed words when the engine provides them, and may be empty.
+ */
+public record Utterance(String text, List<Word> words) {
+
+    public static record Word(String text, double startSeconds, double endSeconds) {
+    }
+
+    public static final Utterance EMPTY = new Utterance("", List.of());
+
+    public boolean isEmpty() {
+        return text.isEmpty();
+    }
+}
@@ -0,0 +1,86 @@
+package ai.speechtotext.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.vosk.Model;
+import org.vosk.Recognizer;
+
+/**
+ * A {@link SpeechEngine} backed by a Vosk {@link Recognizer}. Word timings are always on, and Vosk's
+ * {@code <unk>} tokens are removed from the text.
+ */
+public class VoskEngine implements SpeechEngine {
+
+    private final Recognizer recognizer;
+    private boolean closed;
+
+    public VoskEngine(Model model, float sampleRate) throws IOException {
+        recognizer = new Recognizer(model, sampleRate);
+        recognizer.setWords(true);
+    }
+
+    /**
+     * @return a factory of engines sharing {@code model}
+     */
+    public static Factory factory(Model model) {
+        return sampleRate -> new VoskEngine(model, sampleRate);
+    }
+
+    @Override
+    public boolean acceptAudio(byte[] audio, int length) {
+        return recognizer.acceptWaveForm(audio, length);
+    }
+
+    @Override
+    public String partial() {
+        return clean(new JSONObject(recognizer.getPartialResult()).optString("partial", ""));
+    }
+
+    @Override
+    public Utterance result() {
+        return parse(recognizer.getResult());
+    }
+
+    @Override
+    public Utterance finalResult() {
+        return parse(recognizer.getFinalResult());
+    }
+
+    @Override
+    public void reset() {
+        recognizer.reset();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        recognizer.close();
+    }
+
+    private static Utterance parse(String result) {
+        var json = new JSONObject(result);
+        String text = clean(json.optString("text", ""));
+        if (text.isEmpty()) {
+            return Utterance.EMPTY;
+        }
+
+        List<Utterance.Word> words = new ArrayList<>();
+        var timed = json.optJSONArray("result");
+        if (timed != null) {
+            for (int i = 0; i < timed.length(); i++) {
+                var word = timed.getJSONObject(i);
+                if (word.optString("word").equals("<unk>")) continue;
+                words.add(new Utterance.Word(word.optString("word"), word.optDouble("start"), word.optDouble("end")));
+            }
+        }
+        return new Utterance(text, words);
+    }
+
+    private static String clean(String text) {
+        return text.replace("<unk> ", "").replace(" <unk>", "").replace("<unk>", "").trim();
+    }
+}
@@ -0,0 +1,43 @@
+package ai.speechtotext.scheduling;
+
+/**
+ * What a running job sees of the scheduler. Transcribers call it once per block of audio.
+ */
+public interface JobContext {
+
+    /**
+     * A context for work that is not scheduled, where every call does nothing.
+     */
+    public static final JobContext NONE = new JobContext() {
+    };
+
+    /**
+     * @return the scope that cancels everything the job starts, or null outside the scheduler
+     */
+    default JobScope scope() {
+        return null;
+    }
+
+    default boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * Reports progress between 0 and 1.
+     */
+    default void progress(double fraction) {
+    }
+
+    /**
+     * Blocks a background job while live captions need the CPU. Does nothing for other jobs, and returns early when the
+     * job is cancelled.
+     */
+    default void awaitTurn() throws InterruptedException {
+    }
+
+    /**
+     * Reports that decoding {@code audioNanos} of live audio took {@code processingNanos}.
+     */
+    default void reportLoad(long processingNanos, long audioNanos) {
+    }
+}
@@ -0,0 +1,122 @@
+package ai.speechtotext.scheduling;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import environment.logging.Log;
+
+import lombok.Getter;
+
+/**
+ * A submitted job, to follow its state and progress or to cancel it.
+ */
+public class JobHandle {
+
+    private static final Log LOG = Log.get("scheduler");
+
+    public static enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        public boolean isDone() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    @Getter
+    private final long id;
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final JobPriority priority;
+
+    @Getter
+    private final JobScope scope;
+
+    @Getter
+    private volatile State state = State.QUEUED;
+
+    @Getter
+    private volatile double progress;
+
+    @Getter
+    private volatile Throwable failure;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<Consumer<JobHandle>> listeners = new CopyOnWriteArrayList<>();
+
+    JobHandle(long id, String name, JobPriority priority, JobScope scope) {
+        this.id = id;
+        this.name = name;
+        this.priority = priority;
+        this.scope = scope;
+    }
+
+    /**
+     * Listens for state changes and progress. Listeners are called on the job's thread.
+     */
+    public void subscribe(Consumer<JobHandle> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Cancels the job, and everything it started, whether it is queued or running.
+     */
+    public void cancel() {
+        scope.cancel();
+        synchronized (this) {
+            if (state == State.QUEUED) {
+                finish(State.CANCELLED, null);
+            }
+        }
+    }
+
+    public void await() throws InterruptedException {
+        done.await();
+    }
+
+    synchronized boolean start() {
+        if (state != State.QUEUED) return false;
+        state = State.RUNNING;
+        notifyListeners();
+        return true;
+    }
+
+    void progress(double fraction) {
+        fraction = Math.max(0, Math.min(1, fraction));
+        // Coalesces updates, a job may report every few milliseconds
+        if (fraction - progress >= 0.001 || fraction == 1) {
+            progress = fraction;
+            notifyListeners();
+        }
+    }
+
+    synchronized void finish(State finalState, Throwable failure) {
+        if (state.isDone()) return;
+        this.failure = failure;
+        this.state = finalState;
+        if (finalState == State.SUCCEEDED) {
+            progress = 1;
+        }
+        done.countDown();
+        notifyListeners();
+    }
+
+    private void notifyListeners() {
+        for (var listener : listeners) {
+            try {
+                listener.accept(this);
+            } catch (RuntimeException e) {
+                LOG.error("Listener of job {} failed", name, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "%s #%d %s %s %.0f%%".formatted(priority, id, name, state, progress * 100);
+    }
+}
@@ -0,0 +1,16 @@
+package ai.speechtotext.scheduling;
+
+/**
+ * How a job competes for the CPU, from most to least important.
+ */
+public enum JobPriority {
+
+    /** Live captioning. Starts at once on a maximum priority thread and is never throttled. */
+    LIVE,
+
+    /** Short work a user is waiting for, such as loading a model or exporting. Starts at once. */
+    INTERACTIVE,
+
+    /** File transcription. Queued, run on minimum priority threads and throttled while live captions are under load. */
+    BACKGROUND
+}
@@ -0,0 +1,211 @@
+package ai.speechtotext.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import environment.logging.Log;
+
+/**
+ * Structured concurrency for transcription jobs: every thread a job starts is forked in its scope, and the scope does
+ * not close before all of them have finished. Cancelling a scope interrupts its threads, runs its cancel hooks (for
+ * example {@code Transcriber::stop}) and cancels its child scopes, so stopping a job stops everything it started.
+ * <p>
+ * The first subtask that fails cancels the others, like {@code StructuredTaskScope} with a shutdown-on-failure
+ * policy. That API is still a preview in the Java version this project targets, so this small subset is used instead.
+ * </p>
+ */
+public class JobScope implements AutoCloseable {
+
+    private static final Log LOG = Log.get("scheduler");
+
+    @FunctionalInterface
+    public static interface Subtask {
+        void run() throws Exception;
+    }
+
+    private final String name;
+    private final int threadPriority;
+    private final JobScope parent;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private final List<Runnable> cancelHooks = new ArrayList<>();
+    private final List<JobScope> children = new ArrayList<>();
+
+    private volatile boolean cancelled;
+    private Throwable failure;
+    private boolean closed;
+
+    public JobScope(String name, int threadPriority) {
+        this(name, threadPriority, null);
+    }
+
+    private JobScope(String name, int threadPriority, JobScope parent) {
+        this.name = name;
+        this.threadPriority = threadPriority;
+        this.parent = parent;
+    }
+
+    /**
+     * @return a scope whose threads are cancelled with this one
+     */
+    public synchronized JobScope child(String childName) {
+        checkOpen();
+        var child = new JobScope(name + "/" + childName, threadPriority, this);
+        children.add(child);
+        if (cancelled) {
+            child.cancel();
+        }
+        return child;
+    }
+
+    /**
+     * Runs {@code subtask} on a new thread of this scope.
+     */
+    public synchronized void fork(String subtaskName, Subtask subtask) {
+        checkOpen();
+        if (cancelled) {
+            throw new CancellationException(name + " is cancelled");
+        }
+
+        var thread = new Thread(() -> {
+            try {
+                subtask.run();
+            } catch (InterruptedException | CancellationException e) {
+                // Expected when the scope is cancelled
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }, name + "/" + subtaskName);
+        thread.setPriority(threadPriority);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    /**
+     * Runs {@code hook} when the scope is cancelled, or at once if it already is.
+     */
+    public void onCancel(Runnable hook) {
+        synchronized (this) {
+            if (!cancelled) {
+                cancelHooks.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancel() {
+        List<Runnable> hooks;
+        List<Thread> running;
+        List<JobScope> scopes;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            hooks = List.copyOf(cancelHooks);
+            running = List.copyOf(threads);
+            scopes = List.copyOf(children);
+        }
+
+        for (var hook : hooks) {
+            try {
+                hook.run();
+            } catch (RuntimeException e) {
+                LOG.error("Cancellation hook failed", e);
+            }
+        }
+        scopes.forEach(JobScope::cancel);
+        running.forEach(Thread::interrupt);
+    }
+
+    private void fail(Throwable e) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+        cancel();
+    }
+
+    /**
+     * Waits for every thread forked so far, including those of child scopes.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted, after cancelling the scope
+     */
+    public void join() throws InterruptedException {
+        try {
+            while (true) {
+                List<Thread> running;
+                List<JobScope> scopes;
+                synchronized (this) {
+                    running = threads.stream().filter(Thread::isAlive).toList();
+                    scopes = List.copyOf(children);
+                }
+                for (var scope : scopes) {
+                    scope.join();
+                }
+                if (running.isEmpty()) return;
+                for (var thread : running) {
+                    thread.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * @throws Exception the first failure of a subtask, if any
+     */
+    public synchronized void throwIfFailed() throws Exception {
+        if (failure instanceof Exception e) throw e;
+        if (failure instanceof Error e) throw e;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException(name + " is closed");
+        }
+    }
+
+    /**
+     * Cancels whatever is still running and waits for it, so no thread outlives the scope.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+
+        boolean interrupted = false;
+        if (threads.stream().anyMatch(Thread::isAlive)) {
+            cancel();
+        }
+        while (true) {
+            try {
+                join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (parent != null) {
+            synchronized (parent) {
+                parent.children.remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package ai.speechtotext.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import environment.Configuration;
+import environment.logging.Log;
+
+/**
+ * Runs transcription jobs so that file transcription never starves live captions.
+ * <p>
+ * {@link JobPriority#LIVE} and {@link JobPriority#INTERACTIVE} jobs start at once on their own thread.
+ * {@link JobPriority#BACKGROUND} jobs wait in a queue for one of {@code backgroundJobs} minimum priority workers.
+ * Live jobs report how long decoding takes compared to the audio they decode; while the real-time factor of any live
+ * job is above {@code throttleRealTimeFactor}, background jobs are held at their next {@link JobContext#awaitTurn()}
+ * until it falls back below three quarters of it.
+ * </p>
+ * <p>
+ * Every job runs in its own {@link JobScope}. A job's own thread is not interrupted on cancellation, because
+ * interrupting a thread in file channel I/O closes the channel; jobs stop through the cancel hooks they register and
+ * at {@link JobContext#awaitTurn()}. Threads the job forks in its scope are interrupted.
+ * </p>
+ */
+public class TranscriptionScheduler {
+
+    private static final Log LOG = Log.get("scheduler");
+
+    @FunctionalInterface
+    public static interface JobBody {
+        void run(JobContext context) throws Exception;
+    }
+
+    private static record Queued(JobHandle handle, JobBody body) {
+    }
+
+    /** Weight of the newest measurement in the live real-time factor average. */
+    private static final double LOAD_SMOOTHING = 0.1;
+
+    private static final TranscriptionScheduler instance = new TranscriptionScheduler();
+
+    private final AtomicLong ids = new AtomicLong();
+    private final BlockingQueue<Queued> backgroundQueue = new LinkedBlockingQueue<>();
+    private final List<JobHandle> jobs = new CopyOnWriteArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final Map<Long, Double> liveLoads = new ConcurrentHashMap<>();
+    private final ReentrantLock throttleLock = new ReentrantLock();
+    private final Condition throttleLifted = throttleLock.newCondition();
+    private volatile boolean throttled;
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    public static TranscriptionScheduler get() {
+        return instance;
+    }
+
+    /**
+     * Submits a job. Live and interactive jobs start at once, background jobs when a worker is free.
+     */
+    public JobHandle submit(String name, JobPriority priority, JobBody body) {
+        return submit(name, priority, body, null);
+    }
+
+    /**
+     * Submits a job like {@link #submit(String, JobPriority, JobBody)}, with a listener that is subscribed before the
+     * job can start, so it sees every change of state and progress.
+     */
+    public JobHandle submit(String name, JobPriority priority, JobBody body, Consumer<JobHandle> listener) {
+        int threadPriority = switch (priority) {
+            case LIVE -> Thread.MAX_PRIORITY;
+            case INTERACTIVE -> Thread.NORM_PRIORITY;
+            case BACKGROUND -> Thread.MIN_PRIORITY;
+        };
+
+        var handle = new JobHandle(ids.incrementAndGet(), name, priority, new JobScope(name, threadPriority));
+        jobs.add(handle);
+        handle.subscribe(job -> {
+            if (job.getState().isDone()) jobs.remove(job);
+        });
+        if (listener != null) {
+            handle.subscribe(listener);
+        }
+
+        if (priority == JobPriority.BACKGROUND) {
+            startWorkers();
+            backgroundQueue.add(new Queued(handle, body));
+        } else {
+            var thread = new Thread(() -> run(handle, body), priority.name().toLowerCase() + "-" + name);
+            thread.setPriority(threadPriority);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return handle;
+    }
+
+    /**
+     * @return the queued and running jobs
+     */
+    public List<JobHandle> jobs() {
+        return List.copyOf(jobs);
+    }
+
+    public boolean isThrottled() {
+        return throttled;
+    }
+
+    /**
+     * @return the highest smoothed real-time factor of the running live jobs, 0 if there are none
+     */
+    public double liveRealTimeFactor() {
+        return liveLoads.values().stream().mapToDouble(Double::doubleValue).max().orElse(0);
+    }
+
+    /**
+     * @return the total time background jobs have been held back
+     */
+    public long throttledMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+    }
+
+    private synchronized void startWorkers() {
+        int count = Configuration.get().getBackgroundJobs();
+        while (workers.size() < count) {
+            var worker = new Thread(this::work, "background-jobs-" + workers.size());
+            worker.setPriority(Thread.MIN_PRIORITY);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            try {
+                var queued = backgroundQueue.take();
+                run(queued.handle(), queued.body());
+            } catch (InterruptedException e) {
+                // Workers live as long as the application
+            }
+        }
+    }
+
+    private void run(JobHandle handle, JobBody body) {
+        if (!handle.start()) {
+            // Cancelled while queued
+            handle.getScope().close();
+            return;
+        }
+
+        var context = new Context(handle);
+        try {
+            body.run(context);
+            handle.getScope().join();
+            handle.getScope().throwIfFailed();
+            handle.finish(handle.getScope().isCancelled() ? JobHandle.State.CANCELLED : JobHandle.State.SUCCEEDED, null);
+        } catch (InterruptedException | CancellationException e) {
+            handle.getScope().cancel();
+            handle.finish(JobHandle.State.CANCELLED, null);
+        } catch (Throwable e) {
+            LOG.error("Job {} failed", handle.getName(), e);
+            handle.getScope().cancel();
+            handle.finish(JobHandle.State.FAILED, e);
+        } finally {
+            handle.getScope().close();
+            if (liveLoads.remove(handle.getId()) != null) {
+                updateThrottle();
+            }
+        }
+    }
+
+    private void reportLoad(JobHandle handle, long processingNanos, long audioNanos) {
+        if (audioNanos <= 0) return;
+        double factor = (double) processingNanos / audioNanos;
+        liveLoads.merge(handle.getId(), factor, (average, next) -> average + LOAD_SMOOTHING * (next - average));
+        updateThrottle();
+    }
+
+    private void updateThrottle() {
+        double high = Configuration.get().getThrottleRealTimeFactor();
+        double load = liveRealTimeFactor();
+
+        // Hysteresis, so background jobs do not flap around the limit
+        boolean next = throttled ? load > high * 0.75 : load > high;
+        if (next == throttled) return;
+
+        throttleLock.lock();
+        try {
+            throttled = next;
+            if (!next) {
+                throttleLifted.signalAll();
+            }
+        } finally {
+            throttleLock.unlock();
+        }
+    }
+
+    private void awaitTurn(JobHandle handle) throws InterruptedException {
+        if (!throttled) return;
+
+        long start = System.nanoTime();
+        throttleLock.lock();
+        try {
+            while (throttled && !handle.getScope().isCancelled()) {
+                throttleLifted.await(100, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            throttleLock.unlock();
+            throttledNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private class Context implements JobContext {
+
+        private final JobHandle handle;
+
+        Context(JobHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public JobScope scope() {
+            return handle.getScope();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return handle.getScope().isCancelled();
+        }
+
+        @Override
+        public void progress(double fraction) {
+            handle.progress(fraction);
+        }
+
+        @Override
+        public void awaitTurn() throws InterruptedException {
+            if (handle.getPriority() == JobPriority.BACKGROUND) {
+                TranscriptionScheduler.this.awaitTurn(handle);
+            }
+        }
+
+        @Override
+        public void reportLoad(long processingNanos, long audioNanos) {
+            if (handle.getPriority() == JobPriority.LIVE) {
+                TranscriptionScheduler.this.reportLoad(handle, processingNanos, audioNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ai.speechtotext.source;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Where transcribed audio comes from: a sound card line, a file, a pipe or a network stream. Audio is always 16-bit
+ * little endian mono PCM, and reads end on a frame boundary.
+ * <p>
+ * Reads go straight into the caller's buffer, which the transcribers reuse for every chunk and hand to the engine, so
+ * audio is not copied between the source and the recognizer.
+ * </p>
+ */
+public interface AudioSource extends AutoCloseable {
+
+    AudioFormat getFormat();
+
+    /**
+     * Reads up to {@code length} bytes into {@code buffer}. Live sources block until audio arrives or the source is
+     * stopped.
+     *
+     * @return the number of bytes read, 0 if the source was stopped, or -1 at the end of the audio
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * @return whether audio arrives in real time, like from a microphone, rather than as fast as it can be read
+     */
+    boolean isLive();
+
+    /**
+     * @return bytes that have arrived but not been read yet, 0 if the source cannot tell
+     */
+    default int available() {
+        return 0;
+    }
+
+    /**
+     * @return the length of the audio in bytes, -1 if unknown or endless
+     */
+    default long getLength() {
+        return -1;
+    }
+
+    /**
+     * Skips {@code bytes} bytes, rounded down to whole frames.
+     *
+     * @return the number of bytes skipped
+     */
+    default long skip(long bytes) throws IOException {
+        int frameSize = getFormat().getFrameSize();
+        byte[] scratch = new byte[64 * 1024];
+        long skipped = 0;
+        long target = bytes - bytes % frameSize;
+        while (skipped < target) {
+            int read = read(scratch, 0, (int) Math.min(scratch.length, target - skipped));
+            if (read <= 0) break;
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    /**
+     * Resumes capturing after {@link #stop()}.
+     */
+    default void start() {
+    }
+
+    /**
+     * Stops capturing, which also ends a blocked read.
+     */
+    default void stop() {
+    }
+
+    /**
+     * Discards audio that has arrived but not been read.
+     */
+    default void flush() {
+    }
+
+    @Override
+    void close() throws IOException;
+}
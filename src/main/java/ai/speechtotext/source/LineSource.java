@@ -0,0 +1,65 @@
+package ai.speechtotext.source;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.TargetDataLine;
+
+import environment.logging.Log;
+
+/**
+ * Audio from a sound card's capture line, such as the local microphone.
+ */
+public class LineSource implements AudioSource {
+
+    private static final Log LOG = Log.get("audio");
+
+    private final TargetDataLine line;
+
+    public LineSource(TargetDataLine line) {
+        this.line = line;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return line.getFormat();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        // A full line buffer has lost audio. Logged from the capture thread, so the log must not block it
+        if (line.available() >= line.getBufferSize()) {
+            LOG.warn("Capture buffer overrun on {}, audio was lost", line.getLineInfo());
+        }
+        return line.read(buffer, offset, length - length % line.getFormat().getFrameSize());
+    }
+
+    @Override
+    public boolean isLive() {
+        return true;
+    }
+
+    @Override
+    public int available() {
+        return line.available();
+    }
+
+    @Override
+    public void start() {
+        line.start();
+    }
+
+    @Override
+    public void stop() {
+        line.stop();
+    }
+
+    @Override
+    public void flush() {
+        line.flush();
+    }
+
+    @Override
+    public void close() {
+        line.stop();
+        line.close();
+    }
+}
@@ -0,0 +1,105 @@
+package ai.speechtotext.source;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Raw PCM from another process, through a named pipe or standard input, for example
+ * {@code arecord -f S16_LE -r 16000 -c 1 -t raw | java ... } or a receiver's driver writing to {@code mkfifo mic}.
+ * <p>
+ * The producer sets the pace, so the source is live. A blocked read cannot be woken, so stopping takes effect with the
+ * next chunk the producer writes.
+ * </p>
+ */
+public class PipeSource implements AudioSource {
+
+    private final InputStream input;
+    private final AudioFormat format;
+
+    private volatile boolean running = true;
+
+    public PipeSource(InputStream input, float sampleRate) {
+        this.input = input;
+        this.format = new AudioFormat(sampleRate, 16, 1, true, false);
+    }
+
+    /**
+     * Opens a named pipe, or any file of raw PCM.
+     */
+    public static PipeSource open(Path pipe, float sampleRate) throws IOException {
+        return new PipeSource(new FileInputStream(pipe.toFile()), sampleRate);
+    }
+
+    public static PipeSource stdin(float sampleRate) {
+        return new PipeSource(System.in, sampleRate);
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (!running) return 0;
+
+        length -= length % format.getFrameSize();
+        int read = input.read(buffer, offset, length);
+        if (read <= 0) {
+            return read;
+        }
+        // The pipe may split a sample, the rest of it follows at once
+        while (read % format.getFrameSize() != 0) {
+            int more = input.read(buffer, offset + read, format.getFrameSize() - read % format.getFrameSize());
+            if (more < 0) return read - read % format.getFrameSize();
+            read += more;
+        }
+        return read;
+    }
+
+    @Override
+    public boolean isLive() {
+        return true;
+    }
+
+    @Override
+    public int available() {
+        try {
+            return input.available();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void flush() {
+        try {
+            int waiting = input.available();
+            input.skip(waiting - waiting % format.getFrameSize());
+        } catch (IOException e) {
+            // Nothing to drop
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (input != System.in) {
+            input.close();
+        }
+    }
+}
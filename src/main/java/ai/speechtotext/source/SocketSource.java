@@ -0,0 +1,236 @@
+package ai.speechtotext.source;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import javax.sound.sampled.AudioFormat;
+
+import environment.logging.Log;
+
+import lombok.Getter;
+
+/**
+ * Raw 16-bit mono PCM streamed over TCP, for example by a wireless microphone receiver or another PC in the room. The
+ * source listens on a port and takes one sender at a time; a new connection replaces the current one, so a receiver
+ * that restarts simply reconnects. Without a sender the source waits, it never ends by itself.
+ * <p>
+ * Sockets are non-blocking and wait on a {@link Selector}, so {@link #stop()} and {@link #close()} wake a waiting read
+ * at once. Audio is read from the socket straight into the caller's buffer through a {@link ByteBuffer} view that is
+ * kept as long as the caller passes the same array.
+ * </p>
+ */
+public class SocketSource implements AudioSource {
+
+    private static final Log LOG = Log.get("audio.network");
+
+    private static final long SELECT_TIMEOUT_MILLIS = 500;
+
+    private final AudioFormat format;
+    private final int frameSize;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+
+    private SocketChannel client;
+
+    /** View of the caller's buffer, and the array it wraps. */
+    private ByteBuffer view;
+    private byte[] viewed;
+
+    /** Start of a frame split by a stop, kept so the stream stays aligned. */
+    private final byte[] carry;
+    private int carryLength;
+
+    private final ByteBuffer scratch = ByteBuffer.allocate(16 * 1024);
+
+    private volatile boolean running = true;
+    private volatile boolean closed;
+
+    @Getter
+    private volatile long receivedBytes, connections;
+
+    private SocketSource(ServerSocketChannel server, float sampleRate) throws IOException {
+        this.server = server;
+        this.format = new AudioFormat(sampleRate, 16, 1, true, false);
+        this.frameSize = format.getFrameSize();
+        this.carry = new byte[frameSize];
+        this.selector = Selector.open();
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Listens on {@code address}; port 0 picks a free port, see {@link #getPort()}.
+     */
+    public static SocketSource listen(InetSocketAddress address, float sampleRate) throws IOException {
+        var server = ServerSocketChannel.open();
+        try {
+            server.bind(address);
+            return new SocketSource(server, sampleRate);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public boolean isConnected() {
+        return client != null;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+        length -= length % frameSize;
+        if (length <= 0) return 0;
+
+        if (viewed != buffer) {
+            view = ByteBuffer.wrap(buffer);
+            viewed = buffer;
+        }
+        view.limit(offset + length).position(offset);
+        if (carryLength > 0) {
+            view.put(carry, 0, carryLength);
+            carryLength = 0;
+        }
+
+        while (!closed) {
+            if (!running) {
+                return keepWholeFrames(offset);
+            }
+
+            if (client != null) {
+                int read = client.read(view);
+                if (read < 0) {
+                    disconnect();
+                    // What was read of a split frame belongs to the old stream
+                    view.position(view.position() - (view.position() - offset) % frameSize);
+                } else if (read > 0) {
+                    receivedBytes += read;
+                }
+
+                int got = view.position() - offset;
+                if (got > 0 && got % frameSize == 0) {
+                    return got;
+                }
+                if (got > 0) {
+                    // Wait only for the rest of the split frame
+                    view.limit(view.position() + frameSize - got % frameSize);
+                }
+            }
+
+            selector.select(SELECT_TIMEOUT_MILLIS);
+            for (var key : selector.selectedKeys()) {
+                if (key.isValid() && key.isAcceptable()) {
+                    accept();
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+        return -1;
+    }
+
+    /**
+     * @return the whole frames read so far, keeping the start of a split frame for the next read
+     */
+    private int keepWholeFrames(int offset) {
+        int got = view.position() - offset;
+        carryLength = got % frameSize;
+        System.arraycopy(viewed, view.position() - carryLength, carry, 0, carryLength);
+        return got - carryLength;
+    }
+
+    private void accept() throws IOException {
+        SocketChannel accepted = server.accept();
+        if (accepted == null) return;
+
+        if (client != null) {
+            LOG.info("Audio sender replaced by {}", accepted.getRemoteAddress());
+            disconnect();
+        } else {
+            LOG.info("Audio sender connected from {}", accepted.getRemoteAddress());
+        }
+        accepted.configureBlocking(false);
+        accepted.socket().setTcpNoDelay(true);
+        accepted.register(selector, SelectionKey.OP_READ);
+        client = accepted;
+        carryLength = 0;
+        connections++;
+    }
+
+    private void disconnect() {
+        try {
+            client.close();
+        } catch (IOException e) {
+            LOG.warn("Audio sender not closed", e);
+        }
+        client = null;
+        carryLength = 0;
+    }
+
+    @Override
+    public boolean isLive() {
+        return true;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Reads and drops whatever the sender has already sent.
+     */
+    @Override
+    public synchronized void flush() {
+        if (client == null) return;
+        try {
+            long dropped = carryLength;
+            int read;
+            while ((read = client.read(scratch.clear())) > 0) {
+                dropped += read;
+            }
+            // Keeps the start of a frame split by the last read
+            carryLength = (int) (dropped % frameSize);
+            if (read >= 0) {
+                scratch.flip();
+                scratch.get(scratch.limit() - carryLength, carry, 0, carryLength);
+            } else {
+                disconnect();
+            }
+        } catch (IOException e) {
+            disconnect();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        running = false;
+        selector.wakeup();
+        synchronized (this) {
+            if (client != null) {
+                disconnect();
+            }
+            selector.close();
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ai.speechtotext.source;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import ai.speechtotext.audio.ResamplingInputStream;
+
+/**
+ * Audio from an {@link AudioInputStream}, usually a file, read as fast as the transcriber takes it.
+ */
+public class StreamSource implements AudioSource {
+
+    private final AudioInputStream stream;
+
+    public StreamSource(AudioInputStream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * Opens a WAV file, converted to mono 16-bit PCM at {@code sampleRate}.
+     */
+    public static StreamSource wav(File file, float sampleRate) throws IOException, UnsupportedAudioFileException {
+        return new StreamSource(ResamplingInputStream.open(file, sampleRate));
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return stream.getFormat();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return stream.read(buffer, offset, length - length % stream.getFormat().getFrameSize());
+    }
+
+    @Override
+    public boolean isLive() {
+        return false;
+    }
+
+    @Override
+    public long getLength() {
+        long frames = stream.getFrameLength();
+        return frames == AudioSystem.NOT_SPECIFIED ? -1 : frames * stream.getFormat().getFrameSize();
+    }
+
+    @Override
+    public long skip(long bytes) throws IOException {
+        long skipped = 0;
+        while (skipped < bytes) {
+            long n = stream.skip(bytes - skipped);
+            if (n <= 0) {
+                // Some streams cannot skip, reading works for all of them
+                long read = AudioSource.super.skip(bytes - skipped);
+                skipped += read;
+                break;
+            }
+            skipped += n;
+        }
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+}
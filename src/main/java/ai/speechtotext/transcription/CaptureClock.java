@@ -0,0 +1,21 @@
+package ai.speechtotext.transcription;
+
+import java.time.LocalTime;
+
+/**
+ * A clock shared by several capture sources, so that their timestamps can be compared. Times are nanoseconds since
+ * the clock was created and are rendered as times of day, like the timestamps of live transcriptions.
+ */
+public class CaptureClock {
+
+    private final long originNanos = System.nanoTime();
+    private final LocalTime originTime = LocalTime.now();
+
+    public long now() {
+        return System.nanoTime() - originNanos;
+    }
+
+    public String timeOf(long nanos) {
+        return originTime.plusNanos(nanos).toString();
+    }
+}
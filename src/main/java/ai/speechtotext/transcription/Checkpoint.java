@@ -0,0 +1,129 @@
+package ai.speechtotext.transcription;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import environment.logging.Log;
+
+/**
+ * Progress of a file transcription, saved in its session folder at utterance boundaries so that a stopped or crashed
+ * job can continue instead of starting over.
+ * <p>
+ * {@code audioOffset} is the position in the converted audio stream just after the last committed line, and
+ * {@code transcriptBytes} the length of the transcription file once that line was written. Resuming truncates the
+ * transcription to that length, which drops any line written after the checkpoint, and skips the audio to the offset,
+ * so no line is duplicated. The source is identified by its path, size and modification time, so a file that changed
+ * since is transcribed from the start. The checkpoint is deleted when the transcription finishes; while it is there the
+ * session is not compacted.
+ * </p>
+ */
+public record Checkpoint(
+    String source,
+    long sourceSize,
+    long sourceLastModified,
+    long audioOffset,
+    int lineCount,
+    long transcriptBytes
+) {
+
+    private static final Log LOG = Log.get("transcription");
+
+    public static final String FILE_NAME = "checkpoint.json";
+
+    /**
+     * @return a checkpoint at the start of {@code source}
+     */
+    public static Checkpoint start(File source) {
+        return new Checkpoint(source.getAbsolutePath(), source.length(), source.lastModified(), 0, 0, 0);
+    }
+
+    public Checkpoint advance(long audioOffset, int lineCount, long transcriptBytes) {
+        return new Checkpoint(source, sourceSize, sourceLastModified, audioOffset, lineCount, transcriptBytes);
+    }
+
+    /**
+     * @return whether this checkpoint was taken for {@code source} as it is now
+     */
+    public boolean matches(File source) {
+        return this.source.equals(source.getAbsolutePath())
+            && sourceSize == source.length()
+            && sourceLastModified == source.lastModified();
+    }
+
+    /**
+     * Replaces the checkpoint of a session atomically, so a crash leaves either the previous or the new one.
+     */
+    public void write(Path sessionFolder) throws IOException {
+        var json = new JSONObject();
+        json.put("source", source);
+        json.put("sourceSize", sourceSize);
+        json.put("sourceLastModified", sourceLastModified);
+        json.put("audioOffset", audioOffset);
+        json.put("lineCount", lineCount);
+        json.put("transcriptBytes", transcriptBytes);
+
+        Path path = sessionFolder.resolve(FILE_NAME);
+        Path temporary = path.resolveSibling(FILE_NAME + ".tmp");
+        Files.writeString(temporary, json.toString());
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the checkpoint of a session, or null if it has none or it is unreadable
+     */
+    public static Checkpoint read(Path sessionFolder) {
+        Path path = sessionFolder.resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try {
+            var json = new JSONObject(Files.readString(path));
+            return new Checkpoint(
+                json.getString("source"),
+                json.getLong("sourceSize"),
+                json.getLong("sourceLastModified"),
+                json.getLong("audioOffset"),
+                json.getInt("lineCount"),
+                json.getLong("transcriptBytes")
+            );
+        } catch (IOException | JSONException e) {
+            LOG.warn("Checkpoint not read", e);
+            return null;
+        }
+    }
+
+    public static void delete(Path sessionFolder) throws IOException {
+        Files.deleteIfExists(sessionFolder.resolve(FILE_NAME));
+    }
+
+    /**
+     * @return the most recent unfinished session that transcribed {@code source} as it is now, or null
+     */
+    public static Path findResumable(Path sessionsFolder, File source) {
+        if (!Files.isDirectory(sessionsFolder)) {
+            return null;
+        }
+
+        try (var folders = Files.list(sessionsFolder)) {
+            return folders
+                .filter(folder -> Files.exists(folder.resolve(FILE_NAME)))
+                .filter(folder -> {
+                    var checkpoint = read(folder);
+                    return checkpoint != null && checkpoint.matches(source);
+                })
+                .max(Comparator.comparing(folder -> folder.getFileName().toString()))
+                .orElse(null);
+        } catch (IOException e) {
+            LOG.warn("Checkpoints not searched", e);
+            return null;
+        }
+    }
+}
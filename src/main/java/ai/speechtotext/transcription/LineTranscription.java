@@ -1,9 +1,25 @@
 package ai.speechtotext.transcription;
 
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+
 public record LineTranscription(String text, String startTime, String endTime) {
     
     public static LineTranscription END = new LineTranscription(null, null, null);
 
+    /** Text of a line marking where the teacher started a new section by voice command. */
+    public static final String SECTION_MARKER = "— New section —";
+
+    /** Text of a line marking the line before it as important by voice command. */
+    public static final String IMPORTANT_MARKER = "★";
+
+    /**
+     * @return whether this line is a marker the teacher added, not transcribed speech
+     */
+    public boolean isMarker() {
+        return SECTION_MARKER.equals(text) || IMPORTANT_MARKER.equals(text);
+    }
+
     public String toString() {
         return "[%s -> %s] %s".formatted(startTime, endTime, text);
     }
@@ -23,4 +39,28 @@ public record LineTranscription(String text, String startTime, String endTime) {
         }
         throw new IllegalArgumentException("Invalid transcription line format: " + line);
     }
+
+    /**
+     * Converts a stored timestamp to milliseconds.
+     * <p>
+     * File transcriptions store seconds from the start of the audio ("12.34", possibly with a locale decimal comma),
+     * live transcriptions store the wall clock time of day ("10:15:30.123").
+     *
+     * @param time the stored timestamp
+     * @return the timestamp in milliseconds, or {@code -1} if it is missing or cannot be parsed
+     */
+    public static long parseTimeMillis(String time) {
+        if (time == null || time.isEmpty() || time.equals("null")) {
+            return -1;
+        }
+
+        try {
+            if (time.indexOf(':') != -1) {
+                return LocalTime.parse(time).toNanoOfDay() / 1_000_000;
+            }
+            return Math.round(Double.parseDouble(time.replace(',', '.')) * 1000);
+        } catch (DateTimeParseException | NumberFormatException _) {
+            return -1;
+        }
+    }
 }
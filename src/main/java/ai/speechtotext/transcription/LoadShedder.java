@@ -0,0 +1,195 @@
+package ai.speechtotext.transcription;
+
+import java.util.concurrent.TimeUnit;
+
+import ai.speechtotext.audio.AudioLevels;
+
+import lombok.Getter;
+
+/**
+ * Watches how fast live audio is decoded and steps captions down in quality when decoding falls behind real time, one
+ * level at a time, then back up once it has kept up for a while:
+ * <ol>
+ * <li>{@link Level#SKIP_SILENCE}: silent audio is no longer decoded, after a short tail that lets the engine end the
+ * utterance.</li>
+ * <li>{@link Level#LIGHT_MODEL}: a lighter model decodes, if one is available.</li>
+ * <li>{@link Level#CATCH_UP}: audio waiting in the line is dropped whenever it builds up, so captions stay live at the
+ * cost of missing words.</li>
+ * </ol>
+ * Decoding is behind when its smoothed real-time factor is above {@code shedRealTimeFactor}, or when more than
+ * {@code shedBacklogMillis} of audio waits to be read. A backlog four times that goes straight to catching up. Every
+ * change of level is published as a {@link LoadEvent}.
+ */
+public class LoadShedder {
+
+    public static enum Level {
+        FULL("Full quality"),
+        SKIP_SILENCE("Skipping silence"),
+        LIGHT_MODEL("Light model"),
+        CATCH_UP("Catching up");
+
+        private final String label;
+
+        private Level(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    public static record LoadEvent(Level from, Level to, double realTimeFactor, long backlogMillis, String reason) {
+
+        @Override
+        public String toString() {
+            return "%s -> %s (%s, RTF %.2f, backlog %d ms)".formatted(from, to, reason, realTimeFactor, backlogMillis);
+        }
+    }
+
+    private static final double LOAD_SMOOTHING = 0.1;
+
+    /** How long decoding must be behind before stepping down, and keeping up before stepping up. */
+    private static final long STEP_DOWN_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final long STEP_UP_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * A step up followed this soon by a step down doubles the time needed to step up again, up to the maximum, so a PC
+     * that cannot keep up at a level does not flap in and out of it.
+     */
+    private static final long FLAP_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final long MAX_STEP_UP_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    /** Catching up drops the backlog once it is above this. */
+    private static final long CATCH_UP_BACKLOG_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    /** Below this level a chunk counts as silent, well above the noise gate's threshold. */
+    private static final double SILENCE_RMS = 200;
+
+    /** Silence still decoded after speech, so the engine notices the utterance ended. */
+    private static final long SILENCE_TAIL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final double highRealTimeFactor;
+    private final long highBacklogNanos;
+    private final boolean lightModelAvailable;
+    private final TranscriptionChannel<LoadEvent> events;
+
+    @Getter
+    private Level level = Level.FULL;
+
+    private double realTimeFactor;
+    private long behindSince = -1;
+    private long keptUpSince = -1;
+    private long silentNanos;
+
+    private long stepUpNanos = STEP_UP_NANOS;
+    private long lastStepUp = -1;
+
+    @Getter
+    private long droppedNanos, skippedNanos;
+
+    /**
+     * @param events channel the changes of level are published to
+     */
+    public LoadShedder(double highRealTimeFactor, long highBacklogMillis, boolean lightModelAvailable,
+        TranscriptionChannel<LoadEvent> events) {
+        this.highRealTimeFactor = highRealTimeFactor;
+        this.highBacklogNanos = TimeUnit.MILLISECONDS.toNanos(highBacklogMillis);
+        this.lightModelAvailable = lightModelAvailable;
+        this.events = events;
+    }
+
+    /**
+     * Records that decoding {@code audioNanos} of audio took {@code processingNanos} while {@code backlogNanos} of audio
+     * waited to be read, and changes level if needed.
+     *
+     * @return the level for the next chunk
+     */
+    public Level update(long processingNanos, long audioNanos, long backlogNanos, long now) {
+        if (audioNanos > 0) {
+            realTimeFactor += LOAD_SMOOTHING * ((double) processingNanos / audioNanos - realTimeFactor);
+        }
+
+        if (backlogNanos > 4 * highBacklogNanos && level != Level.CATCH_UP) {
+            lastStepUp = -1;
+            change(Level.CATCH_UP, backlogNanos, "far behind");
+            return level;
+        }
+
+        boolean behind = realTimeFactor > highRealTimeFactor || backlogNanos > highBacklogNanos;
+        boolean keptUp = realTimeFactor < highRealTimeFactor * 0.6 && backlogNanos < highBacklogNanos / 4;
+
+        behindSince = behind ? (behindSince < 0 ? now : behindSince) : -1;
+        keptUpSince = keptUp ? (keptUpSince < 0 ? now : keptUpSince) : -1;
+
+        if (behind && now - behindSince >= STEP_DOWN_NANOS && level != Level.CATCH_UP) {
+            var next = Level.values()[level.ordinal() + 1];
+            if (next == Level.LIGHT_MODEL && !lightModelAvailable) {
+                next = Level.CATCH_UP;
+            }
+            if (lastStepUp >= 0 && now - lastStepUp < FLAP_NANOS) {
+                stepUpNanos = Math.min(2 * stepUpNanos, MAX_STEP_UP_NANOS);
+            }
+            lastStepUp = -1;
+            change(next, backlogNanos, realTimeFactor > highRealTimeFactor ? "decoding too slow" : "audio backing up");
+        } else if (keptUp && now - keptUpSince >= stepUpNanos && level != Level.FULL) {
+            var next = Level.values()[level.ordinal() - 1];
+            if (next == Level.LIGHT_MODEL && !lightModelAvailable) {
+                next = Level.SKIP_SILENCE;
+            }
+            lastStepUp = now;
+            change(next, backlogNanos, "caught up");
+        } else if (lastStepUp >= 0 && now - lastStepUp >= MAX_STEP_UP_NANOS) {
+            // Kept up for long after stepping up, so the earlier trouble has passed
+            stepUpNanos = STEP_UP_NANOS;
+            lastStepUp = -1;
+        }
+        return level;
+    }
+
+    /**
+     * @return whether the chunk of {@code audioNanos} should not be decoded, because it is silent and silence is being
+     *         skipped
+     */
+    public boolean skip(byte[] buffer, int length, long audioNanos) {
+        if (AudioLevels.rms(buffer, length) >= SILENCE_RMS) {
+            silentNanos = 0;
+            return false;
+        }
+        silentNanos += audioNanos;
+        if (level == Level.FULL || silentNanos <= SILENCE_TAIL_NANOS) {
+            return false;
+        }
+        skippedNanos += audioNanos;
+        return true;
+    }
+
+    /**
+     * @return whether the backlog should be dropped now
+     */
+    public boolean shouldDrop(long backlogNanos) {
+        return level == Level.CATCH_UP && backlogNanos > CATCH_UP_BACKLOG_NANOS;
+    }
+
+    public void dropped(long backlogNanos) {
+        droppedNanos += backlogNanos;
+    }
+
+    public double realTimeFactor() {
+        return realTimeFactor;
+    }
+
+    private void change(Level next, long backlogNanos, String reason) {
+        var event = new LoadEvent(level, next, realTimeFactor, TimeUnit.NANOSECONDS.toMillis(backlogNanos), reason);
+        level = next;
+        behindSince = keptUpSince = -1;
+        events.send(event);
+    }
+
+    @Override
+    public String toString() {
+        return "load[level=%s rtf=%.2f dropped=%dms skipped=%dms]".formatted(
+            level, realTimeFactor, TimeUnit.NANOSECONDS.toMillis(droppedNanos), TimeUnit.NANOSECONDS.toMillis(skippedNanos)
+        );
+    }
+}
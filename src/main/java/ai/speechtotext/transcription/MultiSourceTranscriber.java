@@ -0,0 +1,354 @@
+package ai.speechtotext.transcription;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ai.speechtotext.audio.AudioConditioner;
+import ai.speechtotext.engine.SpeechEngine;
+import ai.speechtotext.scheduling.JobContext;
+import ai.speechtotext.scheduling.JobScope;
+import ai.speechtotext.source.AudioSource;
+
+import environment.Configuration;
+import environment.logging.Log;
+
+import lombok.Setter;
+
+/**
+ * Transcribes several microphones at once, for example the teacher's lapel microphone and a room microphone. Every
+ * source is decoded by its own {@link SpeechEngine} on its own thread, and the lines of all sources are merged into one
+ * stream ordered by when they were spoken.
+ * <p>
+ * Engines finish utterances at different times, so a line cannot be published as soon as it is recognized. Every
+ * source reports a watermark: the earliest time at which a line it has not yet published can start, which is the start
+ * of the utterance it is decoding, or the current audio position between utterances. A line is published once every
+ * source's watermark has passed its start. A source that has delivered no audio for {@link #STALL_NANOS}, such as a dead
+ * device or a disconnected sender, no longer holds back the others; a line it still produces is published late.
+ * </p>
+ */
+public class MultiSourceTranscriber {
+
+    private static final Log LOG = Log.get("transcription.classroom");
+
+    public static record Source(String name, AudioSource audio, SpeechEngine engine) {
+    }
+
+    /** A source whose audio position is this far behind the clock has lost audio and is re-anchored. */
+    private static final long RESYNC_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    /** How long a source may deliver no audio before the merge stops waiting for it. */
+    private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+    private final List<Source> sources;
+    private final CaptureClock clock = new CaptureClock();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition resumed = lock.newCondition();
+    private final PriorityQueue<TaggedLineTranscription> pending =
+        new PriorityQueue<>(Comparator.comparingLong(TaggedLineTranscription::startNanos));
+    private final long[] watermarks;
+
+    /** When each source last delivered audio, by {@link System#nanoTime()}. */
+    private final AtomicLongArray heardAt;
+
+    private boolean started = false;
+    private volatile boolean paused = false;
+    private volatile boolean stopped = false;
+
+    /** The scheduler job this runs in; capture threads are forked in its scope and report their load to it. */
+    @Setter
+    private JobContext jobContext = JobContext.NONE;
+
+    public MultiSourceTranscriber(List<Source> sources) {
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("At least one source is required");
+        }
+        this.sources = List.copyOf(sources);
+        this.watermarks = new long[sources.size()];
+        this.heardAt = new AtomicLongArray(sources.size());
+    }
+
+    /**
+     * @return whether {@link #transcribe} was called; a transcriber that never started is released with {@link #stop()}
+     */
+    public boolean isStarted() {
+        lock.lock();
+        try {
+            return started;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops capturing every source until {@link #resume()}; nothing is transcribed in between.
+     */
+    public void pause() {
+        lock.lock();
+        try {
+            if (paused || stopped) return;
+            paused = true;
+            sources.forEach(source -> source.audio().stop());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void resume() {
+        lock.lock();
+        try {
+            if (!paused || stopped) return;
+            // Audio left in the buffers from before the pause is dropped
+            sources.forEach(source -> {
+                source.audio().flush();
+                source.audio().start();
+            });
+            paused = false;
+            resumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void stop() {
+        boolean neverStarted;
+        lock.lock();
+        try {
+            stopped = true;
+            neverStarted = !started;
+            resumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        // Ends reads that wait for audio
+        sources.forEach(source -> source.audio().stop());
+        if (neverStarted) {
+            sources.forEach(MultiSourceTranscriber::close);
+        }
+    }
+
+    /**
+     * Transcribes all sources until {@link #stop()} is called, publishing merged lines to {@code channel} and writing
+     * them to {@code outputTranscriptionFile}. Blocks until every source has finished; the audio and engines of the
+     * sources are closed once they have.
+     */
+    public void transcribe(File outputTranscriptionFile, TranscriptionChannel<TaggedLineTranscription> channel) {
+        lock.lock();
+        try {
+            if (stopped) {
+                // Stopped before it started, the sources are already closed
+                channel.send(TaggedLineTranscription.END);
+                return;
+            }
+            started = true;
+        } finally {
+            lock.unlock();
+        }
+
+        var parent = jobContext.scope();
+        try (var scope = parent != null ? parent.child("capture") : new JobScope("capture", Thread.MAX_PRIORITY)) {
+            scope.onCancel(this::stop);
+            for (int i = 0; i < sources.size(); i++) {
+                heardAt.set(i, System.nanoTime());
+            }
+            for (int i = 0; i < sources.size(); i++) {
+                int index = i;
+                scope.fork(sources.get(i).name(), () -> capture(index));
+            }
+
+            try (var writer = new TranscriptionWriter(outputTranscriptionFile)) {
+                merge(writer, channel);
+            } catch (IOException e) {
+                LOG.error("Transcription not written", e);
+                stopped = true;
+            }
+
+            scope.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        channel.send(TaggedLineTranscription.END);
+    }
+
+    private void capture(int index) {
+        var source = sources.get(index);
+        var format = source.audio().getFormat();
+        int chunkBytes = Configuration.get().getChunkBytes();
+        var conditioner = new AudioConditioner(format.getSampleRate(), chunkBytes);
+        double nanosPerByte = 1e9 / (format.getSampleRate() * format.getFrameSize());
+
+        byte[] buffer = new byte[chunkBytes];
+        long origin = -1;
+        long consumedBytes = 0;
+        long position = -1;
+        long utteranceStart = -1;
+
+        try {
+            while (!stopped) {
+                if (paused) {
+                    awaitResumed();
+                    // Audio captured while paused is not transcribed, so the position starts over
+                    origin = -1;
+                    continue;
+                }
+
+                int bytesRead = source.audio().read(buffer, 0, buffer.length);
+                if (bytesRead < 0) break;
+                if (bytesRead == 0) continue;
+                heardAt.set(index, System.nanoTime());
+
+                long now = clock.now();
+                if (origin < 0) {
+                    origin = now - (long) (bytesRead * nanosPerByte);
+                    consumedBytes = 0;
+                }
+                consumedBytes += bytesRead;
+
+                // The audio position, corrected for what is still waiting in the source's buffer
+                position = origin + (long) (consumedBytes * nanosPerByte);
+                long lag = now - (position + (long) (source.audio().available() * nanosPerByte));
+                if (lag > RESYNC_NANOS) {
+                    origin += lag;
+                    position += lag;
+                }
+
+                long processingStart = System.nanoTime();
+                conditioner.process(buffer, bytesRead);
+
+                if (source.engine().acceptAudio(buffer, bytesRead)) {
+                    var text = source.engine().result().text();
+                    if (!text.isEmpty()) {
+                        long start = utteranceStart >= 0 ? utteranceStart : position - (long) (bytesRead * nanosPerByte);
+                        var line = new LineTranscription(text, clock.timeOf(start), clock.timeOf(position));
+                        publish(index, new TaggedLineTranscription(source.name(), line, start, position), position);
+                    } else {
+                        advance(index, position);
+                    }
+                    utteranceStart = -1;
+                } else {
+                    if (utteranceStart < 0 && !source.engine().partial().isEmpty()) {
+                        utteranceStart = position - (long) (bytesRead * nanosPerByte);
+                    }
+                    advance(index, utteranceStart >= 0 ? utteranceStart : position);
+                }
+
+                jobContext.reportLoad(System.nanoTime() - processingStart, (long) (bytesRead * nanosPerByte));
+            }
+
+            // Keeps the utterance in progress when the source ended or Stop was pressed
+            var text = source.engine().finalResult().text();
+            if (!text.isEmpty() && position >= 0) {
+                long start = utteranceStart >= 0 ? utteranceStart : position;
+                var line = new LineTranscription(text, clock.timeOf(start), clock.timeOf(position));
+                publish(index, new TaggedLineTranscription(source.name(), line, start, position), position);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Source {} failed", source.name(), e);
+        } finally {
+            close(source);
+            // A finished source no longer holds back the others
+            advance(index, Long.MAX_VALUE);
+        }
+    }
+
+    private static void close(Source source) {
+        try {
+            source.audio().close();
+        } catch (IOException e) {
+            LOG.warn("Source {} not closed", source.name(), e);
+        }
+        source.engine().close();
+    }
+
+    /**
+     * Blocks while paused, until resumed or stopped.
+     */
+    private void awaitResumed() throws InterruptedException {
+        lock.lock();
+        try {
+            while (paused && !stopped) {
+                resumed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void publish(int index, TaggedLineTranscription line, long watermark) {
+        lock.lock();
+        try {
+            pending.add(line);
+            watermarks[index] = Math.max(watermarks[index], watermark);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void advance(int index, long watermark) {
+        lock.lock();
+        try {
+            if (watermark > watermarks[index]) {
+                watermarks[index] = watermark;
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void merge(TranscriptionWriter writer, TranscriptionChannel<TaggedLineTranscription> channel) throws IOException {
+        List<TaggedLineTranscription> ready = new ArrayList<>();
+        while (true) {
+            boolean finished;
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                long low = Long.MAX_VALUE;
+                boolean allFinished = true;
+                for (int i = 0; i < watermarks.length; i++) {
+                    allFinished &= watermarks[i] == Long.MAX_VALUE;
+                    if (now - heardAt.get(i) < STALL_NANOS) {
+                        low = Math.min(low, watermarks[i]);
+                    }
+                }
+                while (!pending.isEmpty() && pending.peek().startNanos() <= low) {
+                    ready.add(pending.poll());
+                }
+                finished = allFinished && pending.isEmpty();
+                if (ready.isEmpty() && !finished) {
+                    changed.await(200, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopped = true;
+                finished = true;
+            } finally {
+                lock.unlock();
+            }
+
+            // Publish outside the lock, listeners may be slow
+            for (var line : ready) {
+                channel.send(line);
+                writer.write(line);
+            }
+            ready.clear();
+
+            if (finished) {
+                return;
+            }
+        }
+    }
+}
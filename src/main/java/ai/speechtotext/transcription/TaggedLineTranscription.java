@@ -0,0 +1,21 @@
+package ai.speechtotext.transcription;
+
+/**
+ * A transcribed line tagged with the capture source it came from. {@code startNanos} and {@code endNanos} are
+ * {@link CaptureClock} times, which order lines of different sources.
+ */
+public record TaggedLineTranscription(String source, LineTranscription line, long startNanos, long endNanos) {
+
+    public static TaggedLineTranscription END = new TaggedLineTranscription(null, LineTranscription.END, Long.MAX_VALUE, Long.MAX_VALUE);
+
+    /**
+     * @return the line with its text prefixed by the source, as stored in the merged transcription file
+     */
+    public LineTranscription toLineTranscription() {
+        return new LineTranscription(source + ": " + line.text(), line.startTime(), line.endTime());
+    }
+
+    public String toString() {
+        return toLineTranscription().toString();
+    }
+}
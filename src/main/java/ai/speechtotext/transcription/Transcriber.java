@@ -1,166 +1,591 @@
 package ai.speechtotext.transcription;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalTime;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.TargetDataLine;
 
-import org.json.JSONObject;
-import org.vosk.Recognizer;
+import ai.speechtotext.audio.AudioConditioner;
+import ai.speechtotext.command.CommandSpotter;
+import ai.speechtotext.engine.SpeechEngine;
+import ai.speechtotext.engine.Utterance;
+import ai.speechtotext.scheduling.JobContext;
+import ai.speechtotext.source.AudioSource;
+import ai.speechtotext.source.LineSource;
+import ai.speechtotext.source.StreamSource;
 
+import environment.Configuration;
+import environment.logging.Log;
+
+import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
-@RequiredArgsConstructor
+/**
+ * Transcribes an {@link AudioSource}, such as a microphone, an audio file, a pipe or a network stream, with a
+ * {@link SpeechEngine}.
+ * <p>
+ * A transcriber runs once and owns its engine and source: they are released when transcription ends, or by
+ * {@link #stop()} if it never started. Its {@link State} only moves forward, except between running and paused. While
+ * paused the source is stopped, so it does not fill up with stale audio, and the transcribing thread waits on a
+ * condition instead of polling.
+ * </p>
+ */
 public class Transcriber {
 
+    private static final Log LOG = Log.get("transcription");
+
+    public static enum State {
+        CREATED, RUNNING, PAUSED,
+        /** Stop was requested; the utterance in progress is finished and resources are released. */
+        STOPPING,
+        CLOSED
+    }
+
     @NonNull
-    private final Recognizer recognizer;
-    
-    private final TargetDataLine dataLine;
+    private final SpeechEngine engine;
+
+    private final AudioSource source;
+
+    /**
+     * Optional conditioning applied to live audio before it is decoded.
+     */
+    @Getter @Setter
+    private AudioConditioner conditioner;
+
+    /**
+     * Optional command spotter that receives a copy of the live audio. It never blocks the decoding loop.
+     */
+    @Getter @Setter
+    private CommandSpotter commandSpotter;
+
+    /**
+     * The file being transcribed. When set, file transcription keeps a {@link Checkpoint} in the session folder.
+     */
+    @Getter @Setter
+    private File sourceFile;
+
+    /**
+     * Checkpoint of an earlier run of the session to continue from. Ignored if it does not match the source file.
+     */
+    @Getter @Setter
+    private Checkpoint resumeFrom;
+
+    /**
+     * The scheduler's view of the job running this transcriber: file transcription waits its turn and reports progress
+     * there, live transcription reports its decoding load.
+     */
+    @Getter @Setter
+    private JobContext jobContext = JobContext.NONE;
+
+    /**
+     * Optional lighter engine that live transcription switches to while decoding falls behind.
+     */
+    @Getter @Setter
+    private SpeechEngine.Factory lightEngineFactory;
+
+    /**
+     * Changes of the live captions' quality level, see {@link LoadShedder}.
+     */
+    @Getter
+    private final TranscriptionChannel<LoadShedder.LoadEvent> loadEvents = new TranscriptionChannel<>();
+
+    private static final long CHECKPOINT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Markers waiting to be written by the live transcription thread, which owns the transcription file. */
+    private final Queue<String> markers = new ConcurrentLinkedQueue<>();
 
-    private final AudioInputStream audioInputStream;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
 
-    private volatile boolean paused = false;
-    private volatile boolean stopped = false;
+    @Getter
+    private volatile State state = State.CREATED;
 
+    public Transcriber(@NonNull SpeechEngine engine, AudioSource source) {
+        this.engine = engine;
+        this.source = source;
+    }
+
+    /**
+     * Transcribes the data line when live, else the stream; the other may be null.
+     */
+    public Transcriber(@NonNull SpeechEngine engine, TargetDataLine dataLine, AudioInputStream audioInputStream) {
+        this(engine, dataLine != null ? new LineSource(dataLine) : audioInputStream != null ? new StreamSource(audioInputStream) : null);
+    }
+
+    /**
+     * Adds a marker line, such as {@link LineTranscription#SECTION_MARKER}, to a live transcription. It is published and
+     * written to the session's transcription like a transcribed line.
+     */
+    public void mark(String marker) {
+        markers.add(marker);
+    }
+
+    /**
+     * Pauses a running transcription and stops capturing.
+     */
     public void pause() {
-        paused = true;
+        lock.lock();
+        try {
+            if (state != State.RUNNING) return;
+            state = State.PAUSED;
+            source.stop();
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void resume() {
-        paused = false;
+        lock.lock();
+        try {
+            if (state != State.PAUSED) return;
+            state = State.RUNNING;
+            // Audio captured before the pause is not transcribed
+            source.flush();
+            source.start();
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
+    /**
+     * Stops the transcription without waiting for it, see {@link #awaitClosed(long, TimeUnit)}. A transcriber that never
+     * started is released at once.
+     */
     public void stop() {
-        stopped = true;
+        boolean release = false;
+        lock.lock();
+        try {
+            switch (state) {
+                case CREATED -> {
+                    state = State.STOPPING;
+                    release = true;
+                }
+                case RUNNING, PAUSED -> {
+                    state = State.STOPPING;
+                    // Ends a blocked read
+                    source.stop();
+                    stateChanged.signalAll();
+                }
+                default -> {}
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (release) {
+            release();
+        }
+    }
+
+    /**
+     * Waits until every resource of the transcriber is released.
+     *
+     * @return false if that did not happen within the timeout
+     */
+    public boolean awaitClosed(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (state != State.CLOSED) {
+                if (remaining <= 0) return false;
+                remaining = stateChanged.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
-    
+
+    /**
+     * Transcribes until the source ends or {@link #stop()} is called, then releases the engine and source.
+     *
+     * @throws IllegalStateException if the transcriber already ran or was stopped
+     */
     public void transcribe(File outputTranscriptionFile, TranscriptionChannel<LineTranscription> channel, boolean liveTranscription) {
-        if (liveTranscription) {
-            if (dataLine == null) {
-                throw new IllegalStateException("Data line is not initialized for live transcription.");
+        lock.lock();
+        try {
+            if (state != State.CREATED) {
+                throw new IllegalStateException("Transcriber is " + state + ", it can only run once");
+            }
+            if (source == null) {
+                throw new IllegalStateException("Audio source is not initialized for " + (liveTranscription ? "live" : "file") + " transcription.");
+            }
+            state = State.RUNNING;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            if (liveTranscription) {
+                startLiveTranscription(outputTranscriptionFile, channel);
+            } else {
+                startFileAudioTranscription(outputTranscriptionFile, channel);
             }
-            startLiveTranscription(outputTranscriptionFile, channel);
-        } else {
-            if (audioInputStream == null) {
-                throw new IllegalStateException("Audio input stream is not initialized for file transcription.");
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Blocks while paused.
+     *
+     * @return whether to go on, false once stopping
+     */
+    private boolean awaitRunning() {
+        lock.lock();
+        try {
+            while (state == State.PAUSED) {
+                stateChanged.await();
+            }
+            return state == State.RUNNING;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = State.STOPPING;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isStopping() {
+        return state == State.STOPPING;
+    }
+
+    private void release() {
+        try {
+            engine.close();
+        } catch (RuntimeException e) {
+            LOG.error("Engine not closed", e);
+        }
+        if (source != null) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                LOG.error("Audio source not closed", e);
             }
-            startFileAudioTranscription(outputTranscriptionFile, channel);
+        }
+
+        lock.lock();
+        try {
+            state = State.CLOSED;
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Transcribes the whole stream in blocks of {@code fileChunkBytes}. Line times come from the engine's word
+     * timings, so they stay exact however large the blocks are.
+     * <p>
+     * When a {@link #sourceFile} is set, a {@link Checkpoint} is kept in the session folder, and a matching
+     * {@link #resumeFrom} checkpoint continues an earlier run of the same session where it stopped.
+     * </p>
+     */
     private void startFileAudioTranscription(File transcriptionFile, TranscriptionChannel<LineTranscription> channel) {
-        double audioPositionSeconds = 0.0; // running audio timestamp
-        int bytesPerSample = 2; // 16-bit audio
-        int channels = 1;
-        int sampleRate = 16000;
+        var format = source.getFormat();
+        int frameSize = format.getFrameSize();
+        double bytesPerSecond = format.getSampleRate() * frameSize;
+        long totalBytes = source.getLength();
+        Path sessionFolder = transcriptionFile.toPath().toAbsolutePath().getParent();
+
+        Checkpoint checkpoint = null;
+        if (sourceFile != null) {
+            checkpoint = resumeFrom != null && resumeFrom.matches(sourceFile) && transcriptionFile.length() >= resumeFrom.transcriptBytes()
+                ? resumeFrom
+                : Checkpoint.start(sourceFile);
+        }
+        boolean resuming = checkpoint != null && checkpoint.audioOffset() > 0;
+
+        long consumedBytes = 0;
+        long committedBytes = 0; // audio offset just after the last line
+        int lineCount = 0;
+        double lineEndSeconds = 0.0; // end of the previous line
+        long lastCheckpointNanos = System.nanoTime();
+
+        try {
+            if (resuming) {
+                lineCount = resume(checkpoint, transcriptionFile, channel);
+                consumedBytes = committedBytes = source.skip(checkpoint.audioOffset());
+                lineEndSeconds = consumedBytes / bytesPerSecond;
+            }
+        } catch (IOException e) {
+            LOG.error("File transcription not started", e);
+            channel.send(LineTranscription.END);
+            return;
+        }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(transcriptionFile))) {
-            byte[] buffer = new byte[4096];
+        // Word times restart at zero after skipping
+        double offsetSeconds = consumedBytes / bytesPerSecond;
+
+        try (var writer = new TranscriptionWriter(transcriptionFile, resuming)) {
+            int chunkBytes = Configuration.get().getFileChunkBytes();
+            byte[] buffer = new byte[chunkBytes - chunkBytes % frameSize];
             int bytesRead;
 
-            while ((bytesRead = audioInputStream.read(buffer)) >= 0) {
-                if (stopped) break;
+            while (awaitRunning() && (bytesRead = readBlock(buffer)) > 0) {
+                consumedBytes += bytesRead;
+
+                if (engine.acceptAudio(buffer, bytesRead)) {
+                    double endSeconds = emitFileResult(engine.result(), offsetSeconds, lineEndSeconds, consumedBytes / bytesPerSecond, channel, writer);
+                    if (!Double.isNaN(endSeconds)) {
+                        lineEndSeconds = endSeconds;
+                        lineCount++;
+                        // The next utterance may already have started in this block, so resuming starts after the last word
+                        long endBytes = (long) (endSeconds * bytesPerSecond);
+                        committedBytes = Math.min(consumedBytes, endBytes - endBytes % frameSize);
 
-                if (paused) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
+                        if (checkpoint != null && System.nanoTime() - lastCheckpointNanos >= CHECKPOINT_INTERVAL_NANOS) {
+                            checkpoint = saveCheckpoint(checkpoint, sessionFolder, writer, transcriptionFile, committedBytes, lineCount);
+                            lastCheckpointNanos = System.nanoTime();
+                        }
                     }
-                    continue;
                 }
 
-                if (recognizer.acceptWaveForm(buffer, bytesRead)) {
-                    var recognizedText = new JSONObject(recognizer.getResult());
-                    var text = recognizedText.optString("text", "");
-                    if (!text.isEmpty()) {
-                        text = text.replace(" <unk> ", "");
-                        text = text.replace("<unk> ", "");
-                        text = text.replace(" <unk>", "");
-                        text = text.replace("<unk>", "");
-                        
-                        // Compute start/end timestamps in seconds
-                        double durationSeconds = (double) bytesRead / (sampleRate * bytesPerSample * channels);
-                        double startSec = audioPositionSeconds;
-                        double endSec = audioPositionSeconds + durationSeconds;
-
-                        LineTranscription transcription = new LineTranscription(
-                            text,
-                            String.format("%.2f", startSec),
-                            String.format("%.2f", endSec)
-                        );
-                        channel.send(transcription);
-                        writer.write(transcription.toString());
-                        writer.newLine();
-                        
-                        audioPositionSeconds += durationSeconds;
-                    }
-                } else {
-                    // Still processing partial audio; increment position anyway
-                    double durationSeconds = (double) bytesRead / (sampleRate * bytesPerSample * channels);
-                    audioPositionSeconds += durationSeconds;
+                if (totalBytes > 0) {
+                    jobContext.progress((double) consumedBytes / totalBytes);
+                }
+
+                try {
+                    jobContext.awaitTurn();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stop();
+                }
+            }
+
+            if (!isStopping()) {
+                // The end of the file also ends the last utterance
+                emitFileResult(engine.finalResult(), offsetSeconds, lineEndSeconds, consumedBytes / bytesPerSecond, channel, writer);
+                if (checkpoint != null) {
+                    Checkpoint.delete(sessionFolder);
                 }
+            } else if (checkpoint != null) {
+                saveCheckpoint(checkpoint, sessionFolder, writer, transcriptionFile, committedBytes, lineCount);
             }
 
             channel.send(LineTranscription.END);
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.error("File transcription failed", e);
+        }
+    }
+
+    private static Checkpoint saveCheckpoint(Checkpoint checkpoint, Path sessionFolder, TranscriptionWriter writer, File transcriptionFile, long audioOffset, int lineCount) throws IOException {
+        // Every line up to the offset must be on disk before the checkpoint refers to it
+        writer.flush();
+        var next = checkpoint.advance(audioOffset, lineCount, transcriptionFile.length());
+        next.write(sessionFolder);
+        return next;
+    }
+
+    /**
+     * Drops the lines written after the checkpoint and shows the committed ones again.
+     *
+     * @return the number of committed lines
+     */
+    private static int resume(Checkpoint checkpoint, File transcriptionFile, TranscriptionChannel<LineTranscription> channel) throws IOException {
+        try (var file = FileChannel.open(transcriptionFile.toPath(), StandardOpenOption.WRITE)) {
+            file.truncate(checkpoint.transcriptBytes());
         }
+
+        int lines = 0;
+        try (var reader = Files.newBufferedReader(transcriptionFile.toPath())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    channel.send(LineTranscription.fromString(line));
+                    lines++;
+                } catch (IllegalArgumentException e) {
+                    // Not a transcription line, nothing to show
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Fills {@code buffer} unless the stream ends first, so the engine always gets full blocks.
+     */
+    private int readBlock(byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int read = source.read(buffer, length, buffer.length - length);
+            if (read <= 0) break;
+            length += read;
+        }
+        return length;
     }
 
+    /**
+     * @return the end of the emitted line in seconds, or NaN if the result was empty
+     */
+    private double emitFileResult(Utterance result, double offsetSeconds, double previousEndSeconds, double positionSeconds, TranscriptionChannel<LineTranscription> channel, TranscriptionWriter writer) throws IOException {
+        if (result.isEmpty()) {
+            return Double.NaN;
+        }
+
+        double startSec = previousEndSeconds;
+        double endSec = positionSeconds;
+        var words = result.words();
+        if (!words.isEmpty()) {
+            startSec = offsetSeconds + words.getFirst().startSeconds();
+            endSec = offsetSeconds + words.getLast().endSeconds();
+        }
+
+        LineTranscription transcription = new LineTranscription(
+            result.text(),
+            String.format("%.2f", startSec),
+            String.format("%.2f", endSec)
+        );
+        channel.send(transcription);
+        writer.write(transcription);
+        return endSec;
+    }
+
+    /**
+     * Transcribes the source until stopped or it ends, then finishes the utterance in progress. With {@code loadShedding} configured, a {@link LoadShedder} steps the
+     * captions down in quality while decoding falls behind, and back up once it keeps up. An {@link UtteranceSegmenter}
+     * keeps lines of run-on speech within {@code maxLineSeconds}.
+     */
     private void startLiveTranscription(File transcriptionFile, TranscriptionChannel<LineTranscription> channel) {
         LocalTime startTime = null;
-        LocalTime endTime = null;
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(transcriptionFile))) {
-            while (true) {
-                if (stopped) {
+        var format = source.getFormat();
+        double nanosPerByte = 1e9 / (format.getSampleRate() * format.getFrameSize());
+
+        var configuration = Configuration.get();
+        var shedder = configuration.isLoadShedding()
+            ? new LoadShedder(configuration.getShedRealTimeFactor(), configuration.getShedBacklogMillis(), lightEngineFactory != null, loadEvents)
+            : null;
+        var segmenter = new UtteranceSegmenter(configuration.getMaxLineSeconds());
+        SpeechEngine active = engine;
+        SpeechEngine lightEngine = null;
+
+        try (var writer = new TranscriptionWriter(transcriptionFile)) {
+            byte[] buffer = new byte[configuration.getChunkBytes()];
+            while (awaitRunning()) {
+                emitMarkers(channel, writer);
+
+                int bytesRead = source.read(buffer, 0, buffer.length);
+                if (bytesRead < 0) {
+                    // A pipe that ended
                     break;
                 }
-        
-                if (paused) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                    continue;
-                }
-                
-                byte[] buffer = new byte[4096];
-                int bytesRead = dataLine.read(buffer, 0, buffer.length);
-    
+
                 if (bytesRead > 0) {
-                    if (recognizer.acceptWaveForm(buffer, bytesRead)) {
-                        var recognizedText = new JSONObject(recognizer.getResult());
-                        var text = recognizedText.optString("text", "");
-                        if (!text.isEmpty()) {
-                            text = text.replace("<unk> ", "");
-                            endTime = LocalTime.now();
-                            LineTranscription transcription = new LineTranscription(text, startTime.toString(), endTime.toString());
-                            channel.send(transcription);
-                            writer.write(transcription.toString());
-                            writer.newLine();
-    
-                            startTime = endTime = null;
+                    long processingStart = System.nanoTime();
+                    long audioNanos = (long) (bytesRead * nanosPerByte);
+
+                    if (shedder != null) {
+                        var level = shedder.getLevel();
+
+                        long backlogNanos = (long) (source.available() * nanosPerByte);
+                        if (shedder.shouldDrop(backlogNanos)) {
+                            // What was heard so far is shown before the waiting audio is thrown away
+                            startTime = emitLive(segmenter.finished(active.finalResult().text()), startTime, false, channel, writer);
+                            source.flush();
+                            shedder.dropped(backlogNanos);
                         }
-                    } else {
-                        if (startTime == null) {
-                            startTime = LocalTime.now();
+
+                        boolean light = level.compareTo(LoadShedder.Level.LIGHT_MODEL) >= 0 && lightEngineFactory != null;
+                        if (light != (active != engine)) {
+                            // Switching engines ends the utterance, the next engine starts from a clean state
+                            startTime = emitLive(segmenter.finished(active.finalResult().text()), startTime, false, channel, writer);
+                            if (light && lightEngine == null) {
+                                lightEngine = lightEngineFactory.create(format.getSampleRate());
+                            }
+                            active = light ? lightEngine : engine;
+                            active.reset();
                         }
                     }
+
+                    if (conditioner != null) {
+                        conditioner.process(buffer, bytesRead);
+                    }
+
+                    if (commandSpotter != null) {
+                        commandSpotter.offer(buffer, bytesRead);
+                    }
+
+                    boolean skipped = shedder != null && shedder.skip(buffer, bytesRead, audioNanos);
+                    if (!skipped) {
+                        if (active.acceptAudio(buffer, bytesRead)) {
+                            startTime = emitLive(segmenter.finished(active.result().text()), startTime, false, channel, writer);
+                        } else {
+                            if (startTime == null) {
+                                startTime = LocalTime.now();
+                            }
+                            // Run-on speech is cut into lines, each continuing where the last one ended
+                            switch (segmenter.observe(buffer, bytesRead, audioNanos, active::partial)) {
+                                case FINALIZE -> startTime = emitLive(segmenter.finished(active.finalResult().text()), startTime, true, channel, writer);
+                                case PREFIX -> startTime = emitLive(segmenter.takePrefix(), startTime, true, channel, writer);
+                                case NONE -> {}
+                            }
+                        }
+                    }
+
+                    long processingNanos = System.nanoTime() - processingStart;
+                    jobContext.reportLoad(processingNanos, audioNanos);
+                    if (shedder != null) {
+                        // Skipped chunks cost nothing and would hide how slow decoding is
+                        shedder.update(processingNanos, skipped ? 0 : audioNanos, (long) (source.available() * nanosPerByte), System.nanoTime());
+                    }
                 }
-            }       
+            }
+
+            // Stopping drains the pipeline: the words heard before Stop are shown
+            emitLive(segmenter.finished(active.finalResult().text()), startTime, false, channel, writer);
+            emitMarkers(channel, writer);
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Live transcription failed", e);
+        } finally {
+            if (lightEngine != null) {
+                lightEngine.close();
+            }
+            LOG.info("Live transcription: {} {}", segmenter, shedder != null ? shedder : "");
+        }
+    }
+
+    private void emitMarkers(TranscriptionChannel<LineTranscription> channel, TranscriptionWriter writer) throws IOException {
+        for (String marker; (marker = markers.poll()) != null; ) {
+            String now = LocalTime.now().toString();
+            var line = new LineTranscription(marker, now, now);
+            channel.send(line);
+            writer.write(line);
+        }
+    }
+
+    /**
+     * Publishes a live line that started at {@code startTime}, if there is any text.
+     *
+     * @param continued whether the utterance goes on after the line, so the next line starts where it ends
+     * @return the start time of the next line: null or the end of the line after a line, else {@code startTime}
+     */
+    private static LocalTime emitLive(String text, LocalTime startTime, boolean continued, TranscriptionChannel<LineTranscription> channel, TranscriptionWriter writer) throws IOException {
+        if (text.isEmpty()) {
+            return startTime;
+        }
+        var endTime = LocalTime.now();
+        if (startTime == null) {
+            // The utterance was finalized by the first buffer it appeared in
+            startTime = endTime;
         }
+        LineTranscription transcription = new LineTranscription(text, startTime.toString(), endTime.toString());
+        channel.send(transcription);
+        writer.write(transcription);
+        return continued ? endTime : null;
     }
 }
@@ -1,10 +1,266 @@
 package ai.speechtotext.transcription;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.Stream;
 
+/**
+ * Compact in-memory store for the lines of a session.
+ * <p>
+ * Instead of keeping one {@link LineTranscription} (and three {@code String}s) per line, times are kept in primitive
+ * arrays and all texts are packed back to back as UTF-8 in a single byte arena. Line {@code i} occupies the arena
+ * bytes {@code [textOffsets[i], textOffsets[i + 1])}.
+ * </p>
+ * Lines are expected to be appended in time order. Missing or out-of-order times are clamped to the end of the
+ * previous line, which keeps both time arrays sorted so that range queries can binary search them. Times of day that
+ * go back by more than half a day crossed midnight, and are stored a day later.
+ */
 public class Transcription {
 
-    private final List<LineTranscription> lines = new ArrayList<>();
-    
+    private static final int INITIAL_LINES = 256;
+    private static final int INITIAL_ARENA_BYTES = 16 * 1024;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    @FunctionalInterface
+    public static interface LineConsumer {
+        void accept(int index, long startMillis, long endMillis, String text);
+    }
+
+    private long[] startMillis = new long[INITIAL_LINES];
+    private long[] endMillis = new long[INITIAL_LINES];
+    private int[] textOffsets = new int[INITIAL_LINES + 1];
+    private byte[] arena = new byte[INITIAL_ARENA_BYTES];
+    /** The lines whose times were stored as times of day rather than elapsed seconds. */
+    private final BitSet timesOfDay = new BitSet();
+
+    private int size;
+    private long dayOffset = 0;
+    private long previousTimeOfDay = -1;
+
+    public static Transcription of(Stream<LineTranscription> lines) {
+        var transcription = new Transcription();
+        lines.forEach(transcription::append);
+        return transcription;
+    }
+
+    /**
+     * Appends a line, converting its stored timestamps with {@link LineTranscription#parseTimeMillis(String)}.
+     *
+     * @return the index of the appended line
+     */
+    public int append(LineTranscription line) {
+        if (line == LineTranscription.END) {
+            throw new IllegalArgumentException("Cannot append the END marker");
+        }
+        return append(
+            LineTranscription.parseTimeMillis(line.startTime()),
+            LineTranscription.parseTimeMillis(line.endTime()),
+            line.text(),
+            isTimeOfDay(line.startTime()) || isTimeOfDay(line.endTime())
+        );
+    }
+
+    /**
+     * Appends a line whose times are elapsed milliseconds.
+     *
+     * @return the index of the appended line
+     */
+    public int append(long start, long end, String text) {
+        return append(start, end, text, false);
+    }
+
+    private synchronized int append(long start, long end, String text, boolean timeOfDay) {
+        if (timeOfDay) {
+            start = unwrap(start);
+            end = unwrap(end);
+        }
+        long previousEnd = size == 0 ? 0 : endMillis[size - 1];
+        if (start < previousEnd) {
+            start = previousEnd;
+        }
+        if (end < start) {
+            end = start;
+        }
+
+        byte[] bytes = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(size + 1, textOffsets[size] + bytes.length);
+
+        System.arraycopy(bytes, 0, arena, textOffsets[size], bytes.length);
+        startMillis[size] = start;
+        endMillis[size] = end;
+        textOffsets[size + 1] = textOffsets[size] + bytes.length;
+        timesOfDay.set(size, timeOfDay);
+
+        return size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long startMillis(int index) {
+        checkIndex(index);
+        return startMillis[index];
+    }
+
+    public synchronized long endMillis(int index) {
+        checkIndex(index);
+        return endMillis[index];
+    }
+
+    public synchronized String text(int index) {
+        checkIndex(index);
+        return new String(arena, textOffsets[index], textOffsets[index + 1] - textOffsets[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the line with its times written as they were appended, as times of day or as seconds, to the
+     *         millisecond
+     */
+    public synchronized LineTranscription line(int index) {
+        checkIndex(index);
+        if (timesOfDay.get(index)) {
+            return new LineTranscription(text(index), timeOfDay(startMillis[index]), timeOfDay(endMillis[index]));
+        }
+        return new LineTranscription(text(index), seconds(startMillis[index]), seconds(endMillis[index]));
+    }
+
+    /**
+     * Visits every line that overlaps the time range {@code [fromMillis, toMillis)}, in order.
+     *
+     * @return the number of visited lines
+     */
+    public synchronized int forEachInRange(long fromMillis, long toMillis, LineConsumer consumer) {
+        int visited = 0;
+        for (int i = firstEndingAfter(fromMillis); i < size && startMillis[i] < toMillis; i++, visited++) {
+            consumer.accept(i, startMillis[i], endMillis[i], text(i));
+        }
+        return visited;
+    }
+
+    public synchronized void forEach(LineConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(i, startMillis[i], endMillis[i], text(i));
+        }
+    }
+
+    /**
+     * @return the index of the line being spoken at {@code millis}, or of the next line if it falls in a pause;
+     *         {@link #size()} if it is past the last line
+     */
+    public synchronized int indexAt(long millis) {
+        return firstEndingAfter(millis);
+    }
+
+    /**
+     * Finds the lines containing {@code term}. The search runs directly on the UTF-8 arena, so no line text is
+     * decoded unless it matches.
+     *
+     * @param from the line index to start searching from
+     * @return the index of the first line at or after {@code from} containing {@code term}, or {@code -1}
+     */
+    public synchronized int indexOf(String term, int from) {
+        int line = Math.max(from, 0);
+        if (line >= size) {
+            return -1;
+        }
+
+        byte[] needle = term.getBytes(StandardCharsets.UTF_8);
+        if (needle.length == 0) {
+            return line;
+        }
+
+        int last = textOffsets[size] - needle.length;
+        for (int i = textOffsets[line]; i <= last; i++) {
+            if (arena[i] != needle[0] || !matchesAt(i, needle)) {
+                continue;
+            }
+            while (textOffsets[line + 1] <= i) {
+                line++;
+            }
+            // A match must not straddle two lines
+            if (i + needle.length <= textOffsets[line + 1]) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized void clear() {
+        size = 0;
+        timesOfDay.clear();
+        dayOffset = 0;
+        previousTimeOfDay = -1;
+    }
+
+    /**
+     * @return an estimate of the heap used by the stored lines, excluding unused capacity
+     */
+    public synchronized long usedBytes() {
+        return (long) size * (Long.BYTES * 2 + Integer.BYTES) + textOffsets[size];
+    }
+
+    private static String seconds(long millis) {
+        return "%d.%03d".formatted(millis / 1000, millis % 1000);
+    }
+
+    private static String timeOfDay(long millis) {
+        return LocalTime.ofNanoOfDay(Math.floorMod(millis, DAY_MILLIS) * 1_000_000).toString();
+    }
+
+    private static boolean isTimeOfDay(String time) {
+        return time != null && time.indexOf(':') != -1;
+    }
+
+    /**
+     * @return {@code millis} past midnight moved to the day of the session it belongs to
+     */
+    private long unwrap(long millis) {
+        if (millis < 0) {
+            return millis;
+        }
+        if (previousTimeOfDay >= 0 && millis + dayOffset < previousTimeOfDay - DAY_MILLIS / 2) {
+            dayOffset += DAY_MILLIS;
+        }
+        previousTimeOfDay = millis + dayOffset;
+        return previousTimeOfDay;
+    }
+
+    private boolean matchesAt(int position, byte[] needle) {
+        return Arrays.equals(arena, position, position + needle.length, needle, 0, needle.length);
+    }
+
+    private int firstEndingAfter(long millis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (endMillis[mid] <= millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int lines, int arenaBytes) {
+        if (lines > startMillis.length) {
+            int capacity = Math.max(lines, startMillis.length + (startMillis.length >> 1));
+            startMillis = Arrays.copyOf(startMillis, capacity);
+            endMillis = Arrays.copyOf(endMillis, capacity);
+            textOffsets = Arrays.copyOf(textOffsets, capacity + 1);
+        }
+        if (arenaBytes > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arenaBytes, arena.length + (arena.length >> 1)));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Line " + index + " out of bounds for " + size + " lines");
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package ai.speechtotext.transcription;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import environment.Configuration;
+import environment.Configuration.FlushPolicy;
+
+/**
+ * Writes transcribed lines to a session's transcription file, flushing them according to the configured
+ * {@link FlushPolicy}. The policy is read on every line, so a reloaded configuration applies to running sessions.
+ */
+public class TranscriptionWriter implements Closeable {
+
+    private final BufferedWriter writer;
+    private long lastFlushNanos = System.nanoTime();
+
+    public TranscriptionWriter(File file) throws IOException {
+        this(file, false);
+    }
+
+    public TranscriptionWriter(File file, boolean append) throws IOException {
+        this.writer = new BufferedWriter(new FileWriter(file, append));
+    }
+
+    public void write(Object line) throws IOException {
+        writer.write(line.toString());
+        writer.newLine();
+
+        var configuration = Configuration.get();
+        long now = System.nanoTime();
+        boolean flush = switch (configuration.getFlushPolicy()) {
+            case LINE -> true;
+            case INTERVAL -> now - lastFlushNanos >= TimeUnit.MILLISECONDS.toNanos(configuration.getFlushIntervalMillis());
+            case CLOSE -> false;
+        };
+        if (flush) {
+            writer.flush();
+            lastFlushNanos = now;
+        }
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+        lastFlushNanos = System.nanoTime();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
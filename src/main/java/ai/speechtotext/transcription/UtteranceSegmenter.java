@@ -0,0 +1,174 @@
+package ai.speechtotext.transcription;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import ai.speechtotext.audio.AudioLevels;
+
+import lombok.Getter;
+
+/**
+ * Caps how long a live caption line can lag behind run-on speech. An engine like Vosk only ends an utterance at a
+ * pause, so a teacher speaking for half a minute would get no caption until the end. Counting audio from the start of
+ * the line, the segmenter:
+ * <ol>
+ * <li>from {@value #SEARCH_FROM} of {@code maxLineSeconds} on, cuts the utterance at the first chunk much quieter
+ * than the line so far, a breath or the gap between words, which the engine is asked to finalize;</li>
+ * <li>at {@code maxLineSeconds}, shows the words of the partial hypothesis that stayed the same over the last few
+ * chunks as a line of their own; those words are then left out of the utterance's result;</li>
+ * <li>at twice {@code maxLineSeconds}, if the partial never settled, finalizes wherever the audio is.</li>
+ * </ol>
+ * Partial hypotheses are only asked for once a line is long enough to be cut.
+ */
+public class UtteranceSegmenter {
+
+    public static enum Cut {
+        NONE,
+        /** The engine should finalize the utterance now, see {@link #finished(String)}. */
+        FINALIZE,
+        /** A stable prefix can be shown, see {@link #takePrefix()}. */
+        PREFIX
+    }
+
+    /** Fraction of the maximum line length from which the line is cut at a quiet chunk. */
+    private static final double SEARCH_FROM = 0.6;
+
+    /** A chunk quieter than this fraction of the line's mean level counts as a pause. */
+    private static final double PAUSE_LEVEL = 0.4;
+
+    /** Below this level a chunk is not speech, so it does not start a line. */
+    private static final double SPEECH_LEVEL = 200;
+
+    /** Partials whose common words count as stable, and the last words of a partial that are never stable. */
+    private static final int STABLE_PARTIALS = 3;
+    private static final int UNSTABLE_TAIL_WORDS = 2;
+
+    private final long maxLineNanos;
+
+    private final ArrayDeque<String[]> partials = new ArrayDeque<>(STABLE_PARTIALS);
+    private String[] stableWords = new String[0];
+
+    /** Audio since the line started, which is the first speech of the utterance or the last prefix shown. */
+    private long lineNanos;
+    private double levelSum;
+    private long levelChunks;
+
+    /** Words of the utterance already shown as prefixes. */
+    private int shownWords;
+
+    @Getter
+    private long longestLineNanos, finalizeCount, prefixCount;
+
+    /**
+     * @param maxLineSeconds longest a line should take, 0 or less to never cut lines
+     */
+    public UtteranceSegmenter(double maxLineSeconds) {
+        this.maxLineNanos = (long) (maxLineSeconds * 1e9);
+    }
+
+    /**
+     * Looks at a chunk of an utterance the engine has not ended.
+     *
+     * @param partial the engine's partial hypothesis, only asked for when needed
+     */
+    public Cut observe(byte[] buffer, int length, long audioNanos, Supplier<String> partial) {
+        double level = AudioLevels.rms(buffer, length);
+        if (lineNanos == 0 && level < SPEECH_LEVEL) {
+            return Cut.NONE;
+        }
+        lineNanos += audioNanos;
+        longestLineNanos = Math.max(longestLineNanos, lineNanos);
+        if (maxLineNanos <= 0) {
+            return Cut.NONE;
+        }
+
+        if (lineNanos < maxLineNanos * SEARCH_FROM) {
+            levelSum += level;
+            levelChunks++;
+            return Cut.NONE;
+        }
+
+        if (levelChunks > 0 && level < PAUSE_LEVEL * levelSum / levelChunks) {
+            finalizeCount++;
+            return Cut.FINALIZE;
+        }
+        levelSum += level;
+        levelChunks++;
+
+        if (partials.size() == STABLE_PARTIALS) {
+            partials.removeFirst();
+        }
+        String text = partial.get().trim();
+        partials.addLast(text.isEmpty() ? new String[0] : text.split("\\s+"));
+
+        if (lineNanos >= 2 * maxLineNanos) {
+            finalizeCount++;
+            return Cut.FINALIZE;
+        }
+        if (lineNanos >= maxLineNanos && partials.size() == STABLE_PARTIALS && stablePrefix() > shownWords) {
+            return Cut.PREFIX;
+        }
+        return Cut.NONE;
+    }
+
+    /**
+     * @return the stable words not shown yet, which now count as shown; the line starts over after them
+     */
+    public String takePrefix() {
+        int end = stablePrefix();
+        if (end <= shownWords) {
+            return "";
+        }
+        String prefix = String.join(" ", Arrays.copyOfRange(stableWords, shownWords, end));
+        shownWords = end;
+        prefixCount++;
+        lineNanos = 0;
+        return prefix;
+    }
+
+    /**
+     * Ends the utterance, whether the engine ended it or it was cut.
+     *
+     * @return the utterance's text without the words already shown as prefixes
+     */
+    public String finished(String text) {
+        String rest = text;
+        if (shownWords > 0 && !text.isBlank()) {
+            // The engine may still have revised a shown word, the count is what matters
+            String[] words = text.trim().split("\\s+");
+            rest = String.join(" ", Arrays.copyOfRange(words, Math.min(shownWords, words.length), words.length));
+        }
+        partials.clear();
+        shownWords = 0;
+        lineNanos = 0;
+        levelSum = 0;
+        levelChunks = 0;
+        return rest;
+    }
+
+    /**
+     * @return the number of leading words the recent partials agree on, leaving out the last words of the newest
+     */
+    private int stablePrefix() {
+        var newest = partials.peekLast();
+        int common = newest.length - UNSTABLE_TAIL_WORDS;
+        for (var words : partials) {
+            int same = 0;
+            while (same < Math.min(common, words.length) && words[same].equals(newest[same])) {
+                same++;
+            }
+            common = same;
+        }
+        stableWords = newest;
+        return Math.max(common, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "segments[longest=%dms finalized=%d prefixes=%d]".formatted(
+            TimeUnit.NANOSECONDS.toMillis(longestLineNanos), finalizeCount, prefixCount
+        );
+    }
+}
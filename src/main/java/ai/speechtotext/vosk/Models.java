@@ -4,19 +4,44 @@ import java.io.IOException;
 
 import org.vosk.Model;
 
+import environment.Configuration;
+import environment.logging.Log;
+
+/**
+ * The Vosk models named in the {@link Configuration}, loaded once at startup. Changing them takes a restart.
+ */
 public class Models {
 
+    private static final Log LOG = Log.get("models");
+
     public static Model tl;
     public static Model en;
 
+    /** Smaller model in the language of {@link #tl}, or null if none is configured. */
+    public static Model light;
+
     static {
-        String base = System.getProperty("user.dir");
-        System.out.println("base: " + base);
+        var configuration = Configuration.get();
+        String base = configuration.getModelsPath();
+        LOG.info("Models: {}", base);
         try {
-            en = new Model(base + "/live-captioning-system/models/en-us-small");
-            tl = new Model(base + "/live-captioning-system/models/tl");
+            tl = new Model(base + "/" + configuration.getCaptionModel());
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.error("Caption model not loaded", e);
+        }
+        // Only used for command spotting, captions work without it
+        try {
+            en = new Model(base + "/" + configuration.getCommandModel());
+        } catch (IOException e) {
+            LOG.warn("Command model not loaded", e);
+        }
+        // Only used while live captions fall behind
+        if (!configuration.getLightCaptionModel().isBlank()) {
+            try {
+                light = new Model(base + "/" + configuration.getLightCaptionModel());
+            } catch (IOException e) {
+                LOG.warn("Light caption model not loaded", e);
+            }
         }
     }
 }
@@ -1,9 +1,464 @@
 package environment;
 
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import environment.logging.Log;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Typed settings of a deployment, stored as JSON in {@link #FILE_NAME} next to the sessions and models. Missing keys
+ * take their defaults and the whole file is validated when it is loaded, so a bad edit is reported instead of taking
+ * effect.
+ * <p>
+ * The file is watched and reloaded when it changes. Settings read at the point of use, such as the sessions path, the
+ * flush policy and the scrollback, apply to running sessions; buffer sizes and queue bounds apply from the next
+ * session; the audio format, models and compaction schedule need a restart (see {@link #requiresRestart(Configuration)}).
+ * </p>
+ */
+@Getter
+@Builder(toBuilder = true)
 public class Configuration {
 
-    // public static String sessionsSavePath = System.getProperty("user.dir") +  "/sessions";
-    public static String sessionsSavePath = Paths.get("").toAbsolutePath() + "/live-captioning-system/sessions";
+    private static final Log LOG = Log.get("config");
+
+    public static final String FILE_NAME = "configuration.json";
+
+    private static final String BASE_PATH = Paths.get("").toAbsolutePath() + "/live-captioning-system";
+
+    public static enum FlushPolicy {
+        /** Every line is on disk as soon as it is transcribed. */
+        LINE,
+        /** Lines are flushed at most every {@code flushIntervalMillis}. */
+        INTERVAL,
+        /** Lines are only flushed when the buffer fills and when the session ends. */
+        CLOSE
+    }
+
+    @Builder.Default
+    private final String sessionsSavePath = BASE_PATH + "/sessions";
+
+    @Builder.Default
+    private final String modelsPath = BASE_PATH + "/models";
+
+    @Builder.Default
+    private final String captionModel = "tl";
+
+    @Builder.Default
+    private final String commandModel = "en-us-small";
+
+    /**
+     * Smaller model in the caption model's language that live captions switch to while decoding falls behind; empty
+     * for none, in which case that step is skipped.
+     */
+    @Builder.Default
+    private final String lightCaptionModel = "";
+
+    @Builder.Default
+    private final int sampleRate = 16000;
+
+    /** Bytes read from the audio source and handed to the recognizer at a time. */
+    @Builder.Default
+    private final int chunkBytes = 4096;
+
+    /** Bytes handed to the recognizer at a time when transcribing a file, a multiple of 4096. */
+    @Builder.Default
+    private final int fileChunkBytes = 64 * 1024;
+
+    @Builder.Default
+    private final FlushPolicy flushPolicy = FlushPolicy.INTERVAL;
+
+    @Builder.Default
+    private final int flushIntervalMillis = 1000;
+
+    /** Caption lines kept on screen, 0 keeps all of them. */
+    @Builder.Default
+    private final int scrollbackLines = 2000;
+
+    /** Size of the live captions on screen, in points. */
+    @Builder.Default
+    private final int captionFontSize = 80;
+
+    @Builder.Default
+    private final boolean commandSpotting = true;
+
+    /** Audio chunks waiting for the command spotter before new ones are dropped. */
+    @Builder.Default
+    private final int commandQueueChunks = 32;
+
+    @Builder.Default
+    private final int exportThreads = Runtime.getRuntime().availableProcessors();
+
+    /** File transcriptions run at the same time. */
+    @Builder.Default
+    private final int backgroundJobs = 1;
+
+    /** Live real-time factor above which file transcriptions are held back. */
+    @Builder.Default
+    private final double throttleRealTimeFactor = 0.8;
+
+    /** Whether live captions step down in quality when decoding falls behind, see {@code LoadShedder}. */
+    @Builder.Default
+    private final boolean loadShedding = true;
+
+    /** Live real-time factor above which captions step down. */
+    @Builder.Default
+    private final double shedRealTimeFactor = 0.9;
+
+    /** Audio waiting to be decoded above which captions step down. */
+    @Builder.Default
+    private final int shedBacklogMillis = 1000;
+
+    /** Longest a live caption line may lag behind run-on speech, see {@code UtteranceSegmenter}; 0 never cuts lines. */
+    @Builder.Default
+    private final double maxLineSeconds = 6;
+
+    /** TCP port the network input listens on for raw PCM. */
+    @Builder.Default
+    private final int audioPort = 5055;
+
+    /** Named pipe the pipe input reads raw PCM from, {@code -} for standard input. */
+    @Builder.Default
+    private final String audioPipe = "-";
+
+    /** Capture device of the teacher in classroom mode, by its name; empty for the system default. */
+    @Builder.Default
+    private final String teacherDevice = "";
+
+    /** Capture devices of the room microphones in classroom mode, by their names separated by commas. */
+    @Builder.Default
+    private final String roomDevices = "";
+
+    @Builder.Default
+    private final int compactionIntervalMinutes = 60;
+
+    @Builder.Default
+    private final int compactionMinimumAgeMinutes = 60;
+
+    /** Shared folder or drive that {@code SyncCommand} copies the sessions to by default, empty for none. */
+    @Builder.Default
+    private final String syncPath = "";
+
+    @Builder.Default
+    private final int syncThreads = 4;
+
+    /** Folder of the rotating log files. */
+    @Builder.Default
+    private final String logPath = BASE_PATH + "/logs";
+
+    /** Level of every subsystem without its own, one of {@code Log.Level}. */
+    @Builder.Default
+    private final String logLevel = "INFO";
+
+    /** Levels of single subsystems, such as {@code "transcription=DEBUG, audio=WARN"}. */
+    @Builder.Default
+    private final String logLevels = "";
+
+    private static volatile Configuration current;
+
+    private static final List<Consumer<Configuration>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return the current configuration, loading it on first use
+     */
+    public static Configuration get() {
+        var configuration = current;
+        if (configuration == null) {
+            synchronized (Configuration.class) {
+                if (current == null) {
+                    current = loadOrDefault();
+                }
+                configuration = current;
+            }
+        }
+        return configuration;
+    }
+
+    public static Path path() {
+        return Path.of(System.getProperty("sightline.config", BASE_PATH + "/" + FILE_NAME));
+    }
+
+    /**
+     * Listens for reloads and saves. Listeners are called on the thread that changed the configuration.
+     */
+    public static void subscribe(Consumer<Configuration> listener) {
+        listeners.add(listener);
+    }
+
+    public static void unsubscribe(Consumer<Configuration> listener) {
+        listeners.remove(listener);
+    }
+
+    private static Configuration loadOrDefault() {
+        try {
+            return load(path());
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.error("Configuration not loaded, using defaults", e);
+            return builder().build();
+        }
+    }
+
+    /**
+     * Reads and validates a configuration file. A missing file gives the defaults.
+     *
+     * @throws IllegalArgumentException if the file is not valid JSON or a setting is out of range
+     */
+    public static Configuration load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return builder().build();
+        }
+
+        try {
+            return fromJson(new JSONObject(Files.readString(path)));
+        } catch (JSONException | IllegalArgumentException e) {
+            throw new IllegalArgumentException(path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Builds and validates a configuration from JSON. Missing keys take their defaults, and values may also be given as
+     * strings, as the Settings screen does.
+     *
+     * @throws IllegalArgumentException if a value has the wrong type or is out of range
+     */
+    public static Configuration fromJson(JSONObject json) {
+        var defaults = builder().build();
+        try {
+            return builder()
+                .sessionsSavePath(text(json, "sessionsSavePath", defaults.sessionsSavePath))
+                .modelsPath(text(json, "modelsPath", defaults.modelsPath))
+                .captionModel(text(json, "captionModel", defaults.captionModel))
+                .commandModel(text(json, "commandModel", defaults.commandModel))
+                .lightCaptionModel(text(json, "lightCaptionModel", defaults.lightCaptionModel))
+                .sampleRate(integer(json, "sampleRate", defaults.sampleRate))
+                .chunkBytes(integer(json, "chunkBytes", defaults.chunkBytes))
+                .fileChunkBytes(integer(json, "fileChunkBytes", defaults.fileChunkBytes))
+                .flushPolicy(json.has("flushPolicy") ? json.getEnum(FlushPolicy.class, "flushPolicy") : defaults.flushPolicy)
+                .flushIntervalMillis(integer(json, "flushIntervalMillis", defaults.flushIntervalMillis))
+                .scrollbackLines(integer(json, "scrollbackLines", defaults.scrollbackLines))
+                .captionFontSize(integer(json, "captionFontSize", defaults.captionFontSize))
+                .commandSpotting(json.has("commandSpotting") ? json.getBoolean("commandSpotting") : defaults.commandSpotting)
+                .commandQueueChunks(integer(json, "commandQueueChunks", defaults.commandQueueChunks))
+                .exportThreads(integer(json, "exportThreads", defaults.exportThreads))
+                .backgroundJobs(integer(json, "backgroundJobs", defaults.backgroundJobs))
+                .throttleRealTimeFactor(decimal(json, "throttleRealTimeFactor", defaults.throttleRealTimeFactor))
+                .loadShedding(json.has("loadShedding") ? json.getBoolean("loadShedding") : defaults.loadShedding)
+                .shedRealTimeFactor(decimal(json, "shedRealTimeFactor", defaults.shedRealTimeFactor))
+                .shedBacklogMillis(integer(json, "shedBacklogMillis", defaults.shedBacklogMillis))
+                .maxLineSeconds(decimal(json, "maxLineSeconds", defaults.maxLineSeconds))
+                .audioPort(integer(json, "audioPort", defaults.audioPort))
+                .audioPipe(text(json, "audioPipe", defaults.audioPipe))
+                .teacherDevice(text(json, "teacherDevice", defaults.teacherDevice))
+                .roomDevices(text(json, "roomDevices", defaults.roomDevices))
+                .compactionIntervalMinutes(integer(json, "compactionIntervalMinutes", defaults.compactionIntervalMinutes))
+                .compactionMinimumAgeMinutes(integer(json, "compactionMinimumAgeMinutes", defaults.compactionMinimumAgeMinutes))
+                .syncPath(text(json, "syncPath", defaults.syncPath))
+                .syncThreads(integer(json, "syncThreads", defaults.syncThreads))
+                .logPath(text(json, "logPath", defaults.logPath))
+                .logLevel(text(json, "logLevel", defaults.logLevel))
+                .logLevels(text(json, "logLevels", defaults.logLevels))
+                .build()
+                .validate();
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    // A present key of the wrong type is an error rather than silently taking the default
+    private static String text(JSONObject json, String key, String fallback) {
+        return json.has(key) ? json.getString(key) : fallback;
+    }
+
+    private static int integer(JSONObject json, String key, int fallback) {
+        return json.has(key) ? json.getInt(key) : fallback;
+    }
+
+    private static double decimal(JSONObject json, String key, double fallback) {
+        return json.has(key) ? json.getDouble(key) : fallback;
+    }
+
+    /**
+     * @return this configuration
+     * @throws IllegalArgumentException listing every setting that is out of range
+     */
+    public Configuration validate() {
+        List<String> problems = new ArrayList<>();
+        if (sessionsSavePath.isBlank()) problems.add("sessionsSavePath must not be empty");
+        if (modelsPath.isBlank()) problems.add("modelsPath must not be empty");
+        if (captionModel.isBlank()) problems.add("captionModel must not be empty");
+        if (sampleRate < 8000 || sampleRate > 48000) problems.add("sampleRate must be between 8000 and 48000");
+        if (chunkBytes < 512 || chunkBytes > 65536 || chunkBytes % 2 != 0) problems.add("chunkBytes must be an even number between 512 and 65536");
+        if (fileChunkBytes < 4096 || fileChunkBytes > (4 << 20) || fileChunkBytes % 4096 != 0) problems.add("fileChunkBytes must be a multiple of 4096 up to 4 MiB");
+        if (flushIntervalMillis < 10) problems.add("flushIntervalMillis must be at least 10");
+        if (scrollbackLines < 0) problems.add("scrollbackLines must not be negative");
+        if (captionFontSize < 8 || captionFontSize > 400) problems.add("captionFontSize must be between 8 and 400");
+        if (commandQueueChunks < 1 || commandQueueChunks > 1024) problems.add("commandQueueChunks must be between 1 and 1024");
+        if (exportThreads < 1 || exportThreads > 64) problems.add("exportThreads must be between 1 and 64");
+        if (backgroundJobs < 1 || backgroundJobs > 16) problems.add("backgroundJobs must be between 1 and 16");
+        if (!(throttleRealTimeFactor > 0.1 && throttleRealTimeFactor <= 1)) problems.add("throttleRealTimeFactor must be above 0.1 and at most 1");
+        if (!(shedRealTimeFactor > 0.1 && shedRealTimeFactor <= 2)) problems.add("shedRealTimeFactor must be above 0.1 and at most 2");
+        if (shedBacklogMillis < 100 || shedBacklogMillis > 60000) problems.add("shedBacklogMillis must be between 100 and 60000");
+        if (maxLineSeconds != 0 && !(maxLineSeconds >= 2 && maxLineSeconds <= 60)) problems.add("maxLineSeconds must be 0 or between 2 and 60");
+        if (audioPort < 1 || audioPort > 65535) problems.add("audioPort must be between 1 and 65535");
+        if (audioPipe.isBlank()) problems.add("audioPipe must not be empty");
+        if (compactionIntervalMinutes < 1) problems.add("compactionIntervalMinutes must be at least 1");
+        if (compactionMinimumAgeMinutes < 1) problems.add("compactionMinimumAgeMinutes must be at least 1");
+        if (syncThreads < 1 || syncThreads > 32) problems.add("syncThreads must be between 1 and 32");
+        if (logPath.isBlank()) problems.add("logPath must not be empty");
+        try {
+            Log.parseLevel(logLevel);
+        } catch (IllegalArgumentException e) {
+            problems.add("logLevel must be one of DEBUG, INFO, WARN, ERROR or OFF");
+        }
+        try {
+            Log.parseLevels(logLevels);
+        } catch (IllegalArgumentException e) {
+            problems.add("logLevels must be like transcription=DEBUG, audio=WARN");
+        }
+
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException(String.join(", ", problems));
+        }
+        return this;
+    }
+
+    public JSONObject toJson() {
+        var json = new JSONObject();
+        json.put("sessionsSavePath", sessionsSavePath);
+        json.put("modelsPath", modelsPath);
+        json.put("captionModel", captionModel);
+        json.put("commandModel", commandModel);
+        json.put("lightCaptionModel", lightCaptionModel);
+        json.put("sampleRate", sampleRate);
+        json.put("chunkBytes", chunkBytes);
+        json.put("fileChunkBytes", fileChunkBytes);
+        json.put("flushPolicy", flushPolicy.name());
+        json.put("flushIntervalMillis", flushIntervalMillis);
+        json.put("scrollbackLines", scrollbackLines);
+        json.put("captionFontSize", captionFontSize);
+        json.put("commandSpotting", commandSpotting);
+        json.put("commandQueueChunks", commandQueueChunks);
+        json.put("exportThreads", exportThreads);
+        json.put("backgroundJobs", backgroundJobs);
+        json.put("throttleRealTimeFactor", throttleRealTimeFactor);
+        json.put("loadShedding", loadShedding);
+        json.put("shedRealTimeFactor", shedRealTimeFactor);
+        json.put("shedBacklogMillis", shedBacklogMillis);
+        json.put("maxLineSeconds", maxLineSeconds);
+        json.put("audioPort", audioPort);
+        json.put("audioPipe", audioPipe);
+        json.put("teacherDevice", teacherDevice);
+        json.put("roomDevices", roomDevices);
+        json.put("compactionIntervalMinutes", compactionIntervalMinutes);
+        json.put("compactionMinimumAgeMinutes", compactionMinimumAgeMinutes);
+        json.put("syncPath", syncPath);
+        json.put("syncThreads", syncThreads);
+        json.put("logPath", logPath);
+        json.put("logLevel", logLevel);
+        json.put("logLevels", logLevels);
+        return json;
+    }
+
+    /**
+     * @return whether switching from {@code previous} to this configuration only takes effect after a restart
+     */
+    public boolean requiresRestart(Configuration previous) {
+        return sampleRate != previous.sampleRate
+            || !modelsPath.equals(previous.modelsPath)
+            || !captionModel.equals(previous.captionModel)
+            || !commandModel.equals(previous.commandModel)
+            || !lightCaptionModel.equals(previous.lightCaptionModel)
+            || backgroundJobs < previous.backgroundJobs
+            || compactionIntervalMinutes != previous.compactionIntervalMinutes
+            || compactionMinimumAgeMinutes != previous.compactionMinimumAgeMinutes;
+    }
+
+    /**
+     * Validates and writes a configuration, then makes it current. The file is replaced atomically so the watcher
+     * never reads a partial file.
+     */
+    public static void save(Configuration configuration) throws IOException {
+        configuration.validate();
+
+        Path path = path();
+        Files.createDirectories(path.getParent());
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(temporary, configuration.toJson().toString(4));
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        apply(configuration);
+    }
+
+    private static void apply(Configuration configuration) {
+        Configuration previous;
+        synchronized (Configuration.class) {
+            previous = current;
+            current = configuration;
+        }
+        if (previous == null || !configuration.toJson().similar(previous.toJson())) {
+            listeners.forEach(listener -> listener.accept(configuration));
+        }
+    }
+
+    /**
+     * Reloads the configuration whenever its file changes, on a daemon thread. An invalid file is reported and the
+     * previous configuration is kept.
+     */
+    public static Thread watch() throws IOException {
+        Path path = path().toAbsolutePath();
+        Files.createDirectories(path.getParent());
+
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        var thread = new Thread(() -> {
+            try (watchService) {
+                while (true) {
+                    var key = watchService.take();
+                    boolean changed = key.pollEvents().stream()
+                        .anyMatch(event -> Objects.equals(event.context(), path.getFileName()));
+                    key.reset();
+                    if (!changed) continue;
+
+                    // Editors write in several steps, wait for them to finish
+                    Thread.sleep(200);
+                    var pending = watchService.poll();
+                    if (pending != null) {
+                        pending.pollEvents();
+                        pending.reset();
+                    }
+
+                    try {
+                        apply(load(path));
+                    } catch (IOException | IllegalArgumentException e) {
+                        LOG.warn("Configuration not reloaded: {}", e.getMessage());
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                LOG.error("Configuration no longer watched", e);
+            }
+        }, "configuration-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
 }
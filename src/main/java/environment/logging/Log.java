@@ -0,0 +1,166 @@
+package environment.logging;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logging that never blocks the thread that logs, so it is safe on the audio and FX threads. A record is put in a
+ * preallocated {@link LogRing} and formatted and written by a background {@link LogWriter} to the console and to
+ * rotating files; if the ring is full the record is dropped and counted, rather than waiting.
+ * <p>
+ * Every subsystem has its own level, set by {@link #setLevels(Level, Map)}; {@code transcription.live} falls back to
+ * the level of {@code transcription}, then to the default. Each message of a subsystem is rate limited, so errors that
+ * repeat every chunk are logged a few times per ten seconds with a count of the others.
+ * </p>
+ * Messages use {@code {}} placeholders, and a {@link Throwable} as the last argument is logged with its stack trace.
+ * Arguments are formatted later on the writer thread, so they should not change after the call.
+ */
+public final class Log {
+
+    public static enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    private static final int RING_CAPACITY = 8192;
+
+    private static final LogRing ring = new LogRing(RING_CAPACITY);
+    private static final LogWriter writer = new LogWriter(ring);
+    private static final Map<String, Log> logs = new ConcurrentHashMap<>();
+
+    private static volatile Level defaultLevel = Level.INFO;
+    private static volatile Map<String, Level> levels = Map.of();
+
+    static {
+        var thread = new Thread(writer, "log-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000), "log-flush"));
+    }
+
+    private final String subsystem;
+    private final RateLimiter limiter = new RateLimiter();
+    private volatile Level level;
+
+    private Log(String subsystem) {
+        this.subsystem = subsystem;
+        this.level = levelOf(subsystem);
+    }
+
+    public static Log get(String subsystem) {
+        return logs.computeIfAbsent(subsystem, Log::new);
+    }
+
+    /**
+     * @param levels levels of subsystems that differ from {@code defaultLevel}
+     */
+    public static void setLevels(Level defaultLevel, Map<String, Level> levels) {
+        Log.defaultLevel = defaultLevel;
+        Log.levels = Map.copyOf(levels);
+        logs.values().forEach(log -> log.level = levelOf(log.subsystem));
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code text} is not a level
+     */
+    public static Level parseLevel(String text) {
+        return Level.valueOf(text.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Parses subsystem levels such as {@code "transcription=DEBUG, audio=WARN"}.
+     *
+     * @throws IllegalArgumentException if an entry or level is not valid
+     */
+    public static Map<String, Level> parseLevels(String text) {
+        Map<String, Level> parsed = new HashMap<>();
+        for (String entry : text.split(",")) {
+            if (entry.isBlank()) continue;
+            String[] parts = entry.split("=");
+            if (parts.length != 2 || parts[0].isBlank()) {
+                throw new IllegalArgumentException("Expected subsystem=LEVEL: " + entry.trim());
+            }
+            parsed.put(parts[0].trim(), parseLevel(parts[1]));
+        }
+        return parsed;
+    }
+
+    /**
+     * Writes log files to {@code directory} from now on, or only to the console if null.
+     */
+    public static void setDirectory(Path directory) {
+        writer.directory = directory;
+    }
+
+    public static void setRotation(long maxFileBytes, int keptFiles) {
+        writer.maxFileBytes = maxFileBytes;
+        writer.keptFiles = keptFiles;
+    }
+
+    public static void setConsole(boolean console) {
+        writer.console = console;
+    }
+
+    /**
+     * Waits until every record logged so far is written.
+     *
+     * @return false if that did not happen within the timeout
+     */
+    public static boolean flush(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!ring.isEmpty()) {
+            if (System.nanoTime() > deadline) return false;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        // The writer flushes its files before it next goes idle
+        long rounds = writer.idleRounds;
+        while (writer.idleRounds == rounds) {
+            if (System.nanoTime() > deadline) return false;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    private static Level levelOf(String subsystem) {
+        var configured = levels;
+        for (String name = subsystem; ; name = name.substring(0, name.lastIndexOf('.'))) {
+            var level = configured.get(name);
+            if (level != null) return level;
+            if (name.lastIndexOf('.') < 0) return defaultLevel;
+        }
+    }
+
+    public boolean isEnabled(Level level) {
+        return level != Level.OFF && level.compareTo(this.level) >= 0;
+    }
+
+    public void debug(String message, Object... args) {
+        log(Level.DEBUG, message, args);
+    }
+
+    public void info(String message, Object... args) {
+        log(Level.INFO, message, args);
+    }
+
+    public void warn(String message, Object... args) {
+        log(Level.WARN, message, args);
+    }
+
+    public void error(String message, Object... args) {
+        log(Level.ERROR, message, args);
+    }
+
+    private void log(Level level, String message, Object[] args) {
+        if (!isEnabled(level)) return;
+
+        long suppressed = limiter.admit(message, System.nanoTime());
+        if (suppressed < 0) return;
+
+        Throwable thrown = args.length > 0 && args[args.length - 1] instanceof Throwable t ? t : null;
+        ring.offer(System.currentTimeMillis(), level, subsystem, message, args, thrown, suppressed);
+    }
+}
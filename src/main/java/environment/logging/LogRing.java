@@ -0,0 +1,114 @@
+package environment.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded ring of preallocated log records, written by any thread and read by the log writer alone. Appending claims
+ * a slot with one compare-and-set and never waits: when the ring is full the record is dropped and counted instead.
+ * Each slot carries a sequence number that tells writers whether it is free and the reader whether it is filled.
+ */
+final class LogRing {
+
+    static final class Slot {
+
+        private volatile long sequence;
+
+        long time;
+        Log.Level level;
+        String subsystem;
+        String thread;
+        String message;
+        Object[] args;
+        Throwable thrown;
+        long suppressed;
+
+        void clear() {
+            subsystem = thread = message = null;
+            args = null;
+            thrown = null;
+        }
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity a power of two
+     */
+    LogRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        slots = new Slot[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+    }
+
+    /**
+     * @return whether the record was added, false if the ring was full
+     */
+    boolean offer(long time, Log.Level level, String subsystem, String message, Object[] args, Throwable thrown, long suppressed) {
+        Slot slot;
+        long position;
+        while (true) {
+            position = tail.get();
+            slot = slots[(int) position & mask];
+            long sequence = slot.sequence;
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (sequence < position) {
+                // The reader has not freed this slot yet, the ring is full
+                dropped.incrementAndGet();
+                return false;
+            }
+            // Another writer claimed the slot first, try the next one
+        }
+
+        slot.time = time;
+        slot.level = level;
+        slot.subsystem = subsystem;
+        slot.thread = Thread.currentThread().getName();
+        slot.message = message;
+        slot.args = args;
+        slot.thrown = thrown;
+        slot.suppressed = suppressed;
+        slot.sequence = position + 1;
+        return true;
+    }
+
+    /**
+     * @return the next filled slot, to be handed back with {@link #release(Slot)}, or null if there is none
+     */
+    Slot peek() {
+        var slot = slots[(int) head & mask];
+        return slot.sequence == head + 1 ? slot : null;
+    }
+
+    void release(Slot slot) {
+        slot.clear();
+        slot.sequence = head + slots.length;
+        head++;
+    }
+
+    /**
+     * @return whether every record offered so far has been read
+     */
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    /**
+     * @return the records dropped since the last call
+     */
+    long takeDropped() {
+        return dropped.getAndSet(0);
+    }
+}
@@ -0,0 +1,198 @@
+package environment.logging;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drains the {@link LogRing} on a daemon thread of its own, formatting records there, and writes them to the console
+ * and to {@value #FILE_NAME} in the log folder. When the file reaches its size limit it becomes {@code sightline.1.log},
+ * the older ones move up a number, and the oldest beyond the kept count is deleted. Writing is the only place that can
+ * be slow, and only this thread waits for it.
+ */
+final class LogWriter implements Runnable {
+
+    static final String FILE_NAME = "sightline.log";
+
+    /** How long the thread sleeps when the ring is empty; a record waits at most this long. */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private static final DateTimeFormatter TIME =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final LogRing ring;
+
+    volatile Path directory;
+    volatile long maxFileBytes = 5 << 20;
+    volatile int keptFiles = 5;
+    volatile boolean console = true;
+
+    /** Incremented every time the ring was found empty and everything was flushed. */
+    volatile long idleRounds;
+
+    private Path openDirectory;
+    private Writer file;
+    private long fileBytes;
+
+    private final StringBuilder line = new StringBuilder(256);
+
+    LogWriter(LogRing ring) {
+        this.ring = ring;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            var slot = ring.peek();
+            if (slot == null) {
+                long dropped = ring.takeDropped();
+                if (dropped > 0) {
+                    line.setLength(0);
+                    line.append(TIME.format(Instant.now())).append(" WARN  [log] ").append(dropped)
+                        .append(" records dropped, the log ring was full").append(System.lineSeparator());
+                    write(Log.Level.WARN);
+                }
+                flush();
+                idleRounds++;
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+
+            var level = slot.level;
+            try {
+                format(slot);
+            } catch (RuntimeException e) {
+                // A toString() that throws must not end logging
+                line.append(" (formatting failed: ").append(e).append(')').append(System.lineSeparator());
+            }
+            ring.release(slot);
+            write(level);
+        }
+    }
+
+    private void format(LogRing.Slot slot) {
+        line.setLength(0);
+        line.append(TIME.format(Instant.ofEpochMilli(slot.time))).append(' ');
+        String level = slot.level.name();
+        line.append(level).append(" ".repeat(6 - level.length()));
+        line.append('[').append(slot.subsystem).append("] ");
+
+        // {} placeholders take the arguments in order, as in SLF4J
+        String message = slot.message;
+        Object[] args = slot.args;
+        int count = args == null ? 0 : args.length - (slot.thrown != null ? 1 : 0);
+        int next = 0;
+        int from = 0;
+        int at;
+        while (next < count && (at = message.indexOf("{}", from)) >= 0) {
+            line.append(message, from, at).append(args[next++]);
+            from = at + 2;
+        }
+        line.append(message, from, message.length());
+
+        if (slot.suppressed > 0) {
+            line.append(" (").append(slot.suppressed).append(" similar suppressed)");
+        }
+        line.append(" (").append(slot.thread).append(')').append(System.lineSeparator());
+
+        if (slot.thrown != null) {
+            var trace = new StringWriter();
+            slot.thrown.printStackTrace(new PrintWriter(trace));
+            line.append(trace);
+        }
+    }
+
+    private void write(Log.Level level) {
+        if (console) {
+            (level.compareTo(Log.Level.WARN) >= 0 ? System.err : System.out).print(line);
+        }
+
+        try {
+            var writer = file();
+            if (writer != null) {
+                writer.append(line);
+                fileBytes += line.length();
+            }
+        } catch (IOException e) {
+            closeFile();
+            if (console) {
+                System.err.println("Log file not written: " + e);
+            }
+        }
+    }
+
+    private Writer file() throws IOException {
+        var wanted = directory;
+        if (wanted == null) {
+            closeFile();
+            return null;
+        }
+        if (!wanted.equals(openDirectory)) {
+            closeFile();
+        }
+        if (file != null && fileBytes >= maxFileBytes) {
+            closeFile();
+            rotate(wanted);
+        }
+        if (file == null) {
+            Files.createDirectories(wanted);
+            Path path = wanted.resolve(FILE_NAME);
+            fileBytes = Files.exists(path) ? Files.size(path) : 0;
+            file = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            openDirectory = wanted;
+        }
+        return file;
+    }
+
+    private void rotate(Path directory) throws IOException {
+        int kept = Math.max(1, keptFiles);
+        Files.deleteIfExists(rotated(directory, kept));
+        for (int i = kept - 1; i >= 1; i--) {
+            var older = rotated(directory, i);
+            if (Files.exists(older)) {
+                Files.move(older, rotated(directory, i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(directory.resolve(FILE_NAME), rotated(directory, 1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Path rotated(Path directory, int index) {
+        return directory.resolve("sightline." + index + ".log");
+    }
+
+    private void flush() {
+        if (file != null) {
+            try {
+                file.flush();
+            } catch (IOException e) {
+                closeFile();
+            }
+        }
+        if (console) {
+            System.out.flush();
+        }
+    }
+
+    private void closeFile() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException _) {
+                // Nothing more can be done with it
+            }
+            file = null;
+            openDirectory = null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package environment.logging;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets through the first few records of each message of a subsystem per window, so an error repeated every chunk, such
+ * as a line overrun, cannot flood the log. Messages are told apart by their text before formatting, which for a literal
+ * is the same string on every call. The first record let through in a new window carries how many were held back.
+ * Admitting a record takes a map lookup and a few atomic operations, never a lock.
+ */
+final class RateLimiter {
+
+    static final int BURST = 5;
+    static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /** Messages built by concatenation are all different, past this many they are no longer limited. */
+    private static final int MAX_MESSAGES = 1024;
+
+    private static final class Window {
+
+        private final AtomicLong start;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong suppressed = new AtomicLong();
+
+        Window(long start) {
+            this.start = new AtomicLong(start);
+        }
+    }
+
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * @return -1 to drop the record, else the number of records of the message dropped before it
+     */
+    long admit(String message, long now) {
+        var window = windows.get(message);
+        if (window == null) {
+            if (windows.size() >= MAX_MESSAGES) return 0;
+            window = windows.computeIfAbsent(message, _ -> new Window(now));
+        }
+
+        long start = window.start.get();
+        if (now - start >= WINDOW_NANOS && window.start.compareAndSet(start, now)) {
+            window.count.set(0);
+        }
+
+        if (window.count.incrementAndGet() > BURST) {
+            window.suppressed.incrementAndGet();
+            return -1;
+        }
+        return window.suppressed.getAndSet(0);
+    }
+}
@@ -2,9 +2,21 @@ package session;
 
 import java.nio.file.Path;
 
-public record Session(String name, Path path) {
+/**
+ * A recorded session. Sessions are stored in their own folder at {@code path} until they are compacted into a session
+ * pack, after which {@code pack} is the archive holding them and {@code path} is the folder they used to occupy.
+ */
+public record Session(String name, Path path, Path pack) {
+
+    public Session(String name, Path path) {
+        this(name, path, null);
+    }
+
+    public boolean isPacked() {
+        return pack != null;
+    }
     
     public String toString() {
-        return "Session " + name + " at " + path.toString(); 
+        return "Session " + name + " at " + (isPacked() ? pack + "!" + path.getFileName() : path.toString()); 
     }
 }
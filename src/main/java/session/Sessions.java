@@ -0,0 +1,121 @@
+package session;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import ai.speechtotext.transcription.LineTranscription;
+
+import environment.logging.Log;
+
+import session.pack.SessionPack;
+import session.pack.Vocabulary;
+
+public class Sessions {
+
+    private static final Log LOG = Log.get("sessions");
+
+    public static final String TRANSCRIPTION_FILE_NAME = "transcription.txt";
+
+    /**
+     * Present in the folder of a session while it is being recorded, which keeps it from being compacted.
+     */
+    public static final String ACTIVE_MARKER_FILE_NAME = ".active";
+
+    /**
+     * Lists the session folders and the sessions in session packs. Packs are listed from their index alone, so a
+     * year of packed sessions costs a dozen small reads instead of a directory entry per session.
+     */
+    public static List<Session> list(Path sessionsFolder) {
+        List<Path> folders = new ArrayList<>();
+        List<Path> packs = new ArrayList<>();
+        try (var paths = Files.list(sessionsFolder)) {
+            paths.forEach(path -> {
+                if (path.getFileName().toString().endsWith(SessionPack.EXTENSION)) {
+                    packs.add(path);
+                } else if (Files.isDirectory(path)) {
+                    folders.add(path);
+                }
+            });
+        } catch (IOException e) {
+            return List.of();
+        }
+
+        List<Session> sessions = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        for (var folder : folders) {
+            sessions.add(of(folder));
+            ids.add(folder.getFileName().toString());
+        }
+
+        for (var packPath : packs) {
+            try {
+                var pack = SessionPack.open(packPath);
+                for (var entry : pack.entries()) {
+                    // A folder that is still around takes precedence, it is deleted once its pack is safely written
+                    if (ids.add(entry.id())) {
+                        var folder = sessionsFolder.resolve(entry.id());
+                        sessions.add(new Session(displayName(entry.id()), folder, packPath));
+                    }
+                }
+            } catch (IOException e) {
+                LOG.error("Sessions not listed", e);
+            }
+        }
+
+        sessions.sort(Comparator.comparing(Sessions::id));
+        return sessions;
+    }
+
+    /**
+     * Lazily reads the transcription lines of a session, one line at a time, so that arbitrarily long
+     * sessions can be processed in constant memory. The returned stream must be closed.
+     *
+     * @param session the session to read
+     * @return the lines of the session, or an empty stream if the session has no transcription
+     * @throws IOException if the transcription file cannot be opened
+     */
+    public static Stream<LineTranscription> lines(Session session) throws IOException {
+        if (session.isPacked()) {
+            var pack = SessionPack.open(session.pack());
+            var entry = pack.entry(id(session));
+            if (entry == null) {
+                throw new NoSuchFileException(session.toString());
+            }
+            return pack.lines(entry, Vocabulary.of(session.pack().getParent()));
+        }
+
+        try {
+            return Files.lines(session.path().resolve(TRANSCRIPTION_FILE_NAME), StandardCharsets.UTF_8)
+                .filter(line -> !line.isBlank())
+                .map(LineTranscription::fromString);
+        } catch (NoSuchFileException _) {
+            // A session that was recorded without any transcriptions has no file
+            return Stream.empty();
+        }
+    }
+
+    public static Session of(Path sessionFolder) {
+        return new Session(displayName(sessionFolder.getFileName().toString()), sessionFolder);
+    }
+
+    public static String id(Session session) {
+        return session.path().getFileName().toString();
+    }
+
+    static String displayName(String folderName) {
+        String[] dateTime = folderName.replace("session_", "").split("_");
+        if (dateTime.length < 2) {
+            return folderName;
+        }
+        return "Date: " + dateTime[0] + " Time: " + dateTime[1].replace("-", ":");
+    }
+}
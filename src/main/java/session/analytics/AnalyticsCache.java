@@ -0,0 +1,126 @@
+package session.analytics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import environment.logging.Log;
+
+/**
+ * The {@link SessionStats} of every session, each with the modification time and size of the file it was computed
+ * from: a session's transcription, or the pack it was compacted into. Stats whose file changed are computed again. The
+ * cache is kept in the sessions folder, so the dashboard opens without reading a single transcription when nothing
+ * changed since the last time.
+ */
+public class AnalyticsCache {
+
+    private static final Log LOG = Log.get("sessions.analytics");
+
+    public static final String FILE_NAME = "analytics.cache";
+
+    private static final int MAGIC = 0x534c4131; // "SLA1"
+
+    public static record Entry(long modified, long size, SessionStats stats) {
+    }
+
+    private final Map<String, Entry> entries;
+
+    private AnalyticsCache(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static AnalyticsCache empty() {
+        return new AnalyticsCache(new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Reads the cache of {@code sessionsFolder}. A missing or unreadable cache is empty, every session is then computed
+     * again.
+     */
+    public static AnalyticsCache read(Path sessionsFolder) {
+        var cache = empty();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sessionsFolder.resolve(FILE_NAME)), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                return cache;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long modified = in.readLong();
+                long size = in.readLong();
+                String id = in.readUTF();
+                String name = in.readUTF();
+                int lines = in.readInt();
+                long words = in.readLong();
+                long spoken = in.readLong();
+                long span = in.readLong();
+                int termCount = in.readInt();
+                Map<String, Integer> terms = HashMap.newHashMap(termCount);
+                for (int t = 0; t < termCount; t++) {
+                    terms.put(in.readUTF(), in.readInt());
+                }
+                cache.entries.put(id, new Entry(modified, size, new SessionStats(id, name, lines, words, spoken, span, terms)));
+            }
+        } catch (NoSuchFileException _) {
+            // First run
+        } catch (IOException e) {
+            LOG.warn("Analytics cache not read", e);
+            return empty();
+        }
+        return cache;
+    }
+
+    /**
+     * @return the stats of session {@code id}, or null if they are missing or were computed from another version of its
+     *         file
+     */
+    public SessionStats get(String id, long modified, long size) {
+        var entry = entries.get(id);
+        return entry != null && entry.modified() == modified && entry.size() == size ? entry.stats() : null;
+    }
+
+    public void put(long modified, long size, SessionStats stats) {
+        entries.put(stats.id(), new Entry(modified, size, stats));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the cache next to the sessions, replacing the old one atomically.
+     */
+    public void write(Path sessionsFolder) throws IOException {
+        Path path = sessionsFolder.resolve(FILE_NAME);
+        Path temporary = path.resolveSibling(FILE_NAME + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (var entry : entries.values()) {
+                var stats = entry.stats();
+                out.writeLong(entry.modified());
+                out.writeLong(entry.size());
+                out.writeUTF(stats.id());
+                out.writeUTF(stats.name());
+                out.writeInt(stats.lines());
+                out.writeLong(stats.words());
+                out.writeLong(stats.spokenMillis());
+                out.writeLong(stats.spanMillis());
+                out.writeInt(stats.terms().size());
+                for (var term : stats.terms().entrySet()) {
+                    out.writeUTF(term.getKey());
+                    out.writeInt(term.getValue());
+                }
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
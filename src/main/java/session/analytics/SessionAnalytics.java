@@ -0,0 +1,223 @@
+package session.analytics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import environment.logging.Log;
+
+import session.Session;
+import session.Sessions;
+
+/**
+ * Term statistics for the teacher dashboard, over every session of a sessions folder: speaking rate and captioned
+ * share of each lesson, the vocabulary of the term and how much of it each lesson covers, and the most discussed terms.
+ * <p>
+ * Computed as a fork-join map-reduce: the session list is split until a task holds a few sessions, each session is
+ * mapped to its {@link SessionStats}, taken from the {@link AnalyticsCache} unless its file changed, and the results
+ * are merged back up the tree. Only new and changed sessions are read, so a folder of thousands of sessions that
+ * was analyzed before costs a file status per session.
+ * </p>
+ */
+public class SessionAnalytics {
+
+    private static final Log LOG = Log.get("sessions.analytics");
+
+    public static record Term(String text, long count, int lessons) {
+    }
+
+    /**
+     * @param lessons the stats of every session, in session order
+     * @param vocabularySize the number of distinct terms said in the term
+     * @param reprocessed the number of sessions that were read, the others came from the cache
+     */
+    public static record Report(List<SessionStats> lessons, long words, long spokenMillis, long spanMillis,
+        int vocabularySize, List<Term> topTerms, int reprocessed, long elapsedMillis) {
+
+        public double wordsPerMinute() {
+            return spokenMillis == 0 ? 0 : words * 60_000.0 / spokenMillis;
+        }
+
+        public double captionedFraction() {
+            return spanMillis == 0 ? 0 : Math.min(1, (double) spokenMillis / spanMillis);
+        }
+
+        /**
+         * @return the fraction of the term's vocabulary that was said in {@code lesson}
+         */
+        public double vocabularyCoverage(SessionStats lesson) {
+            return vocabularySize == 0 ? 0 : (double) lesson.terms().size() / vocabularySize;
+        }
+    }
+
+    public static final int TOP_TERMS = 30;
+
+    /** Sessions mapped by one task without splitting further. */
+    private static final int LEAF_SESSIONS = 8;
+
+    /**
+     * Analyzes every session of {@code sessionsFolder}, using and then updating its cache.
+     */
+    public static Report analyze(Path sessionsFolder) {
+        var previous = AnalyticsCache.read(sessionsFolder);
+        var next = AnalyticsCache.empty();
+        var report = analyze(Sessions.list(sessionsFolder), previous, next, Runtime.getRuntime().availableProcessors());
+        if (report.reprocessed() > 0 || next.size() != previous.size()) {
+            try {
+                next.write(sessionsFolder);
+            } catch (IOException e) {
+                LOG.warn("Analytics cache not written", e);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * @param previous stats computed before, reused when the session's file did not change
+     * @param next receives the stats of every session, for the next run; sessions that are gone are left out
+     */
+    public static Report analyze(List<Session> sessions, AnalyticsCache previous, AnalyticsCache next, int parallelism) {
+        long start = System.nanoTime();
+        Aggregate total;
+        try (var pool = new ForkJoinPool(Math.max(1, parallelism))) {
+            total = pool.invoke(new AnalyzeTask(sessions, 0, sessions.size(), previous, next));
+        }
+
+        // Ties go to the term first in alphabetical order
+        Comparator<Map.Entry<String, long[]>> byCount = Comparator.comparingLong(entry -> entry.getValue()[0]);
+        var top = new PriorityQueue<>(byCount.thenComparing(Map.Entry::getKey, Comparator.reverseOrder()));
+        for (var entry : total.terms.entrySet()) {
+            top.add(entry);
+            if (top.size() > TOP_TERMS) {
+                top.poll();
+            }
+        }
+        List<Term> topTerms = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            var entry = top.poll();
+            topTerms.addFirst(new Term(entry.getKey(), entry.getValue()[0], (int) entry.getValue()[1]));
+        }
+
+        return new Report(
+            total.lessons, total.words, total.spokenMillis, total.spanMillis, total.terms.size(), topTerms, total.reprocessed,
+            (System.nanoTime() - start) / 1_000_000
+        );
+    }
+
+    /** A merged part of the report. Terms map to their count and the number of lessons they were said in. */
+    private static final class Aggregate {
+
+        private final List<SessionStats> lessons = new ArrayList<>();
+        private Map<String, long[]> terms = new HashMap<>();
+        private long words, spokenMillis, spanMillis;
+        private int reprocessed;
+
+        void add(SessionStats stats) {
+            lessons.add(stats);
+            words += stats.words();
+            spokenMillis += stats.spokenMillis();
+            spanMillis += stats.spanMillis();
+            stats.terms().forEach((term, count) -> {
+                long[] totals = terms.computeIfAbsent(term, _ -> new long[2]);
+                totals[0] += count;
+                totals[1]++;
+            });
+        }
+
+        /**
+         * Adds {@code later}, whose lessons come after these.
+         */
+        Aggregate merge(Aggregate later) {
+            lessons.addAll(later.lessons);
+            words += later.words;
+            spokenMillis += later.spokenMillis;
+            spanMillis += later.spanMillis;
+            reprocessed += later.reprocessed;
+
+            // The smaller map is merged into the larger one
+            var into = terms.size() >= later.terms.size() ? terms : later.terms;
+            var from = into == terms ? later.terms : terms;
+            from.forEach((term, counts) -> into.merge(term, counts, (a, b) -> {
+                a[0] += b[0];
+                a[1] += b[1];
+                return a;
+            }));
+            terms = into;
+            return this;
+        }
+    }
+
+    // Never serialized, ForkJoinTask is Serializable only for compatibility
+    @SuppressWarnings("serial")
+    private static final class AnalyzeTask extends RecursiveTask<Aggregate> {
+
+        private final List<Session> sessions;
+        private final int from, to;
+        private final AnalyticsCache previous, next;
+
+        AnalyzeTask(List<Session> sessions, int from, int to, AnalyticsCache previous, AnalyticsCache next) {
+            this.sessions = sessions;
+            this.from = from;
+            this.to = to;
+            this.previous = previous;
+            this.next = next;
+        }
+
+        @Override
+        protected Aggregate compute() {
+            if (to - from <= LEAF_SESSIONS) {
+                var aggregate = new Aggregate();
+                for (int i = from; i < to; i++) {
+                    map(sessions.get(i), aggregate);
+                }
+                return aggregate;
+            }
+
+            int middle = (from + to) >>> 1;
+            var left = new AnalyzeTask(sessions, from, middle, previous, next);
+            left.fork();
+            var right = new AnalyzeTask(sessions, middle, to, previous, next).compute();
+            return left.join().merge(right);
+        }
+
+        private void map(Session session, Aggregate aggregate) {
+            // A packed session changes when its pack is written again
+            Path file = session.isPacked() ? session.pack() : session.path().resolve(Sessions.TRANSCRIPTION_FILE_NAME);
+            long modified = 0;
+            long size = 0;
+            try {
+                var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                modified = attributes.lastModifiedTime().toMillis();
+                size = attributes.size();
+            } catch (NoSuchFileException _) {
+                // A session without transcriptions
+            } catch (IOException e) {
+                LOG.warn("Session {} not checked", session, e);
+                return;
+            }
+
+            var stats = previous.get(Sessions.id(session), modified, size);
+            if (stats == null) {
+                try {
+                    stats = SessionStats.of(session);
+                    aggregate.reprocessed++;
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Skipping {} in analytics: {}", session, e);
+                    return;
+                }
+            }
+            next.put(modified, size, stats);
+            aggregate.add(stats);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package session.analytics;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import ai.speechtotext.transcription.LineTranscription;
+
+import session.Session;
+import session.Sessions;
+
+/**
+ * What one session contributes to the dashboard: its word and line counts, how long it was captioned and how long it
+ * lasted, and how often each term was said. Computed once per version of the session's transcription and kept in the
+ * {@link AnalyticsCache}.
+ *
+ * @param spokenMillis sum of the lines' durations, the time that was captioned
+ * @param spanMillis from the start of the first line to the end of the last
+ * @param terms content words, lower case, and how often each was said
+ */
+public record SessionStats(String id, String name, int lines, long words, long spokenMillis, long spanMillis, Map<String, Integer> terms) {
+
+    private static final Pattern NOT_WORD = Pattern.compile("[^\\p{L}\\p{N}']+");
+
+    /** Words too common to say anything about a lesson, in English and Filipino. */
+    private static final Set<String> STOP_WORDS = Set.of(
+        "the", "and", "for", "are", "was", "were", "this", "that", "these", "those", "with", "you", "your", "have", "has",
+        "had", "not", "but", "all", "can", "will", "what", "when", "where", "which", "who", "how", "why", "our", "they",
+        "them", "their", "there", "here", "then", "than", "its", "it's", "from", "about", "into", "just", "also", "very",
+        "okay", "yes", "now", "one", "two", "let's", "don't", "i'm", "we're", "you're", "because", "would", "could",
+        "ang", "mga", "ito", "iyan", "iyon", "yan", "yung", "siya", "niya", "nila", "natin", "namin", "ninyo", "kayo",
+        "tayo", "kami", "sila", "ako", "ikaw", "naman", "lang", "din", "rin", "kasi", "para", "nga", "hindi", "kung",
+        "may", "dito", "diyan", "doon", "ano", "sino", "saan", "bakit", "paano", "pero", "dahil", "kaya", "lahat", "ngayon",
+        "muna", "talaga", "ba", "po", "opo"
+    );
+
+    /** Terms shorter than this are left out. */
+    private static final int MIN_TERM_LENGTH = 3;
+
+    public static SessionStats of(Session session) throws IOException {
+        int lines = 0;
+        long words = 0;
+        long spoken = 0;
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        Map<String, Integer> terms = new HashMap<>();
+
+        try (var transcriptions = Sessions.lines(session)) {
+            for (var line : (Iterable<LineTranscription>) transcriptions::iterator) {
+                if (line.isMarker()) continue;
+                lines++;
+                for (String word : NOT_WORD.split(line.text().toLowerCase(Locale.ROOT))) {
+                    if (word.isEmpty()) continue;
+                    words++;
+                    if (isTerm(word)) {
+                        terms.merge(word, 1, Integer::sum);
+                    }
+                }
+
+                long start = LineTranscription.parseTimeMillis(line.startTime());
+                long end = LineTranscription.parseTimeMillis(line.endTime());
+                if (start >= 0 && end >= start) {
+                    spoken += end - start;
+                    first = Math.min(first, start);
+                    last = Math.max(last, end);
+                }
+            }
+        }
+
+        return new SessionStats(Sessions.id(session), session.name(), lines, words, spoken, last > first ? last - first : spoken, terms);
+    }
+
+    static boolean isTerm(String word) {
+        return word.length() >= MIN_TERM_LENGTH && !STOP_WORDS.contains(word) && !Character.isDigit(word.charAt(0));
+    }
+
+    /**
+     * @return words per minute of captioned speech, 0 if nothing was captioned
+     */
+    public double wordsPerMinute() {
+        return spokenMillis == 0 ? 0 : words * 60_000.0 / spokenMillis;
+    }
+
+    /**
+     * @return the fraction of the lesson that was captioned
+     */
+    public double captionedFraction() {
+        return spanMillis == 0 ? 0 : Math.min(1, (double) spokenMillis / spanMillis);
+    }
+}
@@ -0,0 +1,44 @@
+package session.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import ai.speechtotext.transcription.LineTranscription;
+
+import session.Session;
+
+/**
+ * Writes a transcript in a specific export format, one cue at a time, so that exporting never needs more than the
+ * current line in memory.
+ */
+public interface CueFormatter {
+
+    default void header(Writer writer, Session session) throws IOException {
+    }
+
+    void cue(Writer writer, Cue cue) throws IOException;
+
+    /**
+     * Writes a marker the teacher added by voice command, whose text is {@link LineTranscription#SECTION_MARKER} or
+     * {@link LineTranscription#IMPORTANT_MARKER}. Its index is that of the cue before it. Formats without a place for
+     * notes leave markers out.
+     */
+    default void marker(Writer writer, Cue cue) throws IOException {
+    }
+
+    default void footer(Writer writer, Session session, int cueCount) throws IOException {
+    }
+
+    /**
+     * A single transcription line with times relative to the start of the session.
+     */
+    public static record Cue(int index, long startMillis, long endMillis, String text) {
+    }
+
+    static String timestamp(long millis, char fractionSeparator) {
+        long hours = millis / 3_600_000;
+        long minutes = (millis / 60_000) % 60;
+        long seconds = (millis / 1000) % 60;
+        return "%02d:%02d:%02d%c%03d".formatted(hours, minutes, seconds, fractionSeparator, millis % 1000);
+    }
+}
@@ -0,0 +1,84 @@
+package session.export;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import environment.Configuration;
+
+import session.Session;
+import session.Sessions;
+
+/**
+ * Command line entry point for exporting sessions without starting the user interface.
+ * <pre>
+ * java -cp live-captioning-system.jar session.export.ExportCommand --format srt --out exports [--threads 4] [session folders...]
+ * </pre>
+ * When no session folders are given, every session under the configured sessions folder is exported.
+ */
+public class ExportCommand {
+
+    public static void main(String[] args) throws Exception {
+        ExportFormat format = ExportFormat.MARKDOWN;
+        Path outputFolder = Path.of("exports");
+        int threads = Configuration.get().getExportThreads();
+        List<Session> sessions = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--format", "-f" -> format = ExportFormat.fromName(value(args, ++i));
+                case "--out", "-o" -> outputFolder = Path.of(value(args, ++i));
+                case "--threads", "-t" -> threads = Integer.parseInt(value(args, ++i));
+                case "--help", "-h" -> {
+                    usage();
+                    return;
+                }
+                default -> {
+                    Path path = Path.of(args[i]);
+                    if (!Files.isDirectory(path)) {
+                        throw new IllegalArgumentException("Not a session folder: " + path);
+                    }
+                    sessions.add(Sessions.of(path));
+                }
+            }
+        }
+
+        if (sessions.isEmpty()) {
+            sessions = Sessions.list(Path.of(Configuration.get().getSessionsSavePath()));
+        }
+
+        long startTime = System.nanoTime();
+        var results = SessionExporter.exportAll(sessions, format, outputFolder, threads);
+        long elapsedMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+        int failures = 0;
+        for (var result : results) {
+            if (result.succeeded()) {
+                System.out.println("Exported " + result.cueCount() + " lines to " + result.output());
+            } else {
+                failures++;
+                System.err.println("Failed to export " + result.session().path() + ": " + result.error().getMessage());
+            }
+        }
+        System.out.println("Exported %d session(s) as %s in %d ms"
+            .formatted(results.size() - failures, format.displayName(), elapsedMillis));
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private static void usage() {
+        System.out.println("""
+            Usage: ExportCommand [--format srt|vtt|jsonl|md] [--out folder] [--threads n] [session folders...]
+            """);
+    }
+}
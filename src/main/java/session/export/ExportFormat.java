@@ -0,0 +1,41 @@
+package session.export;
+
+import java.util.function.Supplier;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+@Accessors(fluent = true)
+public enum ExportFormat {
+    SRT("SubRip", "srt", SrtFormatter::new),
+    WEBVTT("WebVTT", "vtt", WebVttFormatter::new),
+    JSONL("JSON Lines", "jsonl", JsonLinesFormatter::new),
+    MARKDOWN("Markdown notes", "md", MarkdownFormatter::new);
+
+    @Getter
+    private final String displayName, extension;
+
+    private final Supplier<CueFormatter> formatterFactory;
+
+    ExportFormat(String displayName, String extension, Supplier<CueFormatter> formatterFactory) {
+        this.displayName = displayName;
+        this.extension = extension;
+        this.formatterFactory = formatterFactory;
+    }
+
+    /**
+     * Formatters may keep per-transcript state, so every export gets its own instance.
+     */
+    public CueFormatter newFormatter() {
+        return formatterFactory.get();
+    }
+
+    public static ExportFormat fromName(String name) {
+        for (var format : values()) {
+            if (format.name().equalsIgnoreCase(name) || format.extension.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown export format: " + name);
+    }
+}
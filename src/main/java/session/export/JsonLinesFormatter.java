@@ -0,0 +1,40 @@
+package session.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.json.JSONObject;
+
+import ai.speechtotext.transcription.LineTranscription;
+
+public class JsonLinesFormatter implements CueFormatter {
+
+    @Override
+    public void cue(Writer writer, Cue cue) throws IOException {
+        // Written by hand to keep a stable key order, JSONObject does not preserve insertion order
+        writer.write("{\"index\":");
+        writer.write(Integer.toString(cue.index()));
+        writer.write(",\"start\":");
+        writer.write(seconds(cue.startMillis()));
+        writer.write(",\"end\":");
+        writer.write(seconds(cue.endMillis()));
+        writer.write(",\"text\":");
+        writer.write(JSONObject.quote(cue.text()));
+        writer.write("}\n");
+    }
+
+    @Override
+    public void marker(Writer writer, Cue cue) throws IOException {
+        writer.write("{\"marker\":");
+        writer.write(cue.text().equals(LineTranscription.SECTION_MARKER) ? "\"section\"" : "\"important\"");
+        writer.write(",\"after\":");
+        writer.write(Integer.toString(cue.index()));
+        writer.write(",\"time\":");
+        writer.write(seconds(cue.startMillis()));
+        writer.write("}\n");
+    }
+
+    private static String seconds(long millis) {
+        return "%d.%03d".formatted(millis / 1000, millis % 1000);
+    }
+}
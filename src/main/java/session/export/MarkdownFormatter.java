@@ -0,0 +1,58 @@
+package session.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import ai.speechtotext.transcription.LineTranscription;
+
+import session.Session;
+
+/**
+ * Formats a transcript as Markdown notes: one bullet per line, with a new section whenever the teacher started one by
+ * voice command or paused long enough to suggest a change of topic. Lines marked important are starred.
+ */
+public class MarkdownFormatter implements CueFormatter {
+
+    private static final long SECTION_GAP_MILLIS = 30_000;
+
+    private long previousEndMillis = -1;
+
+    @Override
+    public void header(Writer writer, Session session) throws IOException {
+        writer.write("# " + session.name() + "\n");
+        previousEndMillis = -1;
+    }
+
+    @Override
+    public void cue(Writer writer, Cue cue) throws IOException {
+        if (previousEndMillis < 0 || cue.startMillis() - previousEndMillis >= SECTION_GAP_MILLIS) {
+            writer.write("\n## " + CueFormatter.timestamp(cue.startMillis(), '.').substring(0, 8) + "\n\n");
+        }
+        writer.write("- ");
+        writer.write(escape(cue.text()));
+        writer.write('\n');
+        previousEndMillis = cue.endMillis();
+    }
+
+    @Override
+    public void footer(Writer writer, Session session, int cueCount) throws IOException {
+        if (cueCount == 0) {
+            writer.write("\n_No transcriptions were recorded in this session._\n");
+        }
+    }
+
+    @Override
+    public void marker(Writer writer, Cue cue) throws IOException {
+        if (cue.text().equals(LineTranscription.SECTION_MARKER)) {
+            writer.write("\n## " + CueFormatter.timestamp(cue.startMillis(), '.').substring(0, 8) + "\n\n");
+            // The next line belongs to this section rather than starting another
+            previousEndMillis = cue.startMillis();
+        } else {
+            writer.write("  - ★ _Marked important_\n");
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("*", "\\*").replace("_", "\\_").replace("#", "\\#");
+    }
+}
@@ -0,0 +1,172 @@
+package session.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ai.speechtotext.transcription.LineTranscription;
+
+import session.Session;
+import session.Sessions;
+
+/**
+ * Streams session transcripts from disk into export files. Only one line of a transcript is held in memory at a time,
+ * and several sessions can be exported concurrently.
+ */
+public class SessionExporter {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    public static record Result(Session session, Path output, int cueCount, IOException error) {
+
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Exports a single session to {@code output}. The export is written to a temporary file first, so a failed
+     * export never leaves a truncated file behind.
+     *
+     * @return the number of cues written
+     * @throws IOException if the transcript cannot be read or holds a malformed line, or the export cannot be written
+     */
+    public static int export(Session session, ExportFormat format, Path output) throws IOException {
+        Path temporary = output.resolveSibling(output.getFileName() + ".part");
+        CueFormatter formatter = format.newFormatter();
+        int[] cueCount = {0};
+
+        try (
+            var lines = Sessions.lines(session);
+            var writer = new BufferedWriter(
+                Files.newBufferedWriter(temporary, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)
+        ) {
+            formatter.header(writer, session);
+
+            var timeline = new Timeline();
+            lines.forEach(line -> {
+                try {
+                    if (line.isMarker()) {
+                        formatter.marker(writer, timeline.next(cueCount[0], line));
+                    } else {
+                        formatter.cue(writer, timeline.next(++cueCount[0], line));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            formatter.footer(writer, session, cueCount[0]);
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temporary);
+            throw e.getCause();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        } catch (IllegalArgumentException e) {
+            Files.deleteIfExists(temporary);
+            throw new IOException("Malformed transcript in " + Sessions.id(session), e);
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING);
+        return cueCount[0];
+    }
+
+    /**
+     * Exports every session into {@code outputFolder}, named after the session folder, using up to {@code threads}
+     * sessions at a time. A session that cannot be exported, for example because its transcript holds a malformed line,
+     * is reported in its {@link Result} and does not stop the others.
+     */
+    public static List<Result> exportAll(Collection<Session> sessions, ExportFormat format, Path outputFolder, int threads) 
+        throws IOException, InterruptedException {
+
+        Files.createDirectories(outputFolder);
+
+        List<Future<Result>> futures = new ArrayList<>(sessions.size());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            for (var session : sessions) {
+                Path output = outputFolder.resolve(Sessions.id(session) + "." + format.extension());
+                futures.add(executor.submit(() -> {
+                    try {
+                        return new Result(session, output, export(session, format, output), null);
+                    } catch (IOException e) {
+                        return new Result(session, output, 0, e);
+                    }
+                }));
+            }
+
+            List<Result> results = new ArrayList<>(futures.size());
+            for (var future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Export failed unexpectedly", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Turns the stored timestamps into offsets from the start of the session. File transcriptions already store
+     * offsets, live transcriptions store the time of day, which may wrap past midnight.
+     */
+    static class Timeline {
+
+        private long origin = -1;
+        private long previousEnd = 0;
+        private long dayOffset = 0;
+        private long previousAbsolute = -1;
+
+        CueFormatter.Cue next(int index, LineTranscription line) {
+            long start = absolute(LineTranscription.parseTimeMillis(line.startTime()));
+            long end = absolute(LineTranscription.parseTimeMillis(line.endTime()));
+
+            if (origin < 0) {
+                origin = isTimeOfDay(line.startTime()) || isTimeOfDay(line.endTime())
+                    ? (start >= 0 ? start : Math.max(end, 0))
+                    : 0;
+            }
+
+            long relativeStart = start >= 0 ? Math.max(start - origin, previousEnd) : previousEnd;
+            long relativeEnd = end >= 0 ? Math.max(end - origin, relativeStart) : relativeStart;
+            previousEnd = relativeEnd;
+
+            return new CueFormatter.Cue(index, relativeStart, relativeEnd, line.text());
+        }
+
+        private static boolean isTimeOfDay(String time) {
+            return time != null && time.indexOf(':') != -1;
+        }
+
+        private long absolute(long millis) {
+            if (millis < 0) {
+                return millis;
+            }
+            if (previousAbsolute >= 0 && millis + dayOffset < previousAbsolute - DAY_MILLIS / 2) {
+                dayOffset += DAY_MILLIS;
+            }
+            previousAbsolute = millis + dayOffset;
+            return previousAbsolute;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package session.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public class SrtFormatter implements CueFormatter {
+
+    @Override
+    public void cue(Writer writer, Cue cue) throws IOException {
+        writer.write(Integer.toString(cue.index()));
+        writer.write('\n');
+        writer.write(CueFormatter.timestamp(cue.startMillis(), ','));
+        writer.write(" --> ");
+        writer.write(CueFormatter.timestamp(cue.endMillis(), ','));
+        writer.write('\n');
+        writer.write(cue.text());
+        writer.write("\n\n");
+    }
+}
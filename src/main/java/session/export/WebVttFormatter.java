@@ -0,0 +1,41 @@
+package session.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import session.Session;
+
+public class WebVttFormatter implements CueFormatter {
+
+    @Override
+    public void header(Writer writer, Session session) throws IOException {
+        writer.write("WEBVTT\n\n");
+    }
+
+    @Override
+    public void cue(Writer writer, Cue cue) throws IOException {
+        writer.write(CueFormatter.timestamp(cue.startMillis(), '.'));
+        writer.write(" --> ");
+        writer.write(CueFormatter.timestamp(cue.endMillis(), '.'));
+        writer.write('\n');
+        writer.write(escape(cue.text()));
+        writer.write("\n\n");
+    }
+
+    @Override
+    public void marker(Writer writer, Cue cue) throws IOException {
+        writer.write("NOTE ");
+        writer.write(CueFormatter.timestamp(cue.startMillis(), '.'));
+        writer.write(' ');
+        writer.write(cue.text());
+        writer.write("\n\n");
+    }
+
+    /**
+     * Escapes what a cue payload would otherwise read as markup: "&" starts a character reference, "<" a tag, and
+     * "-->" is not allowed at all.
+     */
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace("-->", "--&gt;");
+    }
+}
@@ -0,0 +1,164 @@
+package session.pack;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import environment.Configuration;
+import environment.logging.Log;
+
+import session.Sessions;
+
+/**
+ * Packs closed session folders into one {@link SessionPack} per month, so that a year of classes takes a dozen files
+ * instead of thousands of folders.
+ * <p>
+ * A session folder is closed when it only holds its transcription and has not been modified for a while. Anything else
+ * in the folder, such as the marker of a session that is still being recorded, keeps it from being packed. Packs are
+ * written to a temporary file and atomically moved into place before any folder is deleted, so an interrupted
+ * compaction never loses a session; a folder that is already in its pack is simply deleted on the next run.
+ * </p>
+ */
+public class SessionCompactor {
+
+    private static final Log LOG = Log.get("sessions.compaction");
+
+    public static record Result(int packedSessions, long bytesBefore, long bytesAfter) {
+    }
+
+    private static final Pattern MONTH = Pattern.compile("session_(\\d{4}-\\d{2})-.*");
+
+    public static Result compact(Path sessionsFolder, Duration minimumAge) throws IOException {
+        Instant cutoff = Instant.now().minus(minimumAge);
+
+        Map<Path, List<Path>> foldersByPack = new TreeMap<>();
+        try (var paths = Files.list(sessionsFolder)) {
+            for (var folder : paths.filter(Files::isDirectory).sorted().toList()) {
+                if (isClosed(folder, cutoff)) {
+                    foldersByPack.computeIfAbsent(packFor(sessionsFolder, folder), _ -> new ArrayList<>()).add(folder);
+                }
+            }
+        }
+
+        if (foldersByPack.isEmpty()) {
+            return new Result(0, 0, 0);
+        }
+
+        var vocabulary = Vocabulary.of(sessionsFolder);
+        int packed = 0;
+        long bytesBefore = 0;
+        long bytesAfter = 0;
+
+        for (var group : foldersByPack.entrySet()) {
+            Path packPath = group.getKey();
+            SessionPack existing = Files.exists(packPath) ? SessionPack.open(packPath) : null;
+
+            List<SessionPack.PendingEntry> pending = new ArrayList<>();
+            if (existing != null) {
+                existing.entries().forEach(entry -> pending.add(SessionPack.PendingEntry.copy(existing, entry)));
+                bytesBefore += Files.size(packPath);
+            }
+
+            List<Path> folders = new ArrayList<>();
+            for (var folder : group.getValue()) {
+                Path transcription = folder.resolve(Sessions.TRANSCRIPTION_FILE_NAME);
+                long size = Files.exists(transcription) ? Files.size(transcription) : 0;
+                bytesBefore += size;
+                folders.add(folder);
+
+                String id = folder.getFileName().toString();
+                if (existing != null && existing.entry(id) != null) {
+                    // Packed by an earlier run that stopped before deleting the folder
+                    continue;
+                }
+
+                int[] lineCount = new int[1];
+                byte[] data;
+                try (var lines = Sessions.lines(Sessions.of(folder))) {
+                    data = SessionPack.encode(lines, vocabulary, lineCount);
+                }
+                long lastModified = Files.getLastModifiedTime(folder).toMillis();
+                pending.add(SessionPack.PendingEntry.encoded(id, lineCount[0], size, lastModified, data));
+                packed++;
+            }
+
+            // Token IDs must be durable before a pack refers to them
+            vocabulary.save();
+            SessionPack.write(packPath, pending);
+            bytesAfter += Files.size(packPath);
+
+            for (var folder : folders) {
+                Files.deleteIfExists(folder.resolve(Sessions.TRANSCRIPTION_FILE_NAME));
+                Files.delete(folder);
+            }
+        }
+
+        return new Result(packed, bytesBefore, bytesAfter);
+    }
+
+    /**
+     * Compacts the configured sessions folder on a low priority daemon thread every {@code interval}, packing sessions
+     * that have been closed for at least {@code minimumAge}. The folder is looked up on every run, so a changed sessions
+     * path applies from the next run.
+     */
+    public static ScheduledExecutorService startBackground(Duration interval, Duration minimumAge) {
+        var executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "session-compactor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                Path sessionsFolder = Path.of(Configuration.get().getSessionsSavePath());
+                if (Files.isDirectory(sessionsFolder)) {
+                    compact(sessionsFolder, minimumAge);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Keep the schedule alive, the next run retries
+                LOG.error("Compaction failed", e);
+            }
+        }, 1, interval.toMinutes(), TimeUnit.MINUTES);
+
+        return executor;
+    }
+
+    private static boolean isClosed(Path folder, Instant cutoff) throws IOException {
+        try (var files = Files.list(folder)) {
+            for (var file : files.toList()) {
+                if (!file.getFileName().toString().equals(Sessions.TRANSCRIPTION_FILE_NAME)
+                    || Files.getLastModifiedTime(file).toInstant().isAfter(cutoff)) {
+                    return false;
+                }
+            }
+        }
+        return Files.getLastModifiedTime(folder).toInstant().isBefore(cutoff);
+    }
+
+    private static Path packFor(Path sessionsFolder, Path folder) {
+        var matcher = MONTH.matcher(folder.getFileName().toString());
+        String name = matcher.matches() ? "sessions-" + matcher.group(1) : "sessions-other";
+        return sessionsFolder.resolve(name + SessionPack.EXTENSION);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path sessionsFolder = Path.of(args.length > 0 ? args[0] : Configuration.get().getSessionsSavePath());
+        Duration minimumAge = Duration.ofMinutes(args.length > 1 ? Long.parseLong(args[1]) : 60);
+
+        long start = System.nanoTime();
+        var result = compact(sessionsFolder, minimumAge);
+        System.out.printf("Packed %d session(s): %d bytes -> %d bytes in %d ms%n",
+            result.packedSessions(), result.bytesBefore(), result.bytesAfter(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,285 @@
+package session.pack;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ai.speechtotext.transcription.LineTranscription;
+
+/**
+ * An archive holding the transcripts of many closed sessions in a single file.
+ * <p>
+ * Layout:
+ * <pre>
+ * "SLPK" version
+ * entry*            per line: start time, end time, token count, token IDs
+ * index             entry count, then per entry: session id, offset, length, line count, source size, last modified
+ * index offset (8 bytes) "SLPK"
+ * </pre>
+ * Strings are a varint length followed by UTF-8, all other numbers are varints. Line texts are split on spaces and
+ * stored as token IDs of the shared {@link Vocabulary}. The index at the end lets sessions be listed by reading only the
+ * tail of the file.
+ * </p>
+ */
+public class SessionPack {
+
+    public static final String EXTENSION = ".pack";
+
+    private static final byte[] MAGIC = {'S', 'L', 'P', 'K'};
+    private static final int VERSION = 1;
+    private static final int FOOTER_SIZE = Long.BYTES + MAGIC.length;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    public static record Entry(String id, long offset, long length, int lineCount, long sourceSize, long lastModified) {
+    }
+
+    private final Path path;
+    private final List<Entry> entries;
+
+    private SessionPack(Path path, List<Entry> entries) {
+        this.path = path;
+        this.entries = entries;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    public Entry entry(String id) {
+        for (var entry : entries) {
+            if (entry.id().equals(id)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads only the index of a pack.
+     */
+    public static SessionPack open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAGIC.length + 1 + FOOTER_SIZE) {
+                throw new IOException("Not a session pack: " + path);
+            }
+
+            var footer = ByteBuffer.allocate(FOOTER_SIZE);
+            channel.read(footer, size - FOOTER_SIZE);
+            footer.flip();
+            long indexOffset = footer.getLong();
+            checkMagic(footer.slice(), path);
+
+            var index = ByteBuffer.allocate((int) (size - FOOTER_SIZE - indexOffset));
+            while (index.hasRemaining() && channel.read(index, indexOffset + index.position()) > 0);
+
+            var in = new ByteArrayInputStream(index.array());
+            int count = Varints.readInt(in);
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new Entry(
+                    Varints.readString(in),
+                    Varints.read(in),
+                    Varints.read(in),
+                    Varints.readInt(in),
+                    Varints.read(in),
+                    Varints.read(in)
+                ));
+            }
+            return new SessionPack(path, List.copyOf(entries));
+        }
+    }
+
+    private static void checkMagic(ByteBuffer buffer, Path path) throws IOException {
+        for (byte b : MAGIC) {
+            if (!buffer.hasRemaining() || buffer.get() != b) {
+                throw new IOException("Not a session pack: " + path);
+            }
+        }
+    }
+
+    /**
+     * Lazily decodes the lines of a packed session. The returned stream must be closed.
+     */
+    public Stream<LineTranscription> lines(Entry entry, Vocabulary vocabulary) throws IOException {
+        var channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            channel.position(entry.offset());
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), READ_BUFFER_SIZE);
+
+            Iterator<LineTranscription> iterator = new Iterator<>() {
+                private int remaining = entry.lineCount();
+
+                @Override
+                public boolean hasNext() {
+                    return remaining > 0;
+                }
+
+                @Override
+                public LineTranscription next() {
+                    if (remaining-- <= 0) {
+                        throw new NoSuchElementException();
+                    }
+                    try {
+                        return readLine(in, vocabulary);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+
+            return StreamSupport.stream(
+                Spliterators.spliterator(iterator, entry.lineCount(), Spliterator.ORDERED | Spliterator.NONNULL), false
+            ).onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static LineTranscription readLine(InputStream in, Vocabulary vocabulary) throws IOException {
+        String startTime = Varints.readString(in);
+        String endTime = Varints.readString(in);
+        int tokenCount = Varints.readInt(in);
+
+        var text = new StringBuilder();
+        for (int i = 0; i < tokenCount; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(vocabulary.token(Varints.readInt(in)));
+        }
+        return new LineTranscription(text.toString(), startTime, endTime);
+    }
+
+    /**
+     * Encodes one session's lines as a pack entry.
+     */
+    static byte[] encode(Stream<LineTranscription> lines, Vocabulary vocabulary, int[] lineCount) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try {
+            lines.forEach(line -> {
+                try {
+                    Varints.writeString(out, line.startTime());
+                    Varints.writeString(out, line.endTime());
+                    // Splitting on single spaces keeps repeated spaces as empty tokens, so decoding is lossless
+                    String[] tokens = line.text().split(" ", -1);
+                    Varints.write(out, tokens.length);
+                    for (String token : tokens) {
+                        Varints.write(out, vocabulary.id(token));
+                    }
+                    lineCount[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A session to write into a pack, either copied as is from an existing pack or freshly encoded.
+     */
+    static record PendingEntry(String id, int lineCount, long sourceSize, long lastModified, Path sourcePack, long sourceOffset, long length, byte[] data) {
+
+        static PendingEntry copy(SessionPack pack, Entry entry) {
+            return new PendingEntry(
+                entry.id(), entry.lineCount(), entry.sourceSize(), entry.lastModified(), pack.path(), entry.offset(), entry.length(), null
+            );
+        }
+
+        static PendingEntry encoded(String id, int lineCount, long sourceSize, long lastModified, byte[] data) {
+            return new PendingEntry(id, lineCount, sourceSize, lastModified, null, 0, data.length, data);
+        }
+    }
+
+    /**
+     * Writes a new pack to {@code path}, atomically replacing any existing file. Entries copied from an existing pack
+     * are transferred without being decoded.
+     */
+    static SessionPack write(Path path, List<PendingEntry> pending) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        List<Entry> entries = new ArrayList<>(pending.size());
+
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            var header = ByteBuffer.allocate(MAGIC.length + 1).put(MAGIC).put((byte) VERSION).flip();
+            while (header.hasRemaining()) channel.write(header);
+
+            for (var entry : pending) {
+                long offset = channel.position();
+                if (entry.data() != null) {
+                    var data = ByteBuffer.wrap(entry.data());
+                    while (data.hasRemaining()) channel.write(data);
+                } else {
+                    try (var source = FileChannel.open(entry.sourcePack(), StandardOpenOption.READ)) {
+                        long copied = 0;
+                        while (copied < entry.length()) {
+                            copied += source.transferTo(entry.sourceOffset() + copied, entry.length() - copied, channel);
+                        }
+                    }
+                }
+                entries.add(new Entry(entry.id(), offset, entry.length(), entry.lineCount(), entry.sourceSize(), entry.lastModified()));
+            }
+
+            long indexOffset = channel.position();
+            var index = new ByteArrayOutputStream();
+            Varints.write(index, entries.size());
+            for (var entry : entries) {
+                Varints.writeString(index, entry.id());
+                Varints.write(index, entry.offset());
+                Varints.write(index, entry.length());
+                Varints.write(index, entry.lineCount());
+                Varints.write(index, entry.sourceSize());
+                Varints.write(index, entry.lastModified());
+            }
+
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            var data = new DataOutputStream(out);
+            index.writeTo(data);
+            data.writeLong(indexOffset);
+            data.write(MAGIC);
+            data.flush();
+
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new SessionPack(path, List.copyOf(entries));
+    }
+}
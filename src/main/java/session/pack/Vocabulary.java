@@ -0,0 +1,129 @@
+package session.pack;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The token dictionary shared by all session packs of a sessions folder. Tokens are stored one per line, and the ID of
+ * a token is its line number, so the file is only ever appended to and IDs already written to packs stay valid.
+ */
+public class Vocabulary {
+
+    public static final String FILE_NAME = "vocabulary.dict";
+
+    private static final Map<Path, Vocabulary> cache = new HashMap<>();
+
+    private final Path path;
+    private final List<String> tokens = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /** Tokens added since the last {@link #save()}. */
+    private int savedCount;
+    private long loadedSize;
+
+    private Vocabulary(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * @return the vocabulary of {@code sessionsFolder}, reloaded if the file changed since it was last read
+     */
+    public static synchronized Vocabulary of(Path sessionsFolder) throws IOException {
+        Path path = sessionsFolder.resolve(FILE_NAME).toAbsolutePath();
+        var vocabulary = cache.get(path);
+        long size = Files.exists(path) ? Files.size(path) : 0;
+        if (vocabulary == null || vocabulary.loadedSize != size) {
+            vocabulary = new Vocabulary(path);
+            vocabulary.load();
+            cache.put(path, vocabulary);
+        }
+        return vocabulary;
+    }
+
+    private void load() throws IOException {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (NoSuchFileException _) {
+            content = new byte[0];
+        }
+
+        // Only '\n' separates tokens; a torn last line from an interrupted append is ignored
+        int start = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n') {
+                add(new String(content, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        savedCount = tokens.size();
+        loadedSize = start;
+    }
+
+    public synchronized String token(int id) {
+        if (id < 0 || id >= tokens.size()) {
+            throw new IllegalArgumentException("Unknown token ID " + id + " in " + path);
+        }
+        return tokens.get(id);
+    }
+
+    public synchronized int size() {
+        return tokens.size();
+    }
+
+    /**
+     * @return the ID of {@code token}, adding it to the vocabulary if it is new
+     */
+    public synchronized int id(String token) {
+        Integer id = ids.get(token);
+        return id != null ? id : add(token);
+    }
+
+    private int add(String token) {
+        int id = tokens.size();
+        tokens.add(token);
+        ids.putIfAbsent(token, id);
+        return id;
+    }
+
+    /**
+     * Appends the tokens added since the last save and forces them to disk. Packs must only be written after the
+     * tokens they use have been saved.
+     */
+    public synchronized void save() throws IOException {
+        if (savedCount == tokens.size()) {
+            return;
+        }
+
+        try (
+            var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            OutputStream out = Channels.newOutputStream(channel)
+        ) {
+            // Drop a torn line left by an interrupted save before appending
+            channel.truncate(loadedSize);
+            channel.position(loadedSize);
+
+            var pending = new StringBuilder();
+            for (int i = savedCount; i < tokens.size(); i++) {
+                pending.append(tokens.get(i)).append('\n');
+            }
+            byte[] bytes = pending.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(bytes);
+            channel.force(true);
+
+            loadedSize += bytes.length;
+        }
+        savedCount = tokens.size();
+    }
+}
@@ -0,0 +1,335 @@
+package session.sync;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import environment.logging.Log;
+
+import session.analytics.AnalyticsCache;
+import session.pack.SessionPack;
+
+/**
+ * Copies a sessions folder to another folder, such as a file server share or a USB drive, so that students can review
+ * the sessions at home. Only what changed since the last sync to that folder is copied, as recorded in its
+ * {@link SyncManifest}:
+ * <ul>
+ * <li>A file whose size and modification time match the manifest is skipped without being read.</li>
+ * <li>A file that grew, such as the transcription of a session still being recorded, is hashed up to the size it had;
+ * if that matches the manifest, only the new tail is appended to the copy.</li>
+ * <li>Any other file is copied whole, to a temporary file next to the copy that is then atomically renamed over it, so
+ * an interrupted sync never leaves a truncated file.</li>
+ * <li>A file that was synced before and is gone from the sessions folder, such as a session folder that was compacted
+ * into its pack, is deleted from the copy. Files the manifest does not know are left alone.</li>
+ * </ul>
+ * Files are copied in parallel through {@link FileChannel}s. An interrupted append is found on the next sync because
+ * the copy's size no longer matches the manifest, and the file is then copied whole.
+ * <p>
+ * The app keeps working while a sync runs. A file that disappears after it was listed, such as a session folder that
+ * is being compacted, is treated as gone. A pack that is rewritten after it was listed is skipped and left for the next
+ * sync, so its copy is never a mix of the old and the new pack.
+ * </p>
+ */
+public class SessionSync {
+
+    private static final Log LOG = Log.get("sessions.sync");
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Suffix of the temporary file a copy is written to before it is renamed into place. */
+    static final String PART_SUFFIX = ".sync-part";
+
+    private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    public static enum Action {
+        UNCHANGED, COPIED, APPENDED, DELETED, SKIPPED, FAILED
+    }
+
+    public static record Transfer(String path, Action action, long bytes, IOException error) {
+    }
+
+    public static record Report(int files, int unchanged, int copied, int appended, int deleted, int skipped,
+        List<Transfer> failures, long bytes, long elapsedNanos) {
+
+        public boolean succeeded() {
+            return failures.isEmpty();
+        }
+
+        public double megabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes / 1048576.0 / (elapsedNanos / 1e9);
+        }
+    }
+
+    /**
+     * Brings {@code target} up to date with {@code source}, copying up to {@code threads} files at a time. Files that
+     * fail are reported and left for the next sync, the others are still synced.
+     */
+    public static Report sync(Path source, Path target, int threads) throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
+        source = source.toAbsolutePath().normalize();
+        target = target.toAbsolutePath().normalize();
+        if (target.startsWith(source) || source.startsWith(target)) {
+            throw new IllegalArgumentException("Cannot sync " + source + " to " + target + ", one is inside the other");
+        }
+        Files.createDirectories(target);
+
+        var manifest = SyncManifest.read(target);
+        Set<String> present = new HashSet<>();
+        Set<String> vanished = ConcurrentHashMap.newKeySet();
+        List<Transfer> transfers = new ArrayList<>();
+        List<Future<Transfer>> futures = new ArrayList<>();
+
+        Path from = source;
+        Path to = target;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<>() {
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".tmp") || name.endsWith(".part") || name.equals(AnalyticsCache.FILE_NAME)) {
+                        // Written and renamed by the app, or rebuilt from the sessions wherever they are
+                        return FileVisitResult.CONTINUE;
+                    }
+                    if (!attributes.isRegularFile()) return FileVisitResult.CONTINUE;
+
+                    String path = from.relativize(file).toString().replace(File.separatorChar, '/');
+                    present.add(path);
+                    Path copy = to.resolve(path);
+                    long size = attributes.size();
+                    long modified = attributes.lastModifiedTime().toMillis();
+
+                    var entry = manifest.get(path);
+                    if (entry != null && entry.size() == size && entry.modified() == modified && sizeOf(copy) == size) {
+                        transfers.add(new Transfer(path, Action.UNCHANGED, 0, null));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    futures.add(executor.submit(() -> {
+                        try {
+                            return transfer(path, file, copy, size, modified, entry, manifest);
+                        } catch (NoSuchFileException _) {
+                            // Gone since it was listed, so it is deleted from the copy like any other file that is gone
+                            vanished.add(path);
+                            return null;
+                        } catch (IOException e) {
+                            LOG.warn("{} not synced", path, e);
+                            return new Transfer(path, Action.FAILED, 0, e);
+                        }
+                    }));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                    if (e instanceof NoSuchFileException) {
+                        // Moved or deleted by the app since its folder was listed
+                        return FileVisitResult.CONTINUE;
+                    }
+                    throw e;
+                }
+            });
+
+            for (var future : futures) {
+                try {
+                    var transfer = future.get();
+                    if (transfer != null) {
+                        transfers.add(transfer);
+                    }
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Sync failed unexpectedly", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        present.removeAll(vanished);
+
+        // Only after copying, so a session folder is deleted once the pack it went into is there
+        for (var path : manifest.paths()) {
+            if (present.contains(path)) continue;
+            try {
+                Path copy = target.resolve(path);
+                Files.deleteIfExists(copy);
+                deleteEmptyFolders(copy.getParent(), target);
+                manifest.remove(path);
+                transfers.add(new Transfer(path, Action.DELETED, 0, null));
+            } catch (IOException e) {
+                LOG.warn("{} not deleted from the copy", path, e);
+                transfers.add(new Transfer(path, Action.FAILED, 0, e));
+            }
+        }
+
+        manifest.write(target);
+
+        int[] counts = new int[Action.values().length];
+        long bytes = 0;
+        List<Transfer> failures = new ArrayList<>();
+        for (var transfer : transfers) {
+            counts[transfer.action().ordinal()]++;
+            bytes += transfer.bytes();
+            if (transfer.action() == Action.FAILED) {
+                failures.add(transfer);
+            }
+        }
+        return new Report(present.size(), counts[Action.UNCHANGED.ordinal()], counts[Action.COPIED.ordinal()],
+            counts[Action.APPENDED.ordinal()], counts[Action.DELETED.ordinal()], counts[Action.SKIPPED.ordinal()], failures, bytes,
+            System.nanoTime() - startTime);
+    }
+
+    /**
+     * Syncs one file that is new or changed according to the manifest, and records the result in it.
+     */
+    private static Transfer transfer(String path, Path file, Path copy, long size, long modified, SyncManifest.Entry entry,
+        SyncManifest manifest) throws IOException {
+
+        var digest = sha256();
+        try (var in = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (file.getFileName().toString().endsWith(SessionPack.EXTENSION)
+                && Files.getLastModifiedTime(file).toMillis() != modified) {
+                // Compaction replaced the pack since it was listed, and what is open may be the new one
+                LOG.info("{} was rewritten while syncing, it is synced next time", path);
+                return new Transfer(path, Action.SKIPPED, 0, null);
+            }
+            if (entry != null && size >= entry.size() && sizeOf(copy) == entry.size()) {
+                // The copy is as the last sync left it; find out whether the file only grew since
+                transfer(in, 0, entry.size(), null, digest);
+                if (Arrays.equals(snapshot(digest), entry.hash())) {
+                    if (size == entry.size()) {
+                        // Only touched
+                        manifest.put(path, new SyncManifest.Entry(size, modified, entry.hash()));
+                        return new Transfer(path, Action.UNCHANGED, 0, null);
+                    }
+                    append(in, copy, entry.size(), size, digest);
+                    Files.setLastModifiedTime(copy, FileTime.fromMillis(modified));
+                    manifest.put(path, new SyncManifest.Entry(size, modified, digest.digest()));
+                    return new Transfer(path, Action.APPENDED, size - entry.size(), null);
+                }
+                digest.reset();
+            }
+
+            copy(in, copy, size, modified, digest);
+            manifest.put(path, new SyncManifest.Entry(size, modified, digest.digest()));
+            return new Transfer(path, Action.COPIED, size, null);
+        }
+    }
+
+    private static void copy(FileChannel in, Path copy, long size, long modified, MessageDigest digest) throws IOException {
+        Files.createDirectories(copy.getParent());
+        Path temporary = copy.resolveSibling(copy.getFileName() + PART_SUFFIX);
+        try (var out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            transfer(in, 0, size, out, digest);
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.setLastModifiedTime(temporary, FileTime.fromMillis(modified));
+        Files.move(temporary, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void append(FileChannel in, Path copy, long from, long to, MessageDigest digest) throws IOException {
+        try (var out = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+            try {
+                transfer(in, from, to, out, digest);
+                out.force(true);
+            } catch (IOException e) {
+                // Leave the copy as the manifest describes it, if the target still allows it
+                out.truncate(from);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Reads bytes {@code from} to {@code to} of {@code in} into {@code digest}, and writes them at the same position of
+     * {@code out} unless it is null. Only those bytes are read, so a file that keeps growing is copied as it was.
+     */
+    private static void transfer(FileChannel in, long from, long to, FileChannel out, MessageDigest digest) throws IOException {
+        var buffer = buffers.get();
+        long position = from;
+        while (position < to) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), to - position));
+            int read = in.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("File shrank while it was synced");
+            }
+            buffer.flip();
+            digest.update(buffer.duplicate());
+            if (out != null) {
+                long written = position;
+                while (buffer.hasRemaining()) {
+                    written += out.write(buffer, written);
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * @return the size of {@code file}, or -1 if it does not exist
+     */
+    private static long sizeOf(Path file) throws IOException {
+        try {
+            return Files.size(file);
+        } catch (NoSuchFileException _) {
+            return -1;
+        }
+    }
+
+    private static void deleteEmptyFolders(Path folder, Path root) throws IOException {
+        while (folder != null && folder.startsWith(root) && !folder.equals(root)) {
+            try {
+                Files.deleteIfExists(folder);
+            } catch (DirectoryNotEmptyException _) {
+                return;
+            }
+            folder = folder.getParent();
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java runtime", e);
+        }
+    }
+
+    /**
+     * @return the hash of what {@code digest} has been given so far, leaving it to take more
+     */
+    private static byte[] snapshot(MessageDigest digest) {
+        try {
+            return ((MessageDigest) digest.clone()).digest();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 digests can be cloned", e);
+        }
+    }
+}
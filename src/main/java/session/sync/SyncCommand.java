@@ -0,0 +1,76 @@
+package session.sync;
+
+import java.nio.file.Path;
+
+import environment.Configuration;
+
+/**
+ * Command line entry point for syncing the sessions to a shared folder or USB drive, for example from a scheduled task
+ * at the end of the school day.
+ * <pre>
+ * java -cp live-captioning-system.jar session.sync.SyncCommand [--to /media/usb/sightline] [--from sessions]
+ *     [--threads 4] [--verbose]
+ * </pre>
+ * Without {@code --to} the configured sync folder is used, without {@code --from} the configured sessions folder.
+ * Exits with status 1 if any file could not be synced. It is safe to run while the app records or compacts sessions: a
+ * pack that compaction rewrites during the sync is skipped and synced the next time, never copied half old, half new.
+ */
+public class SyncCommand {
+
+    public static void main(String[] args) throws Exception {
+        var configuration = Configuration.get();
+        Path source = Path.of(configuration.getSessionsSavePath());
+        Path target = configuration.getSyncPath().isBlank() ? null : Path.of(configuration.getSyncPath());
+        int threads = configuration.getSyncThreads();
+        boolean verbose = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--to", "-o" -> target = Path.of(value(args, ++i));
+                case "--from", "-i" -> source = Path.of(value(args, ++i));
+                case "--threads", "-t" -> threads = Integer.parseInt(value(args, ++i));
+                case "--verbose", "-v" -> verbose = true;
+                case "--help", "-h" -> {
+                    usage();
+                    return;
+                }
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (target == null) {
+            usage();
+            System.exit(2);
+        }
+
+        var report = SessionSync.sync(source, target, threads);
+
+        if (verbose) {
+            System.out.printf("%d unchanged, %d copied, %d appended, %d deleted, %d skipped%n",
+                report.unchanged(), report.copied(), report.appended(), report.deleted(), report.skipped());
+        }
+        for (var failure : report.failures()) {
+            System.err.println("Failed to sync " + failure.path() + ": " + failure.error().getMessage());
+        }
+        System.out.println("Synced %d file(s) to %s: %d copied, %d appended, %.1f MB in %d ms (%.1f MB/s)".formatted(
+            report.files(), target, report.copied(), report.appended(), report.bytes() / 1048576.0,
+            report.elapsedNanos() / 1_000_000, report.megabytesPerSecond()));
+
+        if (!report.succeeded()) {
+            System.exit(1);
+        }
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private static void usage() {
+        System.out.println("""
+            Usage: SyncCommand [--to folder] [--from sessions folder] [--threads n] [--verbose]
+            """);
+    }
+}
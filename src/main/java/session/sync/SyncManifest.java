@@ -0,0 +1,111 @@
+package session.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import environment.logging.Log;
+
+/**
+ * What the last sync copied to a target folder: for every file, by its path relative to the sessions folder, the size
+ * and modification time of the source when it was copied and the SHA-256 hash of the bytes copied. The manifest is
+ * kept in the target folder, so every drive or share the sessions are synced to knows what it holds.
+ */
+public class SyncManifest {
+
+    private static final Log LOG = Log.get("sessions.sync");
+
+    public static final String FILE_NAME = ".sync-manifest";
+
+    private static final int MAGIC = 0x534c5331; // "SLS1"
+
+    public static record Entry(long size, long modified, byte[] hash) {
+    }
+
+    private final Map<String, Entry> entries;
+
+    private SyncManifest(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static SyncManifest empty() {
+        return new SyncManifest(new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Reads the manifest of {@code target}. A missing or unreadable manifest is empty, every file is then compared
+     * and copied again.
+     */
+    public static SyncManifest read(Path target) {
+        var manifest = empty();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(target.resolve(FILE_NAME)), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                return manifest;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                manifest.entries.put(path, new Entry(size, modified, hash));
+            }
+        } catch (NoSuchFileException _) {
+            // First sync to this target
+        } catch (IOException e) {
+            LOG.warn("Sync manifest not read, every file is compared again", e);
+            return empty();
+        }
+        return manifest;
+    }
+
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    public void put(String path, Entry entry) {
+        entries.put(path, entry);
+    }
+
+    public void remove(String path) {
+        entries.remove(path);
+    }
+
+    public Set<String> paths() {
+        return Set.copyOf(entries.keySet());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the manifest to {@code target}, replacing the old one atomically.
+     */
+    public void write(Path target) throws IOException {
+        Path path = target.resolve(FILE_NAME);
+        Path temporary = path.resolveSibling(FILE_NAME + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (var entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().size());
+                out.writeLong(entry.getValue().modified());
+                out.writeByte(entry.getValue().hash().length);
+                out.write(entry.getValue().hash());
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
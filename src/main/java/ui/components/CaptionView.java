@@ -0,0 +1,384 @@
+package ui.components;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Insets;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontSmoothingType;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+import lombok.Getter;
+
+/**
+ * Shows captions on a {@link Canvas}. Unlike a {@code TextArea}, which lays out and redraws all of its text whenever a
+ * line is added or it scrolls, this view wraps every line once and keeps the result: appending a line lays out only
+ * that line, changing the last line lays out only the last line, and scrolling lays out nothing. Only the rows that
+ * are on screen are drawn, at most once per frame.
+ * <p>
+ * Wrapping measures every word as a whole run of text, so kerning is counted, and caches the widths per font. Scrolling
+ * is animated and counted in rows from the bottom; at 0 the view follows new lines, scrolled up it stays where it is.
+ * </p>
+ * <p>
+ * Created with {@link #create()}, also from FXML with {@code fx:factory="create"}.
+ * </p>
+ */
+public class CaptionView extends Region {
+
+    /** Fraction of the remaining distance scrolled per frame. */
+    private static final double SCROLL_EASING = 0.25;
+
+    /** A line of captions and its wrapped rows, valid for {@link #layoutWidth}. */
+    private static final class Line {
+
+        private String text;
+        private List<String> rows;
+
+        Line(String text) {
+            this.text = text;
+        }
+    }
+
+    private final Canvas canvas = new Canvas();
+    private final ArrayDeque<Line> lines = new ArrayDeque<>();
+
+    @Getter
+    private Font font = Font.getDefault();
+
+    @Getter
+    private Paint textFill = Color.BLACK;
+
+    @Getter
+    private Paint backgroundFill = Color.WHITE;
+
+    private RunWidths widths = new RunWidths(font);
+    private double lineHeight = widths.lineHeight();
+
+    /** Width the rows of every line were wrapped to, NaN before the first layout. */
+    private double layoutWidth = Double.NaN;
+    private int totalRows;
+
+    /** Rows scrolled up from the bottom, as shown and as headed for. */
+    private double scroll, targetScroll;
+
+    private boolean dirty;
+
+    private final AnimationTimer painter = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            boolean scrolling = Math.abs(targetScroll - scroll) > 0.01;
+            scroll = scrolling ? scroll + (targetScroll - scroll) * SCROLL_EASING : targetScroll;
+            if (dirty || scrolling) {
+                paint();
+                dirty = false;
+            }
+            if (!scrolling) {
+                stop();
+            }
+        }
+    };
+
+    private CaptionView() {
+        getStyleClass().add("caption-view");
+        getChildren().add(canvas);
+    }
+
+    public static CaptionView create() {
+        var view = new CaptionView();
+        view.setOnScroll(event -> view.scrollBy(-event.getDeltaY() / view.lineHeight));
+        return view;
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    /**
+     * Adds a line below the others. Only the new line is laid out.
+     */
+    public void appendLine(String text) {
+        var line = new Line(text);
+        lines.addLast(line);
+        totalRows += layout(line);
+        if (targetScroll > 0) {
+            // Scrolled up: keep the same rows on screen
+            targetScroll += line.rows.size();
+            scroll += line.rows.size();
+        }
+        requestPaint();
+    }
+
+    /**
+     * Adds {@code text} to the end of the last line, or starts a line if there is none.
+     */
+    public void appendToLastLine(String text) {
+        var line = lines.peekLast();
+        if (line == null) {
+            appendLine(text);
+            return;
+        }
+        int before = line.rows == null ? 0 : line.rows.size();
+        line.text += text;
+        int after = layout(line);
+        totalRows += after - before;
+        if (targetScroll > 0) {
+            targetScroll += after - before;
+            scroll += after - before;
+        }
+        requestPaint();
+    }
+
+    /**
+     * Drops the oldest lines beyond {@code maxLines}.
+     */
+    public void trimTo(int maxLines) {
+        boolean trimmed = false;
+        while (lines.size() > maxLines) {
+            var line = lines.removeFirst();
+            totalRows -= line.rows == null ? 0 : line.rows.size();
+            trimmed = true;
+        }
+        if (trimmed) {
+            targetScroll = Math.min(targetScroll, maxScroll());
+            scroll = Math.min(scroll, maxScroll());
+            requestPaint();
+        }
+    }
+
+    public void clear() {
+        lines.clear();
+        totalRows = 0;
+        scroll = targetScroll = 0;
+        requestPaint();
+    }
+
+    /**
+     * Scrolls by {@code rows}, negative towards older lines, animated.
+     */
+    public void scrollBy(double rows) {
+        targetScroll = Math.clamp(targetScroll - rows, 0, maxScroll());
+        requestPaint();
+    }
+
+    public void scrollToEnd() {
+        targetScroll = 0;
+        requestPaint();
+    }
+
+    /**
+     * Sets the font, which lays out every line again if it changed.
+     */
+    public void setFont(Font font) {
+        if (font.equals(this.font)) return;
+        this.font = font;
+        widths = new RunWidths(font);
+        lineHeight = widths.lineHeight();
+        relayout();
+    }
+
+    public void setTextFill(Paint textFill) {
+        this.textFill = textFill;
+        requestPaint();
+    }
+
+    public void setBackgroundFill(Paint backgroundFill) {
+        this.backgroundFill = backgroundFill;
+        requestPaint();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        Insets insets = getInsets();
+        double width = Math.max(0, getWidth() - insets.getLeft() - insets.getRight());
+        double height = Math.max(0, getHeight() - insets.getTop() - insets.getBottom());
+        canvas.relocate(insets.getLeft(), insets.getTop());
+
+        if (canvas.getWidth() != width || canvas.getHeight() != height) {
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            if (width != layoutWidth) {
+                layoutWidth = width;
+                relayout();
+            }
+            requestPaint();
+        }
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return 400;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return 3 * lineHeight;
+    }
+
+    private double maxScroll() {
+        return Math.max(0, totalRows - Math.floor(canvas.getHeight() / lineHeight));
+    }
+
+    private void relayout() {
+        totalRows = 0;
+        for (var line : lines) {
+            totalRows += layout(line);
+        }
+        targetScroll = Math.min(targetScroll, maxScroll());
+        scroll = Math.min(scroll, maxScroll());
+        requestPaint();
+    }
+
+    /**
+     * Wraps {@code line} at word boundaries, breaking words that are wider than the view.
+     *
+     * @return the number of rows
+     */
+    private int layout(Line line) {
+        if (Double.isNaN(layoutWidth)) {
+            // Not shown yet, laid out with the first size
+            line.rows = List.of();
+            return 0;
+        }
+
+        List<String> rows = new ArrayList<>(1);
+        String text = line.text;
+        var row = new StringBuilder();
+        double rowWidth = 0;
+        double space = widths.of(" ");
+
+        int i = 0;
+        while (i < text.length()) {
+            int end = text.indexOf(' ', i);
+            if (end < 0) end = text.length();
+            String word = text.substring(i, end);
+            double wordWidth = widths.of(word);
+
+            double needed = row.isEmpty() ? wordWidth : rowWidth + space + wordWidth;
+            if (needed <= layoutWidth) {
+                if (!row.isEmpty()) row.append(' ');
+                row.append(word);
+                rowWidth = needed;
+            } else if (wordWidth <= layoutWidth) {
+                rows.add(row.toString());
+                row.setLength(0);
+                row.append(word);
+                rowWidth = wordWidth;
+            } else {
+                // A word wider than the view is broken between characters, measuring each piece as it grows
+                if (!row.isEmpty()) {
+                    rows.add(row.toString());
+                    row.setLength(0);
+                }
+                for (int c = 0; c < word.length(); ) {
+                    int next = c + Character.charCount(word.codePointAt(c));
+                    int length = row.length();
+                    row.append(word, c, next);
+                    if (length > 0 && widths.measure(row.toString()) > layoutWidth) {
+                        rows.add(row.substring(0, length));
+                        row.delete(0, length);
+                    }
+                    c = next;
+                }
+                rowWidth = widths.measure(row.toString());
+            }
+            i = end + 1;
+        }
+        rows.add(row.toString());
+
+        line.rows = rows;
+        return rows.size();
+    }
+
+    private void requestPaint() {
+        dirty = true;
+        painter.start();
+    }
+
+    /**
+     * Draws the rows on screen, walking back from the last line.
+     */
+    private void paint() {
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+
+        graphics.setFill(backgroundFill);
+        graphics.fillRect(0, 0, width, height);
+
+        graphics.setFont(font);
+        graphics.setFill(textFill);
+        graphics.setTextAlign(TextAlignment.LEFT);
+        graphics.setTextBaseline(VPos.TOP);
+        // The background is opaque, so sub-pixel smoothing can be used
+        graphics.setFontSmoothingType(FontSmoothingType.LCD);
+
+        // Row 0 is the last row of the last line
+        double bottom = height + scroll * lineHeight;
+        int row = 0;
+        var iterator = lines.descendingIterator();
+        while (iterator.hasNext()) {
+            var rows = iterator.next().rows;
+            double lineTop = bottom - (row + rows.size()) * lineHeight;
+            row += rows.size();
+            if (lineTop >= height) continue;
+
+            for (int r = 0; r < rows.size(); r++) {
+                double y = lineTop + r * lineHeight;
+                if (y + lineHeight > 0 && y < height) {
+                    graphics.fillText(rows.get(r), 0, y);
+                }
+            }
+            if (lineTop <= 0) break;
+        }
+    }
+
+    /**
+     * Widths of runs of text in one font, measured as a whole so kerning between their characters is counted. Words
+     * recur all the time in captions, so their widths are cached.
+     */
+    private static final class RunWidths {
+
+        /** Words cached before the cache starts over. */
+        private static final int MAX_CACHED = 20_000;
+
+        private final Text probe = new Text();
+        private final Map<String, Double> cache = new HashMap<>();
+
+        RunWidths(Font font) {
+            probe.setFont(font);
+        }
+
+        double lineHeight() {
+            probe.setText("Ag");
+            return Math.ceil(probe.getLayoutBounds().getHeight());
+        }
+
+        double of(String word) {
+            Double width = cache.get(word);
+            if (width == null) {
+                if (cache.size() >= MAX_CACHED) {
+                    cache.clear();
+                }
+                width = measure(word);
+                cache.put(word, width);
+            }
+            return width;
+        }
+
+        double measure(String run) {
+            probe.setText(run);
+            return probe.getLayoutBounds().getWidth();
+        }
+    }
+}
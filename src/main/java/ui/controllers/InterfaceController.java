@@ -2,29 +2,56 @@ package ui.controllers;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.DataLine;
 import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
 import javax.sound.sampled.TargetDataLine;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
-import org.vosk.Recognizer;
-
+import ai.speechtotext.audio.AudioConditioner;
+import ai.speechtotext.audio.ResamplingInputStream;
+import ai.speechtotext.command.CommandEvent;
+import ai.speechtotext.command.CommandSpotter;
+import ai.speechtotext.engine.VoskEngine;
+import ai.speechtotext.scheduling.JobHandle;
+import ai.speechtotext.scheduling.JobPriority;
+import ai.speechtotext.scheduling.TranscriptionScheduler;
+import ai.speechtotext.source.AudioSource;
+import ai.speechtotext.source.LineSource;
+import ai.speechtotext.source.PipeSource;
+import ai.speechtotext.source.SocketSource;
+import ai.speechtotext.transcription.Checkpoint;
 import ai.speechtotext.transcription.Transcriber;
 import ai.speechtotext.transcription.LineTranscription;
+import ai.speechtotext.transcription.LoadShedder;
+import ai.speechtotext.transcription.MultiSourceTranscriber;
+import ai.speechtotext.transcription.TaggedLineTranscription;
+import ai.speechtotext.transcription.Transcription;
 import ai.speechtotext.transcription.TranscriptionChannel;
 import ai.speechtotext.vosk.Models;
 
 import environment.Configuration;
+import environment.logging.Log;
+
+import session.Sessions;
 
 import io.github.palexdev.materialfx.controls.MFXButton;
+import io.github.palexdev.materialfx.controls.MFXTextField;
 
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
@@ -35,21 +62,29 @@ import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Label;
-import javafx.scene.control.TextArea;
 import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.GridPane;
+import javafx.scene.text.Font;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
+import ui.components.CaptionView;
 import ui.controllers.Builder.DialogType;
 
 public class InterfaceController implements Initializable {
 
+    private static final Log LOG = Log.get("ui");
+
+    private static final KeyCombination FIND = new KeyCodeCombination(KeyCode.F, KeyCombination.SHORTCUT_DOWN);
+    private static final int MAX_FIND_RESULTS = 8;
+
     static enum InputMethod {
-        MICROPHONE, AUDIO_FILE
+        MICROPHONE, AUDIO_FILE, CLASSROOM, NETWORK, PIPE
     }
 
     private final Stage stage;
@@ -67,12 +102,27 @@ public class InterfaceController implements Initializable {
     private MFXButton upButton, downButton;
 
     @FXML
-    private TextArea textArea;
+    private CaptionView captionView;
 
     private Timeline dotsTimeline;
     
     private Transcriber transcriber;
 
+    private MultiSourceTranscriber classroomTranscriber;
+
+    private CommandSpotter commandSpotter;
+
+    /**
+     * Folder of an unfinished file session to continue instead of starting a new one.
+     */
+    private File resumeSessionFolder;
+
+    /** The scheduler job of the running session. */
+    private JobHandle currentJob;
+
+    /** Shown after "Transcribing", for example " 42%" for a file or " (Light model)" while live captions shed load. */
+    private volatile String progressText = "";
+
     private final int sampleRate;
     private final AudioFormat format;
     private final DataLine.Info info;
@@ -80,6 +130,10 @@ public class InterfaceController implements Initializable {
 
     private TranscriptionChannel<LineTranscription> transcriptionChannel = new TranscriptionChannel<>();
 
+    private TranscriptionChannel<TaggedLineTranscription> classroomChannel = new TranscriptionChannel<>();
+
+    private final Transcription transcription = new Transcription();
+
     private InputMethod method = InputMethod.MICROPHONE;
 
     private final boolean debugMode = true;
@@ -87,13 +141,13 @@ public class InterfaceController implements Initializable {
     public InterfaceController(Stage stage) {
         this.stage = stage;
 
-        sampleRate = 16000;
+        sampleRate = Configuration.get().getSampleRate();
         format = new AudioFormat(sampleRate, 16, 1, true, false);
         info = new DataLine.Info(TargetDataLine.class, format);
         try {
             microphone = (TargetDataLine) AudioSystem.getLine(info);
         } catch (LineUnavailableException e) {
-            e.printStackTrace();
+            LOG.error("No microphone", e);
         }
     }
 
@@ -105,65 +159,139 @@ public class InterfaceController implements Initializable {
         startButton.setOnAction(this::startAction);
         pauseResumeButton.setOnAction(this::pauseResumeAction);
         stopButton.setOnAction(this::stopAction);
+        rootPane.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (FIND.match(e)) {
+                e.consume();
+                findInSession();
+            }
+        });
 
-        textArea.setEditable(false);
-        textArea.setWrapText(true);
-        textArea.setFocusTraversable(false);
+        captionView.setFont(Font.font(Configuration.get().getCaptionFontSize()));
+        Configuration.subscribe(configuration -> Platform.runLater(
+            () -> captionView.setFont(Font.font(configuration.getCaptionFontSize()))
+        ));
 
-        transcriptionChannel.subscribe(t -> {
-            if (t == LineTranscription.END) {
-                dotsTimeline.stop();
+        transcriptionChannel.subscribe(this::onTranscription);
+        classroomChannel.subscribe(t -> onTranscription(
+            t == TaggedLineTranscription.END ? LineTranscription.END : t.toLineTranscription()
+        ));
 
-                Platform.runLater(() -> {
-                    progressLabel.setText("Done Transcribing");
+        startButton.setDisable(true);
+        pauseResumeButton.setDisable(true);
+        stopButton.setDisable(true);
 
-                    if (debugMode) {
-                        method = null;
-                        transcriber = null;
-                    }
+        setInputMethod(method);
+    }
 
-                    startButton.setDisable(false);
-                    pauseResumeButton.setDisable(true);
-                    stopButton.setDisable(true);
-                });
-            
-                return;
-            }
-            
+    private void onTranscription(LineTranscription t) {
+        if (t == LineTranscription.END) {
             Platform.runLater(() -> {
-                if (textArea.getText().isEmpty()) {
-                    textArea.appendText(t.text());
-                } else {
-                    textArea.appendText("\n" + t.text());
+                dotsTimeline.stop();
+                progressLabel.setText("Done Transcribing");
+
+                closeCommandSpotter();
+
+                if (debugMode) {
+                    method = null;
+                    transcriber = null;
+                    classroomTranscriber = null;
                 }
+
+                startButton.setDisable(false);
+                pauseResumeButton.setDisable(true);
+                stopButton.setDisable(true);
             });
+        
+            return;
+        }
+
+        transcription.append(t);
+        
+        Platform.runLater(() -> {
+            if (LineTranscription.IMPORTANT_MARKER.equals(t.text())) {
+                captionView.appendToLastLine(" " + t.text());
+            } else if (LineTranscription.SECTION_MARKER.equals(t.text())) {
+                captionView.appendLine("");
+                captionView.appendLine(t.text());
+            } else {
+                captionView.appendLine(t.text());
+            }
+            trimScrollback();
         });
+    }
 
-        startButton.setDisable(true);
-        pauseResumeButton.setDisable(true);
-        stopButton.setDisable(true);
+    /**
+     * Drops the oldest lines from the screen beyond the configured scrollback. The session's transcription keeps them,
+     * see {@link #findInSession()}.
+     */
+    private void trimScrollback() {
+        int limit = Configuration.get().getScrollbackLines();
+        if (limit > 0) {
+            captionView.trimTo(limit);
+        }
+    }
 
-        setInputMethod(method);
+    /**
+     * Asks for a text and lists the lines of the current session that contain it, including lines no longer on screen.
+     */
+    private void findInSession() {
+        var input = new MFXTextField();
+        boolean[] cancelled = new boolean[1];
+        Builder.newTextInputDialog(stage, rootPane, "Find", "Find in session", "Text", input, 0, cancelled).showAndWait();
+
+        // Vosk writes lowercase text
+        String term = input.getText().strip().toLowerCase();
+        if (cancelled[0] || term.isEmpty()) return;
+
+        var found = new StringBuilder();
+        int hits = 0;
+        for (int i = transcription.indexOf(term, 0); i >= 0 && hits < MAX_FIND_RESULTS; i = transcription.indexOf(term, i + 1)) {
+            var line = transcription.line(i);
+            found.append(line.startTime()).append("  ").append(line.text()).append('\n');
+            hits++;
+        }
+
+        String message = hits == 0 ? "\"" + term + "\" was not found in this session." : found.toString().strip();
+        Builder.newDialog(stage, rootPane, message, DialogType.INFO, null).showAndWait();
+    }
+
+    private void onCommand(CommandEvent event) {
+        // Markers go into the session's transcription and come back to the screen through the transcription channel
+        var transcriber = this.transcriber;
+        switch (event.command()) {
+            case CAPTION_PAUSE -> Platform.runLater(() -> {
+                if (pauseResumeButton.getText().equals("Pause")) {
+                    pauseResumeAction(null);
+                }
+            });
+            case NEW_SECTION -> {
+                if (transcriber != null) transcriber.mark(LineTranscription.SECTION_MARKER);
+            }
+            case MARK_IMPORTANT -> {
+                if (transcriber != null) transcriber.mark(LineTranscription.IMPORTANT_MARKER);
+            }
+        }
+    }
+
+    private void closeCommandSpotter() {
+        if (commandSpotter == null) return;
+        var spotter = commandSpotter;
+        commandSpotter = null;
+        // Closing waits for the spotter to finish its chunk, which must not hold up the UI
+        var thread = new Thread(() -> {
+            spotter.close();
+            LOG.info("Command spotter: {}", spotter);
+        }, "command-spotter-close");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     private void handleUpButton(ActionEvent event) {
-        textArea.fireEvent(new KeyEvent(
-            KeyEvent.KEY_PRESSED,
-            "",
-            "",
-            KeyCode.UP,
-            false, false, false, false
-        ));
+        captionView.scrollBy(-1);
     }
 
     private void handleDownButton(ActionEvent event) {
-        textArea.fireEvent(new KeyEvent(
-            KeyEvent.KEY_PRESSED,
-            "",
-            "",
-            KeyCode.DOWN,
-            false, false, false, false
-        ));
+        captionView.scrollBy(1);
     }
 
     private void stopAction(ActionEvent event) {
@@ -171,7 +299,7 @@ public class InterfaceController implements Initializable {
         pauseResumeButton.setDisable(true);
         stopButton.setDisable(true);
 
-        if (transcriber == null) return;
+        if (transcriber == null && classroomTranscriber == null) return;
 
         Timeline dotsTimeline = new Timeline(
             new KeyFrame(Duration.seconds(0.0), e -> progressLabel.setText("Stopping.")),
@@ -184,23 +312,40 @@ public class InterfaceController implements Initializable {
 
         this.dotsTimeline.stop();
 
-        transcriber.stop();
+        if (currentJob != null) {
+            // Stops the transcribers through the cancel hooks registered when the job started
+            boolean queued = currentJob.getState() == JobHandle.State.QUEUED;
+            currentJob.cancel();
+            currentJob = null;
+            if (queued) {
+                // The job never started, so no hook was registered; this releases their engines and sources
+                if (transcriber != null) transcriber.stop();
+                if (classroomTranscriber != null) classroomTranscriber.stop();
+            }
+        } else {
+            if (transcriber != null) transcriber.stop();
+            if (classroomTranscriber != null) classroomTranscriber.stop();
+        }
+        closeCommandSpotter();
 
         if (debugMode) {
             transcriber = null;
+            classroomTranscriber = null;
         } 
     }
 
     private void pauseResumeAction(ActionEvent event) {
-        if (transcriber == null) return;
+        if (transcriber == null && classroomTranscriber == null) return;
 
         if (pauseResumeButton.getText().equals("Pause")) {
-            transcriber.pause();
+            if (transcriber != null) transcriber.pause();
+            if (classroomTranscriber != null) classroomTranscriber.pause();
             pauseResumeButton.setText("Resume");
             progressLabel.setText("Paused");
             dotsTimeline.stop();
         } else {
-            transcriber.resume();
+            if (transcriber != null) transcriber.resume();
+            if (classroomTranscriber != null) classroomTranscriber.resume();
             pauseResumeButton.setText("Pause");
             dotsTimeline.play();
         }
@@ -216,7 +361,7 @@ public class InterfaceController implements Initializable {
                 "Input method", 
                 "Select input method", 
                 null, 
-                new String[] {"Microphone", "Audio File"}, 
+                new String[] {"Microphone", "Audio File", "Classroom", "Network", "Pipe"}, 
                 pressed, 
                 null
             ).showAndWait();
@@ -224,6 +369,9 @@ public class InterfaceController implements Initializable {
             method = switch (pressed[0]) {
                 case 0 -> InputMethod.MICROPHONE;
                 case 1 -> InputMethod.AUDIO_FILE;
+                case 2 -> InputMethod.CLASSROOM;
+                case 3 -> InputMethod.NETWORK;
+                case 4 -> InputMethod.PIPE;
                 default -> null;
             };
 
@@ -233,72 +381,99 @@ public class InterfaceController implements Initializable {
         }
 
         dotsTimeline = new Timeline(
-            new KeyFrame(Duration.seconds(0.0), _ -> progressLabel.setText("Transcribing")),
-            new KeyFrame(Duration.seconds(0.5), _ -> progressLabel.setText("Transcribing.")),
-            new KeyFrame(Duration.seconds(1.0), _ -> progressLabel.setText("Transcribing..")),
-            new KeyFrame(Duration.seconds(1.5), _ -> progressLabel.setText("Transcribing...")),
-            new KeyFrame(Duration.seconds(2.0), _ -> progressLabel.setText("Transcribing..."))
+            new KeyFrame(Duration.seconds(0.0), _ -> progressLabel.setText("Transcribing" + progressText)),
+            new KeyFrame(Duration.seconds(0.5), _ -> progressLabel.setText("Transcribing." + progressText)),
+            new KeyFrame(Duration.seconds(1.0), _ -> progressLabel.setText("Transcribing.." + progressText)),
+            new KeyFrame(Duration.seconds(1.5), _ -> progressLabel.setText("Transcribing..." + progressText)),
+            new KeyFrame(Duration.seconds(2.0), _ -> progressLabel.setText("Transcribing..." + progressText))
         );
 
         dotsTimeline.setCycleCount(Animation.INDEFINITE);
         dotsTimeline.play();
 
-        new Thread(() -> {
-            String sessionName = "session_" + 
-                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
-            switch (method) {
-                case MICROPHONE -> {
-                    startButton.setDisable(true);
-                    pauseResumeButton.setDisable(false);
-                    stopButton.setDisable(false);
+        transcription.clear();
+        progressText = "";
 
-                    File sessionsFolder = new File(Configuration.sessionsSavePath);
+        startButton.setDisable(true);
+        pauseResumeButton.setDisable(false);
+        stopButton.setDisable(false);
+
+        String sessionName = "session_" + 
+            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
+
+        // A file is a background job, which the scheduler holds back whenever a live job falls behind real time
+        var priority = method == InputMethod.AUDIO_FILE ? JobPriority.BACKGROUND : JobPriority.LIVE;
+        var transcriber = this.transcriber;
+        var classroomTranscriber = this.classroomTranscriber;
+
+        // Subscribed before the job can start, so the queued state is shown too
+        Consumer<JobHandle> progress = null;
+        if (priority == JobPriority.BACKGROUND) {
+            progress = job -> progressText = job.getState() == JobHandle.State.QUEUED
+                ? " (queued)"
+                : " %.0f%%".formatted(job.getProgress() * 100);
+        }
 
-                    if (!sessionsFolder.exists()) {
-                        sessionsFolder.mkdirs();
-                    }
+        currentJob = TranscriptionScheduler.get().submit(sessionName, priority, context -> {
+            File sessionsFolder = new File(Configuration.get().getSessionsSavePath());
 
-                    File currentSessionFolder = new File(sessionsFolder, sessionName);
+            if (!sessionsFolder.exists()) {
+                sessionsFolder.mkdirs();
+            }
 
-                    if (!currentSessionFolder.exists()) {
-                        currentSessionFolder.mkdirs();
-                    }
+            File currentSessionFolder = resumeSessionFolder != null ? resumeSessionFolder : new File(sessionsFolder, sessionName);
+            resumeSessionFolder = null;
 
-                    File sessionTranscriptionFile = new File(currentSessionFolder, "transcription.txt");
+            if (!currentSessionFolder.exists()) {
+                currentSessionFolder.mkdirs();
+            }
 
-                    transcriber.transcribe(sessionTranscriptionFile, transcriptionChannel, true);
+            File sessionTranscriptionFile = new File(currentSessionFolder, Sessions.TRANSCRIPTION_FILE_NAME);
+
+            // Keeps the session from being compacted while it is recorded
+            File activeMarker = new File(currentSessionFolder, Sessions.ACTIVE_MARKER_FILE_NAME);
+            try {
+                activeMarker.createNewFile();
+                if (context.scope().isCancelled()) {
+                    // Stopped while the job was starting, before a cancel hook could be registered
+                    if (classroomTranscriber != null) classroomTranscriber.stop();
+                    else transcriber.stop();
+                    return;
                 }
-                case AUDIO_FILE -> {
-                    startButton.setDisable(true);
-                    pauseResumeButton.setDisable(false);
-                    stopButton.setDisable(false);
-
-                    File sessionsFolder = new File(Configuration.sessionsSavePath);
-
-                    if (!sessionsFolder.exists()) {
-                        sessionsFolder.mkdirs();
-                    }
-
-                    File currentSessionFolder = new File(sessionsFolder, sessionName);
-
-                    if (!currentSessionFolder.exists()) {
-                        currentSessionFolder.mkdirs();
-                    }
-
-                    File sessionTranscriptionFile = new File(currentSessionFolder, "transcription.txt");
-
-                    transcriber.transcribe(sessionTranscriptionFile, transcriptionChannel, false);
+                if (classroomTranscriber != null) {
+                    context.scope().onCancel(classroomTranscriber::stop);
+                    classroomTranscriber.setJobContext(context);
+                    classroomTranscriber.transcribe(sessionTranscriptionFile, classroomChannel);
+                } else {
+                    context.scope().onCancel(transcriber::stop);
+                    transcriber.setJobContext(context);
+                    transcriber.transcribe(sessionTranscriptionFile, transcriptionChannel, priority == JobPriority.LIVE);
                 }
+            } finally {
+                activeMarker.delete();
             }
-        }).start();
+        }, progress);
     }
 
     private void setInputMethod(InputMethod method) {
-        System.out.println("Selected input method: " + method);
+        LOG.info("Selected input method: {}", method);
         if (method == null) return;
+        // Only the audio file input continues an unfinished session, and only the one it offered
+        resumeSessionFolder = null;
+        // A transcriber that was prepared but never started still holds its engine and line
+        if (transcriber != null && transcriber.getState() == Transcriber.State.CREATED) {
+            transcriber.stop();
+            transcriber = null;
+        }
+        if (classroomTranscriber != null && !classroomTranscriber.isStarted()) {
+            classroomTranscriber.stop();
+            classroomTranscriber = null;
+        }
         switch (method) {
             case MICROPHONE -> handleMicrophoneInput();
             case AUDIO_FILE -> handleAudioFileInput();
+            case CLASSROOM -> handleClassroomInput();
+            case NETWORK, PIPE -> handleStreamInput(method);
         }
     }
 
@@ -307,15 +482,46 @@ public class InterfaceController implements Initializable {
             @Override
             protected Void call() {
                 try {
-                    var recognizer = new Recognizer(Models.tl, sampleRate);
+                    var engine = new VoskEngine(Models.tl, sampleRate);
                     if (!microphone.isOpen()) {
                         microphone.open(format);
                     }
                     
                     microphone.start();
-                    transcriber = new Transcriber(recognizer, microphone, null);
+                    transcriber = prepareLiveTranscriber(new Transcriber(engine, new LineSource(microphone)));
                 } catch (IOException | LineUnavailableException e) {
-                    e.printStackTrace();
+                    LOG.error("Microphone not opened", e);
+                }
+                return null;
+            }
+        };
+
+        playLoadingAnimation(loadTask);
+    }
+
+    /**
+     * Transcribes raw 16-bit mono PCM sent to the configured TCP port, for example by a wireless microphone receiver,
+     * or written to the configured pipe by another process.
+     */
+    private void handleStreamInput(InputMethod method) {
+        Task<Void> loadTask = new Task<>() {
+            @Override
+            protected Void call() throws IOException {
+                var configuration = Configuration.get();
+                AudioSource source;
+                if (method == InputMethod.NETWORK) {
+                    source = SocketSource.listen(new InetSocketAddress(configuration.getAudioPort()), sampleRate);
+                    LOG.info("Waiting for audio on port {}", configuration.getAudioPort());
+                } else {
+                    String pipe = configuration.getAudioPipe();
+                    source = pipe.equals("-") ? PipeSource.stdin(sampleRate) : PipeSource.open(Path.of(pipe), sampleRate);
+                }
+
+                try {
+                    transcriber = prepareLiveTranscriber(new Transcriber(new VoskEngine(Models.tl, sampleRate), source));
+                } catch (IOException | RuntimeException e) {
+                    source.close();
+                    throw e;
                 }
                 return null;
             }
@@ -324,6 +530,34 @@ public class InterfaceController implements Initializable {
         playLoadingAnimation(loadTask);
     }
 
+    /**
+     * Adds conditioning, load shedding and command spotting to a live transcriber.
+     */
+    private Transcriber prepareLiveTranscriber(Transcriber transcriber) {
+        var configuration = Configuration.get();
+        transcriber.setConditioner(new AudioConditioner(sampleRate, configuration.getChunkBytes()));
+
+        // Only a light model in the captions' language may stand in for them, without one load shedding skips that level
+        if (Models.light != null) {
+            transcriber.setLightEngineFactory(VoskEngine.factory(Models.light));
+        }
+        var loadEvents = transcriber.getLoadEvents();
+        loadEvents.subscribe(event -> {
+            LOG.warn("Live captions: {}", event);
+            progressText = event.to() == LoadShedder.Level.FULL ? "" : " (" + event.to().label() + ")";
+            loadEvents.clear();
+        });
+
+        if (Models.en != null && configuration.isCommandSpotting()) {
+            commandSpotter = new CommandSpotter(
+                Models.en, sampleRate, configuration.getChunkBytes(), configuration.getCommandQueueChunks()
+            );
+            commandSpotter.getChannel().subscribe(InterfaceController.this::onCommand);
+            transcriber.setCommandSpotter(commandSpotter);
+        }
+        return transcriber;
+    }
+
     private void handleAudioFileInput() {
         File file = chooseAudioFile();
         if (file == null) {
@@ -332,19 +566,119 @@ public class InterfaceController implements Initializable {
             return;
         }
 
+        Checkpoint checkpoint = null;
+        Path unfinished = Checkpoint.findResumable(Path.of(Configuration.get().getSessionsSavePath()), file.getAbsoluteFile());
+        if (unfinished != null) {
+            checkpoint = Checkpoint.read(unfinished);
+            boolean[] resume = new boolean[1];
+            Builder.newYesNoChoiceDialog(
+                stage,
+                rootPane,
+                "%s was partly transcribed in %s (%d lines). Continue where it stopped?".formatted(
+                    file.getName(), unfinished.getFileName(), checkpoint == null ? 0 : checkpoint.lineCount()
+                ),
+                DialogType.CONFIRM,
+                resume
+            ).showAndWait();
+            if (!resume[0]) {
+                checkpoint = null;
+                // The partial transcript stays a session of its own, finished so it is neither offered again nor kept
+                // from compaction
+                try {
+                    Checkpoint.delete(unfinished);
+                } catch (IOException e) {
+                    LOG.warn("Checkpoint of {} not deleted", unfinished, e);
+                }
+            }
+        }
+        resumeSessionFolder = checkpoint != null ? unfinished.toFile() : null;
+        Checkpoint resumeFrom = checkpoint;
+
         Task<Void> loadTask = new Task<>() {
             @Override
             protected Void call() {
                 try {
-                    Recognizer recognizer = new Recognizer(Models.tl, sampleRate); // keep it open
-                    AudioInputStream ais = AudioSystem.getAudioInputStream(file);
-                    AudioFormat format = new AudioFormat(sampleRate, 16, 1, true, false);
-                    AudioInputStream audio = AudioSystem.getAudioInputStream(format, ais);
+                    var engine = new VoskEngine(Models.tl, sampleRate);
+                    AudioInputStream audio = ResamplingInputStream.open(file, sampleRate);
 
-                    transcriber = new Transcriber(recognizer, null, audio);
+                    transcriber = new Transcriber(engine, null, audio);
+                    transcriber.setSourceFile(file.getAbsoluteFile());
+                    transcriber.setResumeFrom(resumeFrom);
                 } catch (IOException | UnsupportedAudioFileException e) {
-                    e.printStackTrace();
+                    LOG.error("Audio file {} not opened", file, e);
+                }
+                return null;
+            }
+        };
+
+        playLoadingAnimation(loadTask);
+    }
+
+    /**
+     * Opens the teacher's microphone and the configured room microphones, each with its own recognizer. Room devices
+     * are picked by name in the settings, because the system lists one physical device under several names, such as
+     * the default device and the hardware behind it, and opening all of them would caption the same voice twice.
+     */
+    private void handleClassroomInput() {
+        Task<Void> loadTask = new Task<>() {
+            @Override
+            protected Void call() throws IOException {
+                var configuration = Configuration.get();
+                String teacherDevice = configuration.getTeacherDevice().trim();
+                Set<String> roomDevices = new LinkedHashSet<>();
+                for (String name : configuration.getRoomDevices().split(",")) {
+                    if (!name.isBlank()) roomDevices.add(name.trim());
+                }
+
+                List<String> available = new ArrayList<>();
+                for (Mixer.Info mixerInfo : AudioSystem.getMixerInfo()) {
+                    if (AudioSystem.getMixer(mixerInfo).isLineSupported(info)) {
+                        available.add(mixerInfo.getName());
+                    }
+                }
+                LOG.info("Capture devices: {}", available);
+
+                List<MultiSourceTranscriber.Source> sources = new ArrayList<>();
+                try {
+                    var teacher = teacherDevice.isEmpty() ? microphone : captureLine(teacherDevice);
+                    if (teacher == null) {
+                        LOG.error("Teacher microphone {} not found", teacherDevice);
+                    } else {
+                        // The default microphone stays open after microphone captioning; it is reused without its old audio
+                        if (teacher.isOpen()) {
+                            teacher.flush();
+                        } else {
+                            teacher.open(format);
+                        }
+                        teacher.start();
+                        sources.add(new MultiSourceTranscriber.Source("Teacher", new LineSource(teacher), new VoskEngine(Models.tl, sampleRate)));
+                    }
+                } catch (LineUnavailableException e) {
+                    LOG.error("Teacher microphone not opened", e);
+                }
+
+                for (String device : roomDevices) {
+                    if (device.equals(teacherDevice)) continue;
+                    try {
+                        var line = captureLine(device);
+                        if (line == null) {
+                            LOG.warn("Room microphone {} not found", device);
+                            continue;
+                        }
+                        line.open(format);
+                        line.start();
+                        String name = "Room " + sources.size();
+                        sources.add(new MultiSourceTranscriber.Source(name, new LineSource(line), new VoskEngine(Models.tl, sampleRate)));
+                    } catch (LineUnavailableException | IllegalArgumentException e) {
+                        LOG.warn("Room microphone {} not opened: {}", device, e.getMessage());
+                    }
+                }
+
+                if (sources.isEmpty()) {
+                    throw new IOException("No capture device available");
                 }
+
+                classroomTranscriber = new MultiSourceTranscriber(sources);
                 return null;
             }
         };
@@ -352,6 +686,19 @@ public class InterfaceController implements Initializable {
         playLoadingAnimation(loadTask);
     }
 
+    /**
+     * @return a capture line of the device named {@code name}, or null if there is no such device
+     */
+    private TargetDataLine captureLine(String name) throws LineUnavailableException {
+        for (Mixer.Info mixerInfo : AudioSystem.getMixerInfo()) {
+            if (mixerInfo.getName().equals(name)) {
+                var mixer = AudioSystem.getMixer(mixerInfo);
+                return mixer.isLineSupported(info) ? (TargetDataLine) mixer.getLine(info) : null;
+            }
+        }
+        return null;
+    }
+
     private void playLoadingAnimation(Task<Void> loadTask) {
         Timeline dotsTimeline = new Timeline(
             new KeyFrame(Duration.seconds(0.0), e -> progressLabel.setText("Loading")),
@@ -375,7 +722,7 @@ public class InterfaceController implements Initializable {
             startButton.setDisable(true);
         });
 
-        new Thread(loadTask).start();
+        TranscriptionScheduler.get().submit("load", JobPriority.INTERACTIVE, _ -> loadTask.run());
     }
 
     private File chooseAudioFile() {
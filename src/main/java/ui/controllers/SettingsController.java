@@ -1,15 +1,165 @@
 package ui.controllers;
 
+import java.io.IOException;
 import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.function.Consumer;
 
+import org.json.JSONObject;
+
+import environment.Configuration;
+
+import io.github.palexdev.materialfx.controls.MFXButton;
+import io.github.palexdev.materialfx.controls.MFXTextField;
+
+import javafx.application.Platform;
+import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.control.Label;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import ui.controllers.Builder.DialogType;
 
+/**
+ * Edits the {@link Configuration}. Every setting is a text field, converted and validated by
+ * {@link Configuration#fromJson(JSONObject)} on save, and the form follows reloads of the file made outside the screen.
+ */
 public class SettingsController implements Initializable {
 
+    private static record Setting(String key, String label, String hint) {
+    }
+
+    private static final Setting[] SETTINGS = {
+        new Setting("sessionsSavePath", "Sessions folder", "Used from the next session"),
+        new Setting("modelsPath", "Models folder", "Needs a restart"),
+        new Setting("captionModel", "Caption model", "Needs a restart"),
+        new Setting("commandModel", "Command model", "Needs a restart"),
+        new Setting("lightCaptionModel", "Light caption model", "Same language as the caption model, empty for none; needs a restart"),
+        new Setting("sampleRate", "Sample rate (Hz)", "Needs a restart"),
+        new Setting("chunkBytes", "Audio chunk (bytes)", "Smaller is lower latency, larger is cheaper"),
+        new Setting("fileChunkBytes", "File chunk (bytes)", "Larger transcribes files faster"),
+        new Setting("flushPolicy", "Flush policy", "LINE, INTERVAL or CLOSE"),
+        new Setting("flushIntervalMillis", "Flush interval (ms)", "For the INTERVAL policy"),
+        new Setting("scrollbackLines", "Scrollback (lines)", "0 keeps every line on screen"),
+        new Setting("captionFontSize", "Caption font size", "Applies immediately"),
+        new Setting("commandSpotting", "Command spotting", "true or false, used from the next session"),
+        new Setting("commandQueueChunks", "Command queue (chunks)", "Audio buffered for the command spotter"),
+        new Setting("exportThreads", "Export threads", "Applies immediately"),
+        new Setting("backgroundJobs", "File transcriptions at once", "Lowering it needs a restart"),
+        new Setting("throttleRealTimeFactor", "Throttle at live RTF", "File jobs wait while live decoding is this slow"),
+        new Setting("loadShedding", "Load shedding", "true or false, used from the next session"),
+        new Setting("shedRealTimeFactor", "Shed load at live RTF", "Captions step down in quality above this"),
+        new Setting("shedBacklogMillis", "Shed load at backlog (ms)", "Or when this much audio is waiting"),
+        new Setting("maxLineSeconds", "Longest caption line (s)", "Run-on speech is cut into lines, 0 never cuts"),
+        new Setting("audioPort", "Network audio port", "Raw 16-bit mono PCM, used from the next session"),
+        new Setting("audioPipe", "Audio pipe", "Named pipe of raw PCM, - for standard input"),
+        new Setting("teacherDevice", "Teacher microphone", "Capture device name, empty for the system default"),
+        new Setting("roomDevices", "Room microphones", "Capture device names, separated by commas"),
+        new Setting("compactionIntervalMinutes", "Compaction interval (min)", "Needs a restart"),
+        new Setting("compactionMinimumAgeMinutes", "Compaction age (min)", "Needs a restart"),
+        new Setting("syncPath", "Sync folder", "Share or drive the sync command copies sessions to"),
+        new Setting("syncThreads", "Sync threads", "Files copied at once"),
+        new Setting("logPath", "Log folder", "Applies immediately"),
+        new Setting("logLevel", "Log level", "DEBUG, INFO, WARN, ERROR or OFF"),
+        new Setting("logLevels", "Subsystem log levels", "Such as transcription=DEBUG, audio=WARN"),
+    };
+
+    @FXML
+    private StackPane rootPane;
+
+    @FXML
+    private GridPane settingsGrid;
+
+    @FXML
+    private Label statusLabel;
+
+    @FXML
+    private MFXButton defaultsButton, reloadButton, saveButton;
+
+    private final Map<String, MFXTextField> fields = new LinkedHashMap<>();
+
+    private final Consumer<Configuration> reloadListener = configuration -> Platform.runLater(() -> {
+        show(configuration);
+        statusLabel.setText("Reloaded from " + Configuration.path());
+    });
+
     @Override
     public void initialize(URL arg0, ResourceBundle arg1) {
-        
+        for (int i = 0; i < SETTINGS.length; i++) {
+            var setting = SETTINGS[i];
+
+            var label = new Label(setting.label());
+            label.getStyleClass().add("setting-label");
+            var hint = new Label(setting.hint());
+            hint.getStyleClass().add("setting-hint");
+
+            var field = new MFXTextField();
+            field.setMaxWidth(Double.MAX_VALUE);
+            fields.put(setting.key(), field);
+
+            settingsGrid.addRow(i, new VBox(label, hint), field);
+        }
+
+        show(Configuration.get());
+
+        defaultsButton.setOnAction(_ -> {
+            show(Configuration.builder().build());
+            statusLabel.setText("Defaults shown, save to apply them");
+        });
+
+        reloadButton.setOnAction(_ -> {
+            try {
+                show(Configuration.load(Configuration.path()));
+                statusLabel.setText("Loaded " + Configuration.path());
+            } catch (IOException | IllegalArgumentException e) {
+                statusLabel.setText(e.getMessage());
+            }
+        });
+
+        saveButton.setOnAction(_ -> save());
+
+        Configuration.subscribe(reloadListener);
+    }
+
+    private void show(Configuration configuration) {
+        var json = configuration.toJson();
+        fields.forEach((key, field) -> field.setText(String.valueOf(json.get(key))));
+    }
+
+    private void save() {
+        var json = new JSONObject();
+        fields.forEach((key, field) -> json.put(key, field.getText().trim()));
+
+        var previous = Configuration.get();
+        Configuration configuration;
+        try {
+            configuration = Configuration.fromJson(json);
+        } catch (IllegalArgumentException e) {
+            Builder.newDialog(stage(), rootPane, e.getMessage(), DialogType.ERROR, null).showAndWait();
+            return;
+        }
+
+        // Saving notifies the listeners, which would replace this message
+        Configuration.unsubscribe(reloadListener);
+        try {
+            Configuration.save(configuration);
+            statusLabel.setText(configuration.requiresRestart(previous)
+                ? "Saved. Some changes take effect after a restart."
+                : "Saved.");
+        } catch (IOException e) {
+            Builder.newDialog(stage(), rootPane, "Could not save settings: " + e.getMessage(), DialogType.ERROR, null)
+                .showAndWait();
+        } finally {
+            Configuration.subscribe(reloadListener);
+        }
+    }
+
+    private Stage stage() {
+        return (Stage) rootPane.getScene().getWindow();
     }
-    
 }
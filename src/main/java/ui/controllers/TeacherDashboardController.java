@@ -1,15 +1,127 @@
 package ui.controllers;
 
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.ResourceBundle;
 
+import ai.speechtotext.scheduling.JobPriority;
+import ai.speechtotext.scheduling.TranscriptionScheduler;
+
+import environment.Configuration;
+
+import io.github.palexdev.materialfx.controls.MFXButton;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.StackPane;
+import session.analytics.SessionAnalytics;
+import session.analytics.SessionStats;
 
+/**
+ * Term statistics over every recorded session, see {@link SessionAnalytics}. They are computed in the background when
+ * the dashboard opens and on Refresh; sessions analyzed before come from the cache.
+ */
 public class TeacherDashboardController implements Initializable {
 
+    @FXML
+    private StackPane rootPane;
+
+    @FXML
+    private Label summaryLabel, statusLabel;
+
+    @FXML
+    private TableView<SessionStats> lessonsTable;
+
+    @FXML
+    private TableColumn<SessionStats, String> lessonColumn;
+
+    @FXML
+    private TableColumn<SessionStats, Number> rateColumn, captionedColumn, wordsColumn, coverageColumn;
+
+    @FXML
+    private TableView<SessionAnalytics.Term> termsTable;
+
+    @FXML
+    private TableColumn<SessionAnalytics.Term, String> termColumn;
+
+    @FXML
+    private TableColumn<SessionAnalytics.Term, Number> termCountColumn, termLessonsColumn;
+
+    @FXML
+    private MFXButton refreshButton;
+
+    private SessionAnalytics.Report report;
+
     @Override
     public void initialize(URL arg0, ResourceBundle arg1) {
-        
+        lessonColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().name()));
+        rateColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(Math.round(cell.getValue().wordsPerMinute())));
+        captionedColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(percent(cell.getValue().captionedFraction())));
+        wordsColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().words()));
+        coverageColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(
+            report == null ? 0 : percent(report.vocabularyCoverage(cell.getValue()))
+        ));
+
+        termColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().text()));
+        termCountColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().count()));
+        termLessonsColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().lessons()));
+
+        lessonsTable.setPlaceholder(new Label("No sessions yet"));
+        termsTable.setPlaceholder(new Label("No terms yet"));
+
+        refreshButton.setOnAction(_ -> refresh());
+        refresh();
+    }
+
+    private void refresh() {
+        refreshButton.setDisable(true);
+        statusLabel.setText("Analyzing sessions...");
+
+        Task<SessionAnalytics.Report> analyzeTask = new Task<>() {
+            @Override
+            protected SessionAnalytics.Report call() {
+                return SessionAnalytics.analyze(Path.of(Configuration.get().getSessionsSavePath()));
+            }
+        };
+
+        analyzeTask.setOnSucceeded(_ -> {
+            show(analyzeTask.getValue());
+            refreshButton.setDisable(false);
+        });
+
+        analyzeTask.setOnFailed(_ -> {
+            statusLabel.setText("Analysis failed: " + analyzeTask.getException());
+            refreshButton.setDisable(false);
+        });
+
+        TranscriptionScheduler.get().submit("dashboard", JobPriority.INTERACTIVE, _ -> analyzeTask.run());
+    }
+
+    private void show(SessionAnalytics.Report report) {
+        this.report = report;
+        lessonsTable.setItems(FXCollections.observableList(report.lessons()));
+        termsTable.setItems(FXCollections.observableList(report.topTerms()));
+
+        summaryLabel.setText("%d lessons, %.1f hours captioned, %d words at %.0f words/min, %.0f%% of lesson time captioned, %d distinct terms".formatted(
+            report.lessons().size(),
+            report.spokenMillis() / 3_600_000.0,
+            report.words(),
+            report.wordsPerMinute(),
+            report.captionedFraction() * 100,
+            report.vocabularySize()
+        ));
+        statusLabel.setText("Analyzed in %d ms, %d of %d sessions read, the others from the cache".formatted(
+            report.elapsedMillis(), report.reprocessed(), report.lessons().size()
+        ));
+    }
+
+    private static double percent(double fraction) {
+        return Math.round(fraction * 1000) / 10.0;
     }
-    
 }
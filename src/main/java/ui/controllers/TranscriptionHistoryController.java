@@ -1,29 +1,43 @@
 package ui.controllers;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.ResourceBundle;
 
 import org.apache.commons.lang3.tuple.Pair;
 
-import ai.speechtotext.transcription.LineTranscription;
+import ai.speechtotext.scheduling.JobPriority;
+import ai.speechtotext.scheduling.TranscriptionScheduler;
+
+import environment.Configuration;
+import environment.logging.Log;
 
 import io.github.palexdev.materialfx.controls.MFXButton;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
+import javafx.scene.Scene;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextArea;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.Stage;
 import session.Session;
+import session.Sessions;
+import session.export.ExportFormat;
+import session.export.SessionExporter;
+import ui.controllers.Builder.DialogType;
 
 public class TranscriptionHistoryController implements Initializable {
 
+    private static final Log LOG = Log.get("ui");
+
     @FXML 
     private StackPane rootPane;
 
@@ -40,7 +54,11 @@ public class TranscriptionHistoryController implements Initializable {
     private TextArea transcriptionTextArea;
 
     @FXML
-    private MFXButton refreshButton, backButton;
+    private MFXButton refreshButton, backButton, exportButton, exportAllButton, settingsButton, dashboardButton;
+
+    private Stage settingsStage, dashboardStage;
+
+    private Session openedSession;
 
     @Override
     public void initialize(URL arg0, ResourceBundle arg1) {
@@ -52,11 +70,24 @@ public class TranscriptionHistoryController implements Initializable {
         });
 
         backButton.setOnAction(_ -> {
+            openedSession = null;
             transcriptionTextArea.clear();
             sessionNameLabel.setText("");
             sessionsViewGridPane.toFront();
         });
 
+        exportButton.setOnAction(_ -> {
+            if (openedSession != null) {
+                exportSessions(List.of(openedSession));
+            }
+        });
+
+        exportAllButton.setOnAction(_ -> exportSessions(getSessions()));
+
+        settingsButton.setOnAction(_ -> openSettings());
+
+        dashboardButton.setOnAction(_ -> openDashboard());
+
         sessionsViewGridPane.toFront();
     }
 
@@ -67,28 +98,122 @@ public class TranscriptionHistoryController implements Initializable {
 
             button.setId("session-button");
             button.setOnAction(_ -> {
+                openedSession = session;
                 sessionTranscriptionViewGridPane.toFront();
                 sessionNameLabel.setText(session.name());
 
-                try {
-                    var transcriptionPath = session.path().resolve("transcription.txt");
-                    var trascriptions = Files.readAllLines(transcriptionPath).stream()
-                        .map(LineTranscription::fromString)
-                        .toList();
-
-                    for (var transcription : trascriptions) {
-                        transcriptionTextArea.appendText(transcription.text() + "\n");
-                    }
-                } catch (NoSuchFileException _) {
-                    // If the file doesn't exist, it means that the session was recorded without any transcriptions, so we just show an empty transcription view
+                var text = new StringBuilder();
+                try (var transcriptions = Sessions.lines(session)) {
+                    transcriptions.forEach(transcription -> text.append(transcription.text()).append('\n'));
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    LOG.error("Session {} not read", session, e);
                 } 
+                transcriptionTextArea.setText(text.toString());
             });
             sessionButtonsVbox.getChildren().add(button);
         }
     }
 
+    private void openSettings() {
+        if (settingsStage == null) {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/Settings.fxml"));
+            loader.setControllerFactory(_ -> new SettingsController());
+            try {
+                settingsStage = new Stage();
+                settingsStage.setScene(new Scene(loader.load()));
+            } catch (IOException e) {
+                settingsStage = null;
+                LOG.error("Settings not opened", e);
+                return;
+            }
+            settingsStage.initOwner(rootPane.getScene().getWindow());
+            settingsStage.setResizable(false);
+            settingsStage.setTitle("Settings");
+        }
+        settingsStage.show();
+        settingsStage.toFront();
+    }
+
+    private void openDashboard() {
+        if (dashboardStage == null) {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/Dashboard.fxml"));
+            loader.setControllerFactory(_ -> new TeacherDashboardController());
+            try {
+                dashboardStage = new Stage();
+                dashboardStage.setScene(new Scene(loader.load()));
+            } catch (IOException e) {
+                dashboardStage = null;
+                LOG.error("Dashboard not opened", e);
+                return;
+            }
+            dashboardStage.initOwner(rootPane.getScene().getWindow());
+            dashboardStage.setTitle("Dashboard");
+        }
+        dashboardStage.show();
+        dashboardStage.toFront();
+    }
+
+    private void exportSessions(List<Session> sessions) {
+        Stage stage = (Stage) rootPane.getScene().getWindow();
+        if (sessions.isEmpty()) {
+            Builder.newDialog(stage, rootPane, "There are no sessions to export.", DialogType.INFO, null)
+                .showAndWait();
+            return;
+        }
+
+        var formats = ExportFormat.values();
+        var formatNames = new String[formats.length];
+        for (int i = 0; i < formats.length; i++) {
+            formatNames[i] = formats[i].displayName();
+        }
+
+        int[] pressed = {-1};
+        boolean[] cancelled = new boolean[1];
+        Builder.newChoiceDialog(
+            stage, 
+            rootPane, 
+            "Export", 
+            "Export format", 
+            "Select export format", 
+            null, 
+            formatNames, 
+            pressed, 
+            cancelled
+        ).showAndWait();
+
+        if (cancelled[0] || pressed[0] < 0) return;
+        var format = formats[pressed[0]];
+
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Select export folder");
+        File outputFolder = directoryChooser.showDialog(stage);
+        if (outputFolder == null) return;
+
+        Task<List<SessionExporter.Result>> exportTask = new Task<>() {
+            @Override
+            protected List<SessionExporter.Result> call() throws Exception {
+                return SessionExporter.exportAll(
+                    sessions, format, outputFolder.toPath(), Configuration.get().getExportThreads()
+                );
+            }
+        };
+
+        exportTask.setOnSucceeded(_ -> {
+            var results = exportTask.getValue();
+            long failures = results.stream().filter(result -> !result.succeeded()).count();
+            var message = "Exported %d of %d session(s) to %s".formatted(results.size() - failures, results.size(), outputFolder);
+            Builder.newDialog(stage, rootPane, message, failures == 0 ? DialogType.INFO : DialogType.ERROR, null)
+                .showAndWait();
+        });
+
+        exportTask.setOnFailed(_ -> 
+            Builder.newDialog(stage, rootPane, "Export failed: " + exportTask.getException(), DialogType.ERROR, null)
+                .showAndWait()
+        );
+
+        TranscriptionScheduler.get().submit("export", JobPriority.INTERACTIVE, _ -> exportTask.run());
+    }
+
     private List<Pair<MFXButton, Session>> getSessionsButton() {
         return getSessions().stream().map(session -> 
             Pair.of(new MFXButton(session.name()), session)
@@ -96,18 +221,6 @@ public class TranscriptionHistoryController implements Initializable {
     }
 
     private List<Session> getSessions() {
-        try {
-            return Files.list(Path.of(System.getProperty("user.dir") + "/live-captioning-system/sessions/"))
-                .map(path -> {
-                    String fileName = path.getFileName().toString()
-                        .replace("session_", "");
-                    String[] dateTime = fileName.split("_");
-                    String sessionName = "Date: " + dateTime[0] + " Time: " + dateTime[1].replace("-", ":");
-                    return new Session(sessionName, path);
-                })
-                .toList();
-        } catch (IOException e) {
-            return List.of();
-        }
+        return Sessions.list(Path.of(Configuration.get().getSessionsSavePath()));
     }
 }